@@ -0,0 +1,163 @@
+package com.paytabs.banking.loadgen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pipelined client for the application's binary transaction protocol (see BinaryProtocol in the
+ * application). Requests are spread over a few connections without waiting for earlier responses,
+ * and a reader thread per connection matches responses to requests by id.
+ */
+public class BinaryClient implements AutoCloseable {
+
+    static final String[] STATUS_NAMES = {"ok", "declined", "bad_request", "busy", "unauthorized", "error"};
+
+    private static final byte AUTH = 1;
+    private static final byte PROCESS = 2;
+
+    record Response(int status, String message, int frameBytes) {
+        boolean ok() {
+            return status == 0;
+        }
+
+        String statusName() {
+            return status >= 0 && status < STATUS_NAMES.length ? STATUS_NAMES[status] : "status " + status;
+        }
+    }
+
+    private final Connection[] connections;
+    private final AtomicInteger nextConnection = new AtomicInteger();
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+
+    private BinaryClient(Connection[] connections) {
+        this.connections = connections;
+    }
+
+    static BinaryClient connect(String host, int port, int connectionCount, String token) throws Exception {
+        Connection[] connections = new Connection[Math.max(1, connectionCount)];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = new Connection(new Socket(host, port), i);
+        }
+        BinaryClient client = new BinaryClient(connections);
+        byte[] tokenBytes = token.getBytes(StandardCharsets.US_ASCII);
+        for (Connection connection : connections) {
+            Response response = connection.send(client.nextRequestId.incrementAndGet(), AUTH, out -> {
+                out.writeShort(tokenBytes.length);
+                out.write(tokenBytes);
+            }).get(10, TimeUnit.SECONDS);
+            if (!response.ok()) {
+                client.close();
+                throw new IllegalStateException("Binary protocol authentication failed: " + response.message());
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Sends a PROCESS request for the given type (1 withdraw, 2 topup, 3 transfer).
+     */
+    CompletableFuture<Response> process(String cardNumber, byte[] pinDigest, long amountCents, int type) {
+        byte[] card = cardNumber.getBytes(StandardCharsets.US_ASCII);
+        Connection connection = connections[Math.floorMod(nextConnection.getAndIncrement(), connections.length)];
+        return connection.send(nextRequestId.incrementAndGet(), PROCESS, out -> {
+            out.writeByte(type);
+            out.writeLong(amountCents);
+            out.writeByte(card.length);
+            out.write(card);
+            out.write(pinDigest);
+            out.writeByte(0);
+        });
+    }
+
+    @Override
+    public void close() {
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static final class Connection {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private final Map<Integer, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+        // Body is staged here to learn its length before the frame header is written
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+        private final DataOutputStream bodyOut = new DataOutputStream(body);
+
+        Connection(Socket socket, int index) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Thread reader = new Thread(this::readLoop, "binary-client-" + index);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        CompletableFuture<Response> send(int requestId, byte opcode, BodyWriter writer) {
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            pending.put(requestId, future);
+            try {
+                synchronized (this) {
+                    body.reset();
+                    writer.write(bodyOut);
+                    out.writeInt(5 + body.size());
+                    out.writeByte(opcode);
+                    out.writeInt(requestId);
+                    body.writeTo(out);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                pending.remove(requestId);
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        private void readLoop() {
+            try {
+                while (true) {
+                    int length = in.readInt();
+                    in.readByte();
+                    int requestId = in.readInt();
+                    int status = in.readByte();
+                    in.skipNBytes(8 * 4);
+                    byte[] message = new byte[in.readUnsignedShort()];
+                    in.readFully(message);
+                    CompletableFuture<Response> future = pending.remove(requestId);
+                    if (future != null) {
+                        future.complete(new Response(status, new String(message, StandardCharsets.UTF_8), 4 + length));
+                    }
+                }
+            } catch (IOException e) {
+                pending.values().forEach(future -> future.completeExceptionally(e));
+                pending.clear();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Reader thread fails the remaining requests
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.paytabs.banking.loadgen;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Cards from the seeder manifest, sampled with an optional Zipf skew so that a few
+ * low-index cards receive most of the traffic.
+ */
+public class CardPool {
+
+    record Entry(String cardNumber, String pin, String username, String password) {
+    }
+
+    private final List<Entry> entries;
+    private final double[] cumulative;
+
+    private CardPool(List<Entry> entries, double skew) {
+        this.entries = entries;
+        this.cumulative = skew > 0 ? zipfCumulative(entries.size(), skew) : null;
+    }
+
+    static CardPool load(Path manifest, double skew) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest)) {
+            if (line.isBlank() || line.startsWith("cardNumber")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            entries.add(new Entry(fields[0], fields[1], fields[2], fields[3]));
+        }
+        if (entries.isEmpty()) {
+            throw new IllegalStateException("No cards in manifest " + manifest);
+        }
+        return new CardPool(entries, skew);
+    }
+
+    Entry next(SplittableRandom random) {
+        if (cumulative == null) {
+            return entries.get(random.nextInt(entries.size()));
+        }
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return entries.get(index >= 0 ? index : Math.min(-index - 1, entries.size() - 1));
+    }
+
+    Entry get(int index) {
+        return entries.get(index % entries.size());
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static double[] zipfCumulative(int n, double skew) {
+        double[] cumulative = new double[n];
+        double total = 0;
+        for (int k = 0; k < n; k++) {
+            total += 1.0 / Math.pow(k + 1, skew);
+            cumulative[k] = total;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= total;
+        }
+        return cumulative;
+    }
+}
@@ -0,0 +1,80 @@
+package com.paytabs.banking.loadgen;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Load generator settings, parsed from key=value arguments.
+ */
+public class LoadConfig {
+
+    String baseUrl = "http://localhost:8080";
+    String manifest = "target/loadtest/cards.csv";
+    // API token user; /api/process and the binary protocol need the acquirer role
+    String apiUser = "loadtest_acquirer";
+    String apiPassword = "loadtest123";
+    double rate = 200;
+    int durationSeconds = 60;
+    int warmupSeconds = 10;
+    boolean poissonArrivals = true;
+    double hotCardSkew = 1.0;
+    int dashboardSessions = 8;
+    int timeoutMillis = 10_000;
+    boolean conditional = true;
+    boolean compression = true;
+    int binaryPort = 7070;
+    int binaryConnections = 4;
+    Map<Operation, Integer> mix = parseMix("withdraw=40,topup=30,invalid_pin=10,unsupported=5,process=10,login=3,dashboard=2");
+
+    static LoadConfig parse(String[] args) {
+        LoadConfig config = new LoadConfig();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value argument but got: " + arg);
+            }
+            String key = arg.substring(0, eq);
+            String value = arg.substring(eq + 1);
+            switch (key) {
+                case "baseUrl" -> config.baseUrl = value;
+                case "manifest" -> config.manifest = value;
+                case "apiUser" -> config.apiUser = value;
+                case "apiPassword" -> config.apiPassword = value;
+                case "rate" -> config.rate = Double.parseDouble(value);
+                case "duration" -> config.durationSeconds = Integer.parseInt(value);
+                case "warmup" -> config.warmupSeconds = Integer.parseInt(value);
+                case "arrivals" -> config.poissonArrivals = !"constant".equals(value);
+                case "skew" -> config.hotCardSkew = Double.parseDouble(value);
+                case "sessions" -> config.dashboardSessions = Integer.parseInt(value);
+                case "timeoutMs" -> config.timeoutMillis = Integer.parseInt(value);
+                case "conditional" -> config.conditional = Boolean.parseBoolean(value);
+                case "compression" -> config.compression = Boolean.parseBoolean(value);
+                case "binaryPort" -> config.binaryPort = Integer.parseInt(value);
+                case "binaryConnections" -> config.binaryConnections = Integer.parseInt(value);
+                case "mix" -> config.mix = parseMix(value);
+                default -> throw new IllegalArgumentException("Unknown argument: " + key);
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Parses weights such as "withdraw=40,topup=30,dashboard=5".
+     */
+    static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : value.split(",")) {
+            String[] pair = part.trim().split("=");
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("baseUrl=%s rate=%.0f/s duration=%ds warmup=%ds arrivals=%s skew=%.2f conditional=%s " +
+                        "compression=%s mix=%s", baseUrl, rate, durationSeconds, warmupSeconds,
+                poissonArrivals ? "poisson" : "constant", hotCardSkew, conditional, compression, mix);
+    }
+}
@@ -0,0 +1,336 @@
+package com.paytabs.banking.loadgen;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Open-model load generator for the Banking System POC.
+ *
+ * Requests are started on an arrival schedule (Poisson or constant rate) regardless of how
+ * many are still in flight, and latency is measured from the scheduled start time, so a
+ * slow server shows up as queueing delay instead of silently lowering the offered load.
+ *
+ * Start the application with the loadtest profile first so the card manifest exists:
+ *   mvn spring-boot:run -Dspring-boot.run.profiles=loadtest
+ *   mvn -f load-generator/pom.xml compile exec:java -Dexec.args="rate=500 duration=60 skew=1.1"
+ */
+public class LoadGenerator {
+
+    private static final Pattern TOKEN = Pattern.compile("\"accessToken\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final LoadConfig config;
+    private final CardPool cards;
+    private final HttpClient apiClient;
+    private final List<HttpClient> dashboardClients = new ArrayList<>();
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final Operation[] weightedOperations;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicInteger nextDashboardClient = new AtomicInteger();
+    private AtomicReferenceArray<String> dashboardEtags;
+    private BinaryClient binaryClient;
+    private String token;
+    private long measureFromNanos;
+
+    LoadGenerator(LoadConfig config, CardPool cards) {
+        this.config = config;
+        this.cards = cards;
+        this.apiClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+
+        List<Operation> weighted = new ArrayList<>();
+        config.mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                weighted.add(operation);
+            }
+        });
+        this.weightedOperations = weighted.toArray(new Operation[0]);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = LoadConfig.parse(args);
+        CardPool cards = CardPool.load(Path.of(config.manifest), config.hotCardSkew);
+        System.out.println("Loaded " + cards.size() + " cards from " + config.manifest);
+        System.out.println("Config: " + config);
+
+        LoadGenerator generator = new LoadGenerator(config, cards);
+        generator.prepare();
+        generator.run();
+        generator.report();
+        generator.close();
+    }
+
+    /**
+     * Obtains an API token and opens logged-in sessions for dashboard traffic.
+     */
+    void prepare() throws Exception {
+        HttpResponse<String> response = apiClient.send(HttpRequest.newBuilder(uri("/api/auth/token"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"username\":\"" + config.apiUser + "\",\"password\":\"" + config.apiPassword + "\"}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = TOKEN.matcher(response.body());
+        if (response.statusCode() != 200 || !matcher.find()) {
+            throw new IllegalStateException("Could not obtain API token: HTTP " + response.statusCode());
+        }
+        token = matcher.group(1);
+
+        if (config.mix.getOrDefault(Operation.DASHBOARD, 0) > 0) {
+            // One user per session: the application allows a single session per user
+            for (int i = 0; i < Math.min(config.dashboardSessions, cards.size()); i++) {
+                HttpClient client = HttpClient.newBuilder()
+                        .cookieHandler(new CookieManager())
+                        .followRedirects(HttpClient.Redirect.NEVER)
+                        .build();
+                HttpResponse<String> login = client.send(loginRequest(
+                        "username=" + encode(cards.get(i).username()) + "&password=" + encode(cards.get(i).password())),
+                        HttpResponse.BodyHandlers.ofString());
+                if (!isLoginSuccess(login)) {
+                    throw new IllegalStateException("Dashboard session login failed for " + cards.get(i).username());
+                }
+                dashboardClients.add(client);
+            }
+        }
+        dashboardEtags = new AtomicReferenceArray<>(Math.max(1, dashboardClients.size()));
+
+        if (config.mix.getOrDefault(Operation.BINARY_PROCESS, 0) > 0) {
+            binaryClient = BinaryClient.connect(URI.create(config.baseUrl).getHost(), config.binaryPort,
+                    config.binaryConnections, token);
+        }
+    }
+
+    void close() {
+        if (binaryClient != null) {
+            binaryClient.close();
+        }
+    }
+
+    void run() throws InterruptedException {
+        SplittableRandom random = new SplittableRandom();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        measureFromNanos = start + TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / config.rate;
+
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+        progress.scheduleAtFixedRate(() -> System.out.printf("[%3ds] sent=%d inFlight=%d%n",
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), sent.get(), inFlight.get()),
+                5, 5, TimeUnit.SECONDS);
+
+        long intended = start;
+        while (intended < end) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            fire(weightedOperations[random.nextInt(weightedOperations.length)], intended, random);
+            intended += config.poissonArrivals
+                    ? (long) (-Math.log(1.0 - random.nextDouble()) * meanIntervalNanos)
+                    : (long) meanIntervalNanos;
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.timeoutMillis);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        progress.shutdownNow();
+    }
+
+    private void fire(Operation operation, long intendedNanos, SplittableRandom random) {
+        CardPool.Entry card = cards.next(random);
+        if (operation == Operation.BINARY_PROCESS) {
+            fireBinary(card, intendedNanos);
+            return;
+        }
+        HttpClient client = apiClient;
+        HttpRequest request;
+        int dashboardClient = -1;
+
+        switch (operation) {
+            case WITHDRAW -> request = transactionRequest(card.cardNumber(), card.pin(), "withdraw");
+            case TOPUP -> request = transactionRequest(card.cardNumber(), card.pin(), "topup");
+            case INVALID_PIN -> request = transactionRequest(card.cardNumber(),
+                    String.format("%04d", (Integer.parseInt(card.pin()) + 1) % 10000), "withdraw");
+            case UNSUPPORTED -> request = transactionRequest(
+                    "5" + String.format("%015d", random.nextLong(1_000_000_000_000_000L)), "1234", "withdraw");
+            case TRANSFER -> request = jsonRequest("/api/transaction", "{\"cardNumber\":\"" + card.cardNumber()
+                    + "\",\"pin\":\"" + card.pin() + "\",\"amount\":1.00,\"type\":\"transfer\",\"targetCardNumber\":\""
+                    + cards.get(random.nextInt(cards.size())).cardNumber() + "\"}");
+            case PROCESS -> request = jsonRequest("/api/process", "{\"cardNumber\":\"" + card.cardNumber()
+                    + "\",\"pinHash\":\"" + sha256(card.pin()) + "\",\"amount\":1.00,\"type\":\"topup\"}");
+            case LOGIN -> {
+                // Stay clear of the dashboard users: a new login would expire their single allowed session
+                CardPool.Entry loginCard = cards.size() > dashboardClients.size()
+                        ? cards.get(dashboardClients.size() + random.nextInt(cards.size() - dashboardClients.size()))
+                        : card;
+                request = loginRequest("cardNumber=" + loginCard.cardNumber() + "&pin=" + loginCard.pin());
+            }
+            case DASHBOARD -> {
+                dashboardClient = Math.floorMod(nextDashboardClient.getAndIncrement(), dashboardClients.size());
+                client = dashboardClients.get(dashboardClient);
+                // Behaves like a browser revalidating its cached copy of the page
+                HttpRequest.Builder builder = HttpRequest.newBuilder(uri("/customer/dashboard"))
+                        .timeout(Duration.ofMillis(config.timeoutMillis))
+                        .GET();
+                String etag = dashboardEtags.get(dashboardClient);
+                if (config.conditional && etag != null) {
+                    builder.header("If-None-Match", etag);
+                }
+                if (config.compression) {
+                    builder.header("Accept-Encoding", "gzip");
+                }
+                request = builder.build();
+            }
+            default -> throw new IllegalStateException("Unhandled operation " + operation);
+        }
+
+        inFlight.incrementAndGet();
+        sent.incrementAndGet();
+        int etagSlot = dashboardClient;
+        // Bodies are kept as received (not decompressed), so their length is what went over the wire
+        CompletableFuture<HttpResponse<byte[]>> future = client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        future.whenComplete((response, error) -> {
+            inFlight.decrementAndGet();
+            if (response != null && etagSlot >= 0 && response.statusCode() == 200) {
+                response.headers().firstValue("ETag").ifPresent(etag -> dashboardEtags.set(etagSlot, etag));
+            }
+            if (intendedNanos < measureFromNanos) {
+                return;
+            }
+            long latency = System.nanoTime() - intendedNanos;
+            if (error != null) {
+                stats.get(operation).record(latency, error.getClass().getSimpleName(), true);
+            } else {
+                boolean ok = operation == Operation.LOGIN ? isLoginSuccess(response)
+                        : response.statusCode() == 200 || (etagSlot >= 0 && response.statusCode() == 304);
+                stats.get(operation).record(latency, "HTTP " + response.statusCode(), !ok);
+                stats.get(operation).recordBytes(response.body().length);
+            }
+        });
+    }
+
+    private void fireBinary(CardPool.Entry card, long intendedNanos) {
+        inFlight.incrementAndGet();
+        sent.incrementAndGet();
+        binaryClient.process(card.cardNumber(), sha256Bytes(card.pin()), 100, 2)
+                .orTimeout(config.timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((response, error) -> {
+                    inFlight.decrementAndGet();
+                    if (intendedNanos < measureFromNanos) {
+                        return;
+                    }
+                    long latency = System.nanoTime() - intendedNanos;
+                    OperationStats operationStats = stats.get(Operation.BINARY_PROCESS);
+                    if (error != null) {
+                        operationStats.record(latency, error.getClass().getSimpleName(), true);
+                    } else {
+                        operationStats.record(latency, response.statusName(), !response.ok());
+                        operationStats.recordBytes(response.frameBytes());
+                    }
+                });
+    }
+
+    void report() {
+        long measuredSeconds = Math.max(1, config.durationSeconds - config.warmupSeconds);
+        System.out.println();
+        System.out.printf("%-12s %9s %8s %7s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "err%", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "bytes/op");
+
+        long total = 0;
+        long totalErrors = 0;
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            OperationStats s = entry.getValue();
+            if (s.count() == 0) {
+                continue;
+            }
+            total += s.count();
+            totalErrors += s.errors();
+            System.out.printf("%-12s %9d %8d %6.2f%% %9.2f %9.2f %9.2f %9.2f %9.2f %9.0f   %s%n",
+                    entry.getKey().name().toLowerCase(), s.count(), s.errors(), 100.0 * s.errors() / s.count(),
+                    s.percentileMillis(50), s.percentileMillis(90), s.percentileMillis(99),
+                    s.percentileMillis(99.9), s.maxMillis(), s.meanBodyBytes(), s.outcomes());
+        }
+
+        System.out.println();
+        System.out.printf("Offered rate: %.0f/s, completed: %d (%.1f/s), errors: %d (%.2f%%)%n",
+                config.rate, total, (double) total / measuredSeconds, totalErrors,
+                total == 0 ? 0.0 : 100.0 * totalErrors / total);
+    }
+
+    private HttpRequest transactionRequest(String cardNumber, String pin, String type) {
+        return jsonRequest("/api/transaction", "{\"cardNumber\":\"" + cardNumber + "\",\"pin\":\"" + pin
+                + "\",\"amount\":1.00,\"type\":\"" + type + "\"}");
+    }
+
+    private HttpRequest jsonRequest(String path, String body) {
+        return HttpRequest.newBuilder(uri(path))
+                .timeout(Duration.ofMillis(config.timeoutMillis))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + token)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest loginRequest(String form) {
+        return HttpRequest.newBuilder(uri("/login"))
+                .timeout(Duration.ofMillis(config.timeoutMillis))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private static boolean isLoginSuccess(HttpResponse<?> response) {
+        return response.statusCode() == 302
+                && response.headers().firstValue("Location").map(l -> l.endsWith("/dashboard")).orElse(false);
+    }
+
+    private URI uri(String path) {
+        return URI.create(config.baseUrl + path);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String sha256(String value) {
+        return HexFormat.of().formatHex(sha256Bytes(value));
+    }
+
+    private static byte[] sha256Bytes(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new RuntimeException("Error hashing PIN", e);
+        }
+    }
+}
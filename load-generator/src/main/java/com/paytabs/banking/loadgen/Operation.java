@@ -0,0 +1,25 @@
+package com.paytabs.banking.loadgen;
+
+/**
+ * Kinds of traffic the generator can send.
+ */
+public enum Operation {
+    /** System 1 withdrawal with a valid PIN */
+    WITHDRAW,
+    /** System 1 top-up with a valid PIN */
+    TOPUP,
+    /** System 1 withdrawal with a wrong PIN */
+    INVALID_PIN,
+    /** System 1 transaction on a non-Visa card number, declined by routing */
+    UNSUPPORTED,
+    /** System 1 transfer between two random cards */
+    TRANSFER,
+    /** System 2 direct call with a pre-hashed PIN */
+    PROCESS,
+    /** Same System 2 call as PROCESS over the binary protocol, pipelined on a few connections */
+    BINARY_PROCESS,
+    /** Card/PIN form login */
+    LOGIN,
+    /** Customer dashboard page load on an existing session */
+    DASHBOARD
+}
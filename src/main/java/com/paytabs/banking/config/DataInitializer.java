@@ -5,9 +5,11 @@ import com.paytabs.banking.entity.Card;
 import com.paytabs.banking.entity.User;
 import com.paytabs.banking.repository.CardRepository;
 import com.paytabs.banking.repository.UserRepository;
+import com.paytabs.banking.service.IssuedCardFilter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
@@ -16,6 +18,7 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 
 @Component
+@Profile("dev")
 @RequiredArgsConstructor
 @Slf4j
 public class DataInitializer implements CommandLineRunner {
@@ -24,6 +27,7 @@ public class DataInitializer implements CommandLineRunner {
     private final UserRepository userRepository;
     private final EncryptionUtil encryptionUtil;
     private final PasswordEncoder passwordEncoder;
+    private final IssuedCardFilter issuedCardFilter;
 
     @Override
     public void run(String... args) throws Exception {
@@ -48,6 +52,17 @@ public class DataInitializer implements CommandLineRunner {
             log.info("Created admin user");
         }
 
+        // Acquirer: the only role allowed on the System 2 direct API and the binary protocol
+        if (userRepository.findByUsername("acquirer").isEmpty()) {
+            User acquirer = new User();
+            acquirer.setUsername("acquirer");
+            acquirer.setPasswordHash(passwordEncoder.encode("acquirer123"));
+            acquirer.setRole("ACQUIRER");
+            acquirer.setActive(true);
+            userRepository.save(acquirer);
+            log.info("Created acquirer user");
+        }
+
         // Customer 1
         if (userRepository.findByUsername("john_doe").isEmpty()) {
             User customer1 = new User();
@@ -97,6 +112,7 @@ public class DataInitializer implements CommandLineRunner {
             cardRepository.save(card);
             log.info("Created card for customer: {} (Card ending in {})", customerName, cardNumber.substring(cardNumber.length() - 4));
         }
+        issuedCardFilter.addIssuedCard(cardNumber);
     }
 
     private String hashPin(String pin) {
@@ -0,0 +1,44 @@
+package com.paytabs.banking.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Keeps beans that do work on their own eager when spring.main.lazy-initialization is on (the
+ * prod profile). A lazy bean's @Scheduled methods are never registered and its @PostConstruct
+ * checks run on the first request instead of at startup, so the hold expiry wheel and backfill,
+ * the key and token secret checks, the issued card filter and the background relays would
+ * silently not start. Every other bean is still created on first use.
+ */
+@Configuration
+public class LazyInitializationConfig {
+
+    private static final List<Class<? extends Annotation>> STARTUP_WORK =
+            List.of(Scheduled.class, PostConstruct.class, EventListener.class);
+
+    @Bean
+    static LazyInitializationExcludeFilter startupWorkExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> beanType != null && doesStartupWork(beanType);
+    }
+
+    static boolean doesStartupWork(Class<?> beanType) {
+        for (Method method : ReflectionUtils.getUniqueDeclaredMethods(beanType)) {
+            for (Class<? extends Annotation> annotation : STARTUP_WORK) {
+                if (AnnotatedElementUtils.hasAnnotation(method, annotation)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -1,21 +1,34 @@
 package com.paytabs.banking.config;
 
+import com.paytabs.banking.security.ApiTokenAuthenticationFilter;
+import com.paytabs.banking.security.ApiTokenService;
 import com.paytabs.banking.security.CardNumberPinAuthenticationProvider;
 import com.paytabs.banking.security.CustomAuthenticationFilter;
+import com.paytabs.banking.security.NegativeCachingDaoAuthenticationProvider;
+import com.paytabs.banking.security.UnknownIdentifierCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderManager;
-import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.LoginUrlAuthenticationEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.core.session.SessionRegistry;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.security.SpringSessionBackedSessionRegistry;
 
 import java.util.Arrays;
 
@@ -25,13 +38,56 @@ public class SecurityConfig {
 
     private final CardNumberPinAuthenticationProvider cardNumberPinAuthenticationProvider;
     private final UserDetailsService userDetailsService;
+    private final ObjectProvider<FindByIndexNameSessionRepository<? extends Session>> sessionRepository;
+    private final ApiTokenService apiTokenService;
+    private final UnknownIdentifierCache unknownIdentifierCache;
 
-    public SecurityConfig(CardNumberPinAuthenticationProvider cardNumberPinAuthenticationProvider, UserDetailsService userDetailsService) {
+    // BCrypt work factor; every step doubles the cost of a login. BcryptCostBenchmarkTest prints the
+    // time per strength on the machine it runs on, to pick a value for the production hardware.
+    // Existing hashes carry their own cost, so changing this only affects newly encoded passwords.
+    @Value("${auth.bcrypt.strength:10}")
+    private int bcryptStrength;
+
+    public SecurityConfig(CardNumberPinAuthenticationProvider cardNumberPinAuthenticationProvider, UserDetailsService userDetailsService,
+                          ObjectProvider<FindByIndexNameSessionRepository<? extends Session>> sessionRepository,
+                          ApiTokenService apiTokenService, UnknownIdentifierCache unknownIdentifierCache) {
         this.cardNumberPinAuthenticationProvider = cardNumberPinAuthenticationProvider;
         this.userDetailsService = userDetailsService;
+        this.sessionRepository = sessionRepository;
+        this.apiTokenService = apiTokenService;
+        this.unknownIdentifierCache = unknownIdentifierCache;
     }
 
+    /**
+     * REST API chain: bearer tokens are verified per request and no session is ever created.
+     * Browser calls from the dashboards still reuse the session they already have. The System 2
+     * direct API and holds are for acquirers; customers only reach their own history.
+     */
     @Bean
+    @Order(1)
+    public SecurityFilterChain apiSecurityFilterChain(HttpSecurity http) throws Exception {
+        http
+                .securityMatcher("/api/**")
+                .csrf(csrf -> csrf.disable())
+                .requestCache(cache -> cache.disable())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.NEVER))
+                .exceptionHandling(e -> e
+                        .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED))
+                )
+                .authorizeHttpRequests(authorize -> authorize
+                        .requestMatchers("/api/auth/token").permitAll()
+                        .requestMatchers("/api/transactions/all", "/api/transactions/search").hasRole("ADMIN")
+                        .requestMatchers("/api/process").hasRole("ACQUIRER")
+                        .requestMatchers("/api/holds/**").hasAnyRole("ACQUIRER", "ADMIN")
+                        .anyRequest().authenticated()
+                )
+                .addFilterBefore(new ApiTokenAuthenticationFilter(apiTokenService), UsernamePasswordAuthenticationFilter.class);
+
+        return http.build();
+    }
+
+    @Bean
+    @Order(2)
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
@@ -42,9 +98,9 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authorize -> authorize
                         .requestMatchers("/login", "/signup", "/css/**", "/js/**", "/error").permitAll()
                         .requestMatchers("/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/customer/**").hasRole("CUSTOMER")
                         .requestMatchers("/h2-console/**").permitAll()
-                        .requestMatchers("/api/**").permitAll()
                         .anyRequest().authenticated()
                 )
                 .addFilterAt(customAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class)
@@ -55,14 +111,25 @@ public class SecurityConfig {
                         .deleteCookies("JSESSIONID")
                         .permitAll()
                 )
-                .sessionManagement(session -> session
-                        .maximumSessions(1)
-                        .maxSessionsPreventsLogin(false)
-                );
+                .sessionManagement(session -> {
+                    var concurrency = session
+                            .maximumSessions(1)
+                            .maxSessionsPreventsLogin(false);
+                    // With a shared session store (cluster profile) the one-session limit must be
+                    // enforced against that store rather than this node's in-memory registry
+                    FindByIndexNameSessionRepository<? extends Session> repository = sessionRepository.getIfAvailable();
+                    if (repository != null) {
+                        concurrency.sessionRegistry(springSessionRegistry(repository));
+                    }
+                });
 
         return http.build();
     }
 
+    private static <S extends Session> SessionRegistry springSessionRegistry(FindByIndexNameSessionRepository<S> repository) {
+        return new SpringSessionBackedSessionRegistry<>(repository);
+    }
+
     @Bean
     public CustomAuthenticationFilter customAuthenticationFilter() {
         CustomAuthenticationFilter filter = new CustomAuthenticationFilter();
@@ -79,7 +146,7 @@ public class SecurityConfig {
 
     @Bean
     public AuthenticationManager authenticationManager() {
-        DaoAuthenticationProvider daoProvider = new DaoAuthenticationProvider();
+        NegativeCachingDaoAuthenticationProvider daoProvider = new NegativeCachingDaoAuthenticationProvider(unknownIdentifierCache);
         daoProvider.setUserDetailsService(userDetailsService);
         daoProvider.setPasswordEncoder(passwordEncoder());
         return new ProviderManager(Arrays.asList(cardNumberPinAuthenticationProvider, daoProvider));
@@ -87,6 +154,6 @@ public class SecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 }
@@ -0,0 +1,470 @@
+package com.paytabs.banking.config;
+
+import com.paytabs.banking.crypto.EncryptionUtil;
+import com.paytabs.banking.service.IssuedCardFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Seeds synthetic customers, cards and transactions using parallel generation and JDBC batch
+ * inserts, and writes a CSV manifest of card credentials for the load generator (load-generator/)
+ * plus an acquirer user it takes its API token from. Active in the loadtest profile (cards only,
+ * in memory) and the perfdata profile (millions of customers with a year of history).
+ *
+ * Card activity is Zipf-distributed over a shuffled card order, so a few hot cards carry most of
+ * the history. Transactions are spread over seeder.history-days and given ids in timestamp
+ * order. Each card's balanceBefore/balanceAfter chain ends at the card's balance, so ledger
+ * reconciliation passes on the seeded data.
+ *
+ * Every row gets an explicit id above the current maximum, so the seeder can run next to
+ * existing data. Afterwards the identity columns are restarted (H2 syntax). Generation keeps
+ * about 16 bytes per transaction in memory; size the heap to match.
+ */
+@Component
+@Profile({"loadtest", "perfdata"})
+@Slf4j
+public class SyntheticDataSeeder implements CommandLineRunner {
+
+    private static final String[] FIRST_NAMES = {"Ahmed", "Sara", "John", "Mona", "Omar", "Lina", "David", "Fatima",
+            "Khalid", "Maria", "Yousef", "Nour", "James", "Hana", "Ali", "Emma"};
+    private static final String[] LAST_NAMES = {"Haddad", "Smith", "Khan", "Saleh", "Brown", "Nasser", "Garcia",
+            "Aziz", "Miller", "Farah", "Wilson", "Mansour"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final PasswordEncoder passwordEncoder;
+    private final IssuedCardFilter issuedCardFilter;
+
+    @Value("${seeder.customers:1000}")
+    private int customerCount;
+
+    @Value("${seeder.transactions:0}")
+    private int transactionCount;
+
+    @Value("${seeder.zipf-exponent:0.9}")
+    private double zipfExponent;
+
+    @Value("${seeder.history-days:365}")
+    private int historyDays;
+
+    @Value("${seeder.opening-balance-min:100.00}")
+    private BigDecimal openingBalanceMin;
+
+    @Value("${seeder.opening-balance-max:5000.00}")
+    private BigDecimal openingBalanceMax;
+
+    @Value("${seeder.threads:8}")
+    private int threads;
+
+    @Value("${seeder.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${seeder.seed:42}")
+    private long seed;
+
+    @Value("${seeder.card-prefix:49}")
+    private String cardPrefix;
+
+    @Value("${seeder.customer-prefix:LT}")
+    private String customerPrefix;
+
+    @Value("${seeder.username-prefix:loadtest_}")
+    private String usernamePrefix;
+
+    @Value("${seeder.password:loadtest123}")
+    private String password;
+
+    @Value("${seeder.manifest:target/loadtest/cards.csv}")
+    private String manifestPath;
+
+    @Value("${seeder.manifest-cards:10000}")
+    private int manifestCards;
+
+    public SyntheticDataSeeder(DataSource dataSource, PlatformTransactionManager transactionManager,
+                               EncryptionUtil encryptionUtil, PasswordEncoder passwordEncoder,
+                               IssuedCardFilter issuedCardFilter) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.encryptionUtil = encryptionUtil;
+        this.passwordEncoder = passwordEncoder;
+        this.issuedCardFilter = issuedCardFilter;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Integer existing = jdbcTemplate.queryForObject("select count(*) from users where username = ?",
+                Integer.class, usernamePrefix + 0);
+        if (existing != null && existing > 0) {
+            log.info("Synthetic data already present, skipping seeding");
+            return;
+        }
+
+        long started = System.currentTimeMillis();
+        log.info("Seeding {} customers and {} transactions with {} threads", customerCount, transactionCount, threads);
+
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] cardOwner = assignCards(random);
+        int cardCount = cardOwner.length;
+        long userBase = nextId("users");
+        long cardBase = nextId("cards");
+        long transactionBase = nextId("transactions");
+
+        // One BCrypt hash for every user and one SHA-256 hash per distinct PIN, instead of one per row
+        String passwordHash = passwordEncoder.encode(password);
+        String[] pinHashes = new String[10000];
+        for (int pin = 0; pin < pinHashes.length; pin++) {
+            pinHashes[pin] = sha256(String.format("%04d", pin));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            insertUsers(pool, userBase, passwordHash);
+            insertAcquirer(userBase + customerCount, passwordHash);
+            log.info("Inserted {} users", customerCount + 1);
+
+            int[] hotOrder = shuffledCards(cardCount, random);
+            long[] events = generateEvents(random, hotOrder);
+            long eventSeed = random.nextLong();
+            long[] balances = new long[cardCount];
+            long[] before = walkBalances(events, balances, random.nextLong(), eventSeed,
+                    cents(openingBalanceMin), cents(openingBalanceMax));
+
+            insertCards(pool, cardOwner, cardBase, balances, pinHashes);
+            log.info("Inserted {} cards", cardCount);
+
+            insertTransactions(pool, events, before, cardOwner, transactionBase, eventSeed);
+            log.info("Inserted {} transactions", events.length);
+
+            restartIdentity("users", userBase + customerCount + 1);
+            restartIdentity("cards", cardBase + cardCount);
+            restartIdentity("transactions", transactionBase + events.length);
+            writeManifest(hotOrder, cardOwner);
+        } finally {
+            pool.shutdown();
+        }
+
+        log.info("Synthetic data seeded in {} s. Manifest of the hottest cards written to {}",
+                (System.currentTimeMillis() - started) / 1000, Path.of(manifestPath).toAbsolutePath());
+    }
+
+    // 70% of customers hold one card, 20% two and 10% three; returns the owning customer per card
+    private int[] assignCards(SplittableRandom random) {
+        int[] owners = new int[customerCount * 3];
+        int cards = 0;
+        for (int customer = 0; customer < customerCount; customer++) {
+            double draw = random.nextDouble();
+            int count = draw < 0.7 ? 1 : draw < 0.9 ? 2 : 3;
+            for (int i = 0; i < count; i++) {
+                owners[cards++] = customer;
+            }
+        }
+        return Arrays.copyOf(owners, cards);
+    }
+
+    private static int[] shuffledCards(int cardCount, SplittableRandom random) {
+        int[] order = new int[cardCount];
+        for (int i = 0; i < cardCount; i++) {
+            order[i] = i;
+        }
+        for (int i = cardCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    /**
+     * Returns one entry per transaction, (second offset << 32) | card index, sorted by time.
+     * The card at Zipf rank r gets a share of the transactions proportional to 1 / r^s.
+     */
+    private long[] generateEvents(SplittableRandom random, int[] hotOrder) {
+        int cardCount = hotOrder.length;
+        double total = 0;
+        for (int rank = 1; rank <= cardCount; rank++) {
+            total += 1.0 / Math.pow(rank, zipfExponent);
+        }
+
+        long[] events = new long[transactionCount];
+        long historySeconds = historyDays * 86400L;
+        int filled = 0;
+        double carry = 0;
+        for (int rank = 1; rank <= cardCount && filled < transactionCount; rank++) {
+            carry += transactionCount / Math.pow(rank, zipfExponent) / total;
+            long card = hotOrder[rank - 1];
+            for (; carry >= 1 && filled < transactionCount; carry--) {
+                events[filled++] = (random.nextLong(historySeconds) << 32) | card;
+            }
+        }
+        while (filled < transactionCount) {
+            long card = hotOrder[random.nextInt(cardCount)];
+            events[filled++] = (random.nextLong(historySeconds) << 32) | card;
+        }
+        Arrays.parallelSort(events);
+        return events;
+    }
+
+    /**
+     * Replays every card's history in time order. Returns each transaction's balance before it
+     * and leaves the closing balances in balances. Amounts and types derive from the event index,
+     * so the insert workers can recompute them.
+     */
+    private static long[] walkBalances(long[] events, long[] balances, long openingSeed, long eventSeed,
+                                       long openingMin, long openingMax) {
+        SplittableRandom opening = new SplittableRandom(openingSeed);
+        for (int card = 0; card < balances.length; card++) {
+            balances[card] = openingMax > openingMin ? openingMin + opening.nextLong(openingMax - openingMin) : openingMin;
+        }
+        long[] before = new long[events.length];
+        for (int i = 0; i < events.length; i++) {
+            int card = (int) events[i];
+            before[i] = balances[card];
+            balances[card] = balanceAfter(eventSeed, i, before[i]);
+        }
+        return before;
+    }
+
+    private static long balanceAfter(long eventSeed, int index, long before) {
+        long hash = mix(eventSeed + index);
+        int kind = (int) Math.floorMod(hash, 100);
+        long amount = amountCents(hash);
+        if (kind < 3) {
+            return before; // invalid PIN
+        }
+        if (kind < 58) {
+            return before >= amount ? before - amount : before;
+        }
+        return before + amount;
+    }
+
+    private void insertUsers(ExecutorService pool, long userBase, String passwordHash) {
+        parallelChunks(pool, customerCount, (from, to) -> batchInsert(
+                "insert into users (id, username, password_hash, role, customer_id, active) values (?, ?, ?, ?, ?, ?)",
+                from, to, (ps, customer) -> {
+                    ps.setLong(1, userBase + customer);
+                    ps.setString(2, usernamePrefix + customer);
+                    ps.setString(3, passwordHash);
+                    ps.setString(4, "CUSTOMER");
+                    ps.setString(5, customerId(customer));
+                    ps.setBoolean(6, true);
+                }));
+    }
+
+    // The API token user the load generator sends System 2 and hold requests as
+    private void insertAcquirer(long id, String passwordHash) {
+        jdbcTemplate.update("insert into users (id, username, password_hash, role, active) values (?, ?, ?, ?, ?)",
+                id, usernamePrefix + "acquirer", passwordHash, "ACQUIRER", true);
+    }
+
+    private void insertCards(ExecutorService pool, int[] cardOwner, long cardBase, long[] balances, String[] pinHashes) {
+        parallelChunks(pool, cardOwner.length, (from, to) -> {
+            batchInsert("insert into cards (id, card_number, card_number_hash, pin_hash, balance, held_amount, " +
+                            "active, customer_id, customer_name) values (?, ?, ?, ?, ?, 0, ?, ?, ?)",
+                    from, to, (ps, card) -> {
+                        String cardNumber = cardNumber(card);
+                        ps.setLong(1, cardBase + card);
+                        ps.setString(2, encryptionUtil.encrypt(cardNumber));
+                        ps.setString(3, encryptionUtil.lookupHash(cardNumber));
+                        ps.setString(4, pinHashes[card % 10000]);
+                        ps.setBigDecimal(5, BigDecimal.valueOf(balances[card], 2));
+                        ps.setBoolean(6, true);
+                        ps.setString(7, customerId(cardOwner[card]));
+                        ps.setString(8, customerName(cardOwner[card]));
+                    });
+            for (int card = from; card < to; card++) {
+                issuedCardFilter.addIssuedCard(cardNumber(card));
+            }
+        });
+    }
+
+    private void insertTransactions(ExecutorService pool, long[] events, long[] before, int[] cardOwner,
+                                    long transactionBase, long eventSeed) {
+        LocalDateTime historyStart = LocalDateTime.now().minusDays(historyDays);
+        parallelChunks(pool, events.length, (from, to) -> batchInsert(
+                "insert into transactions (id, card_number, transaction_type, amount, balance_before, balance_after, " +
+                        "status, reason, customer_id, customer_name, timestamp) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                from, to, (ps, i) -> {
+                    int card = (int) events[i];
+                    long hash = mix(eventSeed + i);
+                    int kind = (int) Math.floorMod(hash, 100);
+                    long amount = amountCents(hash);
+                    long after = balanceAfter(eventSeed, i, before[i]);
+                    String type = kind < 58 ? "withdraw" : "topup";
+                    String status = "success";
+                    String reason = null;
+                    if (kind < 3) {
+                        status = "failed";
+                        reason = "Invalid PIN";
+                    } else if (kind < 58 && after == before[i]) {
+                        status = "failed";
+                        reason = "Insufficient balance";
+                    }
+
+                    ps.setLong(1, transactionBase + i);
+                    ps.setString(2, cardNumber(card));
+                    ps.setString(3, type);
+                    ps.setBigDecimal(4, BigDecimal.valueOf(amount, 2));
+                    ps.setBigDecimal(5, BigDecimal.valueOf(before[i], 2));
+                    ps.setBigDecimal(6, BigDecimal.valueOf(after, 2));
+                    ps.setString(7, status);
+                    if (reason != null) {
+                        ps.setString(8, reason);
+                    } else {
+                        ps.setNull(8, Types.VARCHAR);
+                    }
+                    ps.setString(9, customerId(cardOwner[card]));
+                    ps.setString(10, customerName(cardOwner[card]));
+                    ps.setTimestamp(11, Timestamp.valueOf(historyStart.plusSeconds(events[i] >>> 32)));
+                }));
+    }
+
+    private interface RowWriter {
+        void write(PreparedStatement ps, int index) throws SQLException;
+    }
+
+    private interface Chunk {
+        void run(int from, int to);
+    }
+
+    private void parallelChunks(ExecutorService pool, int count, Chunk chunk) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int from = 0; from < count; from += batchSize) {
+            int start = from;
+            int end = Math.min(count, from + batchSize);
+            futures.add(CompletableFuture.runAsync(() -> chunk.run(start, end), pool));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    // One database transaction per chunk, so H2 does not commit row by row
+    private void batchInsert(String sql, int from, int to, RowWriter writer) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql,
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        writer.write(ps, from + i);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return to - from;
+                    }
+                }));
+    }
+
+    private long nextId(String table) {
+        Long max = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+        return max != null ? max + 1 : 1;
+    }
+
+    private void restartIdentity(String table, long next) {
+        jdbcTemplate.execute("alter table " + table + " alter column id restart with " + next);
+    }
+
+    private void writeManifest(int[] hotOrder, int[] cardOwner) {
+        Path manifest = Path.of(manifestPath);
+        try {
+            Files.createDirectories(manifest.toAbsolutePath().getParent());
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(manifest, StandardCharsets.UTF_8))) {
+                writer.println("cardNumber,pin,username,password");
+                // Hottest first, so the load generator's own skew lands on the busiest cards
+                for (int rank = 0; rank < Math.min(manifestCards, hotOrder.length); rank++) {
+                    int card = hotOrder[rank];
+                    writer.println(cardNumber(card) + "," + String.format("%04d", card % 10000) + ","
+                            + usernamePrefix + cardOwner[card] + "," + password);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing synthetic data manifest", e);
+        }
+    }
+
+    private String customerId(int customer) {
+        return customerPrefix + String.format("%08d", customer);
+    }
+
+    private static String customerName(int customer) {
+        return FIRST_NAMES[customer % FIRST_NAMES.length] + " "
+                + LAST_NAMES[(customer / FIRST_NAMES.length) % LAST_NAMES.length];
+    }
+
+    /**
+     * 16-digit number under the configured prefix with a valid Luhn check digit, unique per card index.
+     */
+    String cardNumber(int index) {
+        String body = cardPrefix + String.format("%0" + (15 - cardPrefix.length()) + "d", index);
+        int sum = 0;
+        boolean alternate = true;
+        for (int i = body.length() - 1; i >= 0; i--) {
+            int digit = body.charAt(i) - '0';
+            if (alternate) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            alternate = !alternate;
+        }
+        return body + (10 - (sum % 10)) % 10;
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+
+    // Mostly small amounts with a long tail: 1.00 to about 1000.00
+    private static long amountCents(long hash) {
+        double u = ((hash >>> 11) & ((1L << 40) - 1)) / (double) (1L << 40);
+        return 100 + (long) (99_900 * u * u * u);
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long value) {
+        long z = value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new RuntimeException("Error hashing PIN", e);
+        }
+    }
+}
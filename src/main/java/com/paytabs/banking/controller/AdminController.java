@@ -1,15 +1,114 @@
 package com.paytabs.banking.controller;
 
+import com.paytabs.banking.dto.KeyRotationStatus;
+import com.paytabs.banking.dto.PostingRunStatus;
+import com.paytabs.banking.dto.ReconciliationReport;
+import com.paytabs.banking.dto.StatementRunStatus;
+import com.paytabs.banking.service.CardKeyRotationService;
+import com.paytabs.banking.service.LedgerReconciliationService;
+import com.paytabs.banking.service.PostingService;
+import com.paytabs.banking.service.StatementService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.time.YearMonth;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/admin")
+@RequiredArgsConstructor
 public class AdminController {
 
+    private final LedgerReconciliationService reconciliationService;
+    private final StatementService statementService;
+    private final CardKeyRotationService keyRotationService;
+    private final PostingService postingService;
+
     @GetMapping("/dashboard")
     public String adminDashboard() {
         return "admin/dashboard";
     }
+
+    @PostMapping("/reconciliation/run")
+    @ResponseBody
+    public ResponseEntity<Map<String, String>> runReconciliation() {
+        if (!reconciliationService.startReconciliation()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "Reconciliation already running"));
+        }
+        return ResponseEntity.accepted().body(Map.of("message", "Reconciliation started"));
+    }
+
+    @GetMapping("/reconciliation/report")
+    @ResponseBody
+    public ResponseEntity<ReconciliationReport> reconciliationReport() {
+        ReconciliationReport report = reconciliationService.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping("/statements/run")
+    @ResponseBody
+    public ResponseEntity<Map<String, String>> runStatements(@RequestParam(required = false) String period) {
+        YearMonth month = period != null ? YearMonth.parse(period) : YearMonth.now().minusMonths(1);
+        if (!statementService.startRun(month)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "Statement run already in progress"));
+        }
+        return ResponseEntity.accepted().body(Map.of("message", "Statement run started for " + month));
+    }
+
+    @GetMapping("/statements/status")
+    @ResponseBody
+    public StatementRunStatus statementStatus(@RequestParam String period) {
+        return statementService.getStatus(YearMonth.parse(period));
+    }
+
+    @PostMapping("/postings/run")
+    @ResponseBody
+    public ResponseEntity<Map<String, String>> runPostings(@RequestParam String type,
+                                                           @RequestParam(required = false) String period) {
+        if (!PostingService.TYPES.contains(type)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Posting type must be one of " + PostingService.TYPES));
+        }
+        YearMonth month = period != null ? YearMonth.parse(period) : YearMonth.now().minusMonths(1);
+        if (!postingService.startRun(month, type)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "Posting run already in progress"));
+        }
+        return ResponseEntity.accepted().body(Map.of("message", "Posting " + type + " started for " + month));
+    }
+
+    @GetMapping("/postings/status")
+    @ResponseBody
+    public PostingRunStatus postingStatus(@RequestParam String type, @RequestParam String period) {
+        return postingService.getStatus(YearMonth.parse(period), type);
+    }
+
+    @PostMapping("/encryption/rotation/run")
+    @ResponseBody
+    public ResponseEntity<Map<String, String>> runKeyRotation() {
+        if (!keyRotationService.startRotation()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "Re-encryption already running"));
+        }
+        return ResponseEntity.accepted().body(Map.of("message", "Re-encryption started"));
+    }
+
+    @PostMapping("/encryption/rotation/stop")
+    @ResponseBody
+    public ResponseEntity<Map<String, String>> stopKeyRotation() {
+        if (!keyRotationService.stopRotation()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "Re-encryption is not running"));
+        }
+        return ResponseEntity.accepted().body(Map.of("message", "Re-encryption stopping"));
+    }
+
+    @GetMapping("/encryption/rotation/status")
+    @ResponseBody
+    public KeyRotationStatus keyRotationStatus() {
+        return keyRotationService.getStatus();
+    }
 }
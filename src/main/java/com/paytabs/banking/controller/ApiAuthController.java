@@ -0,0 +1,44 @@
+package com.paytabs.banking.controller;
+
+import com.paytabs.banking.dto.TokenRequest;
+import com.paytabs.banking.dto.TokenResponse;
+import com.paytabs.banking.security.ApiTokenService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/auth")
+@RequiredArgsConstructor
+@Slf4j
+public class ApiAuthController {
+
+    private final AuthenticationManager authenticationManager;
+    private final ApiTokenService apiTokenService;
+
+    /**
+     * Exchanges username/password (or card number/PIN) for a bearer token used on /api/** calls
+     */
+    @PostMapping("/token")
+    public ResponseEntity<TokenResponse> issueToken(@RequestBody TokenRequest request) {
+        if (request.getUsername() == null || request.getPassword() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            Authentication authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(request.getUsername().trim(), request.getPassword()));
+            String token = apiTokenService.issueToken(authentication);
+            return ResponseEntity.ok(new TokenResponse(token, "Bearer", apiTokenService.getTtlSeconds()));
+        } catch (AuthenticationException e) {
+            log.warn("API token request rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.paytabs.banking.controller;
+
+import com.paytabs.banking.service.CustomerVersionTracker;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Conditional GET handling for read endpoints versioned by {@link CustomerVersionTracker}.
+ */
+final class ConditionalGet {
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * Sets the validators and a revalidate-on-every-use cache policy, and returns true if the
+     * client's copy is still current. The response is then already a 304 and the handler should
+     * return null without loading anything.
+     */
+    static boolean isNotModified(ServletWebRequest request, String etag, CustomerVersionTracker.Version version) {
+        return isNotModified(request, etag, version.modifiedMillis());
+    }
+
+    /**
+     * As above for content without a modification time (modifiedMillis -1), validated by ETag only.
+     */
+    static boolean isNotModified(ServletWebRequest request, String etag, long modifiedMillis) {
+        // Replaces Spring Security's no-store default so browsers keep the copy and revalidate it
+        request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        // Last-Modified only has second resolution: a change later in the same second would go unnoticed
+        long lastModified = modifiedMillis >= 0 && System.currentTimeMillis() - modifiedMillis >= 1000 ? modifiedMillis : -1;
+        return request.checkNotModified(etag, lastModified);
+    }
+}
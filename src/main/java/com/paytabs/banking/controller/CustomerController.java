@@ -3,19 +3,25 @@ package com.paytabs.banking.controller;
 import com.paytabs.banking.dto.TransactionRequest;
 import com.paytabs.banking.dto.TransactionResponse;
 import com.paytabs.banking.entity.Card;
+import com.paytabs.banking.service.AdaptiveConcurrencyLimiter;
 import com.paytabs.banking.service.CardService;
+import com.paytabs.banking.service.CustomerVersionTracker;
 import com.paytabs.banking.service.TransactionService;
+import com.paytabs.banking.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.List;
 
 @Controller
 @RequestMapping("/customer")
@@ -25,25 +31,69 @@ public class CustomerController {
 
     private final CardService cardService;
     private final TransactionService transactionService;
-
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final UserService userService;
+    private final CustomerVersionTracker customerVersions;
+
+    @Value("${customer.dashboard.recent-transactions:50}")
+    private int recentTransactions;
+
+    /**
+     * Loads the user, all of their cards and the recent history of the shown cards in four
+     * queries, however many cards the customer has. A revalidation of an unchanged page is
+     * answered with 304 without any query.
+     */
     @GetMapping("/dashboard")
-    public String customerDashboard(Authentication authentication, Model model) {
-        Card customerCard = cardService.getCustomerCard(authentication.getName());
-        if (customerCard == null) {
+    public String customerDashboard(@RequestParam(value = "cardId", required = false) Long cardId,
+                                    Authentication authentication, Model model, ServletWebRequest webRequest) {
+        // A page carrying a flash message from the last action is a one-off and is never revalidated
+        if (customerVersions.isEnabled() && model.asMap().isEmpty()) {
+            String customerId = userService.getCustomerId(authentication.getName());
+            if (customerId != null) {
+                CustomerVersionTracker.Version version = customerVersions.current(customerId);
+                String etag = customerVersions.etag(customerId, "dashboard:" + cardId, version);
+                if (ConditionalGet.isNotModified(webRequest, etag, version)) {
+                    return null;
+                }
+            }
+        }
+
+        List<Card> cards = cardService.getCustomerCards(authentication.getName());
+        if (cards.isEmpty()) {
             return "redirect:/login?error=No card found";
         }
 
-        model.addAttribute("balance", customerCard.getBalance());
-        model.addAttribute("customerId", customerCard.getCustomerId());
-        model.addAttribute("customerName", customerCard.getCustomerName());
-        model.addAttribute("transactions", transactionService.getTransactionsByCustomerId(customerCard.getCustomerId()));
-        model.addAttribute("cardService", cardService);
+        Card selectedCard = cards.stream()
+                .filter(card -> card.getId().equals(cardId))
+                .findFirst()
+                .orElse(cards.get(0));
+        // History covers every card unless the customer picked one
+        List<String> historyCards = cardId != null && selectedCard.getId().equals(cardId)
+                ? List.of(selectedCard.getCardNumber())
+                : cards.stream().map(Card::getCardNumber).toList();
+
+        model.addAttribute("cards", cards);
+        model.addAttribute("selectedCard", selectedCard);
+        model.addAttribute("historyFiltered", historyCards.size() == 1 && cards.size() > 1);
+        model.addAttribute("balance", selectedCard.getBalance());
+        model.addAttribute("customerId", selectedCard.getCustomerId());
+        model.addAttribute("customerName", selectedCard.getCustomerName());
+        model.addAttribute("transactions",
+                transactionService.getRecentTransactionsByCardNumbers(historyCards, recentTransactions));
         return "customer/dashboard";
     }
 
     @GetMapping("/api/id")
     @ResponseBody
-    public ResponseEntity<String> getCustomerId(Authentication authentication) {
+    public ResponseEntity<String> getCustomerId(Authentication authentication, ServletWebRequest webRequest) {
+        if (customerVersions.isEnabled()) {
+            String customerId = userService.getCustomerId(authentication.getName());
+            // The customer id never changes, so neither does its ETag
+            if (customerId != null && ConditionalGet.isNotModified(webRequest,
+                    customerVersions.etag(customerId, "id", new CustomerVersionTracker.Version(0, 0)), -1)) {
+                return null;
+            }
+        }
         Card customerCard = cardService.getCustomerCard(authentication.getName());
         if (customerCard == null) {
             return ResponseEntity.notFound().build();
@@ -53,32 +103,38 @@ public class CustomerController {
 
     @PostMapping("/topup")
     public String processTopup(@RequestParam("amount") double amount,
+                              @RequestParam(value = "cardId", required = false) Long cardId,
                               Authentication authentication,
                               RedirectAttributes redirectAttributes) {
         
-        // Validation
-        if (amount <= 0 || amount > 1000) {
-            redirectAttributes.addFlashAttribute("error", "Top-up amount must be between $0 and $1000");
-            return "redirect:/customer/dashboard";
+        // Validation (the per top-up cap is enforced by the velocity rules in TransactionService)
+        if (amount <= 0) {
+            redirectAttributes.addFlashAttribute("error", "Top-up amount must be positive");
+            return dashboardRedirect(cardId);
         }
 
-        Card customerCard = cardService.getCustomerCard(authentication.getName());
+        Card customerCard = cardService.getCustomerCard(authentication.getName(), cardId);
         if (customerCard == null) {
             redirectAttributes.addFlashAttribute("error", "Card not found");
-            return "redirect:/customer/dashboard";
+            return dashboardRedirect(cardId);
         }
 
         // Get the customer's PIN for processing (in POC, we'll use a simple approach)
-        String customerPin = getCustomerPin(customerCard.getCustomerId());
+        String customerPin = getCardPin(customerCard.getCardNumber());
         
         TransactionRequest request = new TransactionRequest(
                 customerCard.getCardNumber(),
                 customerPin,
                 amount,
-                "topup"
+                "topup",
+                null
         );
 
-        TransactionResponse response = transactionService.processTransaction(request);
+        TransactionResponse response = processWithPermit(request);
+        if (response == null) {
+            redirectAttributes.addFlashAttribute("error", "The system is busy, please try again in a moment");
+            return dashboardRedirect(cardId);
+        }
         
         if (response.isSuccess()) {
             redirectAttributes.addFlashAttribute("success", "Top-up successful! New balance: $" + response.getBalanceAfter());
@@ -86,43 +142,49 @@ public class CustomerController {
             redirectAttributes.addFlashAttribute("error", response.getMessage());
         }
 
-        return "redirect:/customer/dashboard";
+        return dashboardRedirect(cardId);
     }
 
     @PostMapping("/withdraw")
     public String processWithdrawal(@RequestParam("amount") double amount,
+                                   @RequestParam(value = "cardId", required = false) Long cardId,
                                    Authentication authentication,
                                    RedirectAttributes redirectAttributes) {
         
         // Validation
         if (amount <= 0) {
             redirectAttributes.addFlashAttribute("error", "Withdrawal amount must be positive");
-            return "redirect:/customer/dashboard";
+            return dashboardRedirect(cardId);
         }
 
-        Card customerCard = cardService.getCustomerCard(authentication.getName());
+        Card customerCard = cardService.getCustomerCard(authentication.getName(), cardId);
         if (customerCard == null) {
             redirectAttributes.addFlashAttribute("error", "Card not found");
-            return "redirect:/customer/dashboard";
+            return dashboardRedirect(cardId);
         }
 
         // Check if sufficient balance
-        if (customerCard.getBalance().doubleValue() < amount) {
+        if (customerCard.getBalance().subtract(customerCard.getHeldAmount()).doubleValue() < amount) {
             redirectAttributes.addFlashAttribute("error", "Insufficient balance");
-            return "redirect:/customer/dashboard";
+            return dashboardRedirect(cardId);
         }
 
         // Get the customer's PIN for processing
-        String customerPin = getCustomerPin(customerCard.getCustomerId());
+        String customerPin = getCardPin(customerCard.getCardNumber());
         
         TransactionRequest request = new TransactionRequest(
                 customerCard.getCardNumber(),
                 customerPin,
                 amount,
-                "withdraw"
+                "withdraw",
+                null
         );
 
-        TransactionResponse response = transactionService.processTransaction(request);
+        TransactionResponse response = processWithPermit(request);
+        if (response == null) {
+            redirectAttributes.addFlashAttribute("error", "The system is busy, please try again in a moment");
+            return dashboardRedirect(cardId);
+        }
         
         if (response.isSuccess()) {
             redirectAttributes.addFlashAttribute("success", "Withdrawal successful! New balance: $" + response.getBalanceAfter());
@@ -130,16 +192,34 @@ public class CustomerController {
             redirectAttributes.addFlashAttribute("error", response.getMessage());
         }
 
-        return "redirect:/customer/dashboard";
+        return dashboardRedirect(cardId);
+    }
+
+    // Dashboard requests may use the whole concurrency limit; returns null when even that is taken
+    private TransactionResponse processWithPermit(TransactionRequest request) {
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.CUSTOMER);
+        if (permit == null) {
+            return null;
+        }
+        try {
+            return transactionService.processTransaction(request);
+        } finally {
+            permit.release();
+        }
+    }
+
+    private String dashboardRedirect(Long cardId) {
+        return cardId != null ? "redirect:/customer/dashboard?cardId=" + cardId : "redirect:/customer/dashboard";
     }
 
-    // Helper method to get customer PIN (for POC simplicity)
-    private String getCustomerPin(String customerId) {
+    // Helper method to get the card's PIN (for POC simplicity)
+    private String getCardPin(String cardNumber) {
         // In a real system, this would be more secure
-        // For POC, we'll use a simple mapping
-        switch (customerId) {
-            case "CUST001": return "1234";
-            case "CUST002": return "5678";
+        // For POC, we'll use a simple mapping of the sample cards
+        switch (cardNumber) {
+            case "4111111111111111": return "1234";
+            case "4222222222222222": return "5678";
+            case "5111111111111118": return "9999";
             default: return "0000";
         }
     }
@@ -0,0 +1,57 @@
+package com.paytabs.banking.controller;
+
+import com.paytabs.banking.dto.HoldRequest;
+import com.paytabs.banking.dto.HoldResponse;
+import com.paytabs.banking.service.HoldService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+
+@RestController
+@RequestMapping("/api/holds")
+@RequiredArgsConstructor
+@Slf4j
+public class HoldController {
+
+    private final HoldService holdService;
+
+    /**
+     * Reserves an amount on the card until it is captured, voided or expires
+     */
+    @PostMapping
+    public ResponseEntity<HoldResponse> authorize(@RequestBody HoldRequest request, Authentication authentication) {
+        if (request.getCardNumber() == null || request.getPin() == null || request.getAmount() == null
+                || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            return ResponseEntity.badRequest().body(
+                new HoldResponse(false, "Invalid request parameters", null, "failed", null, null, null, null)
+            );
+        }
+        return ResponseEntity.ok(holdService.authorize(request, authentication.getName()));
+    }
+
+    /**
+     * Captures the hold; the body may give a smaller amount than was held. Only the API user that
+     * placed the hold, or an admin, may capture or void it.
+     */
+    @PostMapping("/{holdId}/capture")
+    public ResponseEntity<HoldResponse> capture(@PathVariable Long holdId,
+                                                @RequestBody(required = false) HoldRequest request,
+                                                Authentication authentication) {
+        return ResponseEntity.ok(holdService.capture(holdId, request != null ? request.getAmount() : null,
+                authentication.getName(), isAdmin(authentication)));
+    }
+
+    @PostMapping("/{holdId}/void")
+    public ResponseEntity<HoldResponse> voidHold(@PathVariable Long holdId, Authentication authentication) {
+        return ResponseEntity.ok(holdService.voidHold(holdId, authentication.getName(), isAdmin(authentication)));
+    }
+
+    private static boolean isAdmin(Authentication authentication) {
+        return authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN"));
+    }
+}
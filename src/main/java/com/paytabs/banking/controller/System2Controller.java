@@ -1,14 +1,20 @@
 package com.paytabs.banking.controller;
 
 import com.paytabs.banking.dto.ProcessTransactionRequest;
-import com.paytabs.banking.dto.TransactionRequest;
 import com.paytabs.banking.dto.TransactionResponse;
+import com.paytabs.banking.service.AdaptiveConcurrencyLimiter;
+import com.paytabs.banking.service.CardShardExecutor;
 import com.paytabs.banking.service.System2Service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
+import java.util.concurrent.CompletionException;
+
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
@@ -16,6 +22,8 @@ import org.springframework.web.bind.annotation.*;
 public class System2Controller {
 
     private final System2Service system2Service;
+    private final CardShardExecutor cardShardExecutor;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
 
     /**
      * System 2: Direct processing endpoint (for external systems)
@@ -23,22 +31,44 @@ public class System2Controller {
     @PostMapping("/process")
     public ResponseEntity<TransactionResponse> processDirectTransaction(@RequestBody ProcessTransactionRequest request) {
         log.info("System 2: Received direct processing request");
-        
-        // Convert ProcessTransactionRequest to TransactionRequest for internal processing
-        // Note: PIN is already hashed in ProcessTransactionRequest, so we need special handling
-        TransactionRequest internalRequest = new TransactionRequest(
-                request.getCardNumber(),
-                "HASHED_PIN", // Placeholder - actual hashing will be handled differently
-                request.getAmount().doubleValue(),
-                request.getType()
-        );
-        
-        log.info("System 2: Processing transaction with pre-hashed PIN");
-        
-        // For direct API calls, PIN is already hashed, so we use a different processing method
-        // In a real system, you'd have a different method that doesn't re-hash the PIN
-        TransactionResponse response = system2Service.processTransaction(internalRequest);
-        
-        return ResponseEntity.ok(response);
+
+        // Basic validation
+        if (request.getCardNumber() == null || request.getPinHash() == null || request.getAmount() == null
+                || request.getAmount().compareTo(BigDecimal.ZERO) <= 0 || request.getType() == null) {
+            return ResponseEntity.badRequest().body(
+                new TransactionResponse(false, "Invalid request parameters", "failed", null, null, null, null)
+            );
+        }
+
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.API);
+        if (permit == null) {
+            return busy();
+        }
+
+        // PIN is already hashed by the caller, so it is verified as-is on the card's shard
+        try {
+            long submitted = System.nanoTime();
+            TransactionResponse response = cardShardExecutor.submit(request.getCardNumber(), () -> {
+                TransactionResponse result = system2Service.processPreHashedTransaction(request);
+                concurrencyLimiter.recordLatency(System.nanoTime() - submitted);
+                return result;
+            }).join();
+            return ResponseEntity.ok(response);
+        } catch (CompletionException e) {
+            if (AdaptiveConcurrencyLimiter.isOverload(e.getCause())) {
+                // A full shard queue or exhausted connection pool is load shedding, not a server fault
+                concurrencyLimiter.recordDrop();
+                return busy();
+            }
+            throw e;
+        } finally {
+            permit.release();
+        }
+    }
+
+    private ResponseEntity<TransactionResponse> busy() {
+        return ResponseEntity.status(concurrencyLimiter.isSaturated() ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new TransactionResponse(false, "System busy, please retry", "failed", null, null, null, null));
     }
 }
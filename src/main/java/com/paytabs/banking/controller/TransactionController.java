@@ -2,12 +2,20 @@ package com.paytabs.banking.controller;
 
 import com.paytabs.banking.dto.TransactionRequest;
 import com.paytabs.banking.dto.TransactionResponse;
-import com.paytabs.banking.entity.Transaction;
+import com.paytabs.banking.dto.TransactionView;
+import com.paytabs.banking.service.AdaptiveConcurrencyLimiter;
+import com.paytabs.banking.service.CustomerVersionTracker;
 import com.paytabs.banking.service.TransactionService;
+import com.paytabs.banking.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
 
@@ -18,6 +26,9 @@ import java.util.List;
 public class TransactionController {
 
     private final TransactionService transactionService;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final CustomerVersionTracker customerVersions;
+    private final UserService userService;
 
     /**
      * System 1: Main transaction endpoint
@@ -34,31 +45,84 @@ public class TransactionController {
             );
         }
         
-        if (!("withdraw".equals(request.getType()) || "topup".equals(request.getType()))) {
+        if (!("withdraw".equals(request.getType()) || "topup".equals(request.getType())
+                || "transfer".equals(request.getType()))) {
             return ResponseEntity.badRequest().body(
-                new TransactionResponse(false, "Transaction type must be 'withdraw' or 'topup'", "failed", null, null, null, null)
+                new TransactionResponse(false, "Transaction type must be 'withdraw', 'topup' or 'transfer'", "failed", null, null, null, null)
+            );
+        }
+
+        if ("transfer".equals(request.getType()) && request.getTargetCardNumber() == null) {
+            return ResponseEntity.badRequest().body(
+                new TransactionResponse(false, "Transfer requires a target card number", "failed", null, null, null, null)
             );
         }
         
-        TransactionResponse response = transactionService.processTransaction(request);
-        return ResponseEntity.ok(response);
+        // Over the concurrency limit: fail fast rather than queue until the client times out.
+        // 429 while only bulk API traffic is being shed, 503 once customer traffic is too
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.API);
+        if (permit == null) {
+            return ResponseEntity.status(concurrencyLimiter.isSaturated() ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(new TransactionResponse(false, "System busy, please retry", "failed", null, null, null, null));
+        }
+        try {
+            TransactionResponse response = transactionService.processTransaction(request);
+            return ResponseEntity.ok(response);
+        } finally {
+            permit.release();
+        }
     }
 
     /**
      * Get all transactions (for Super Admin UI)
      */
     @GetMapping("/transactions/all")
-    public ResponseEntity<List<Transaction>> getAllTransactions() {
-        List<Transaction> transactions = transactionService.getAllTransactions();
+    public ResponseEntity<List<TransactionView>> getAllTransactions(ServletWebRequest webRequest) {
+        if (customerVersions.isEnabled()) {
+            CustomerVersionTracker.Version version = customerVersions.global();
+            if (ConditionalGet.isNotModified(webRequest, customerVersions.etag("*", "all", version), version)) {
+                return null;
+            }
+        }
+        List<TransactionView> transactions = transactionService.getAllTransactions();
         return ResponseEntity.ok(transactions);
     }
 
     /**
-     * Get transactions for a specific customer (for Customer UI)
+     * Search transactions (for Super Admin UI), newest first
+     */
+    @GetMapping("/transactions/search")
+    public ResponseEntity<List<TransactionView>> searchTransactions(@RequestParam("q") String query,
+                                                                    @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        if (!transactionService.isSearchEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(transactionService.searchTransactions(query, Math.min(limit, 500)));
+    }
+
+    /**
+     * Get transactions for a specific customer (for Customer UI); 304 without a query while unchanged.
+     * Customers may only read their own history; admins may read anyone's.
      */
     @GetMapping("/transactions/customer/{customerId}")
-    public ResponseEntity<List<Transaction>> getCustomerTransactions(@PathVariable String customerId) {
-        List<Transaction> transactions = transactionService.getTransactionsByCustomerId(customerId);
+    public ResponseEntity<List<TransactionView>> getCustomerTransactions(@PathVariable String customerId,
+                                                                         Authentication authentication,
+                                                                         ServletWebRequest webRequest) {
+        if (!isAdmin(authentication) && !customerId.equals(userService.getCustomerId(authentication.getName()))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (customerVersions.isEnabled()) {
+            CustomerVersionTracker.Version version = customerVersions.current(customerId);
+            if (ConditionalGet.isNotModified(webRequest, customerVersions.etag(customerId, "history", version), version)) {
+                return null;
+            }
+        }
+        List<TransactionView> transactions = transactionService.getTransactionsByCustomerId(customerId);
         return ResponseEntity.ok(transactions);
     }
+
+    private static boolean isAdmin(Authentication authentication) {
+        return authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN"));
+    }
 }
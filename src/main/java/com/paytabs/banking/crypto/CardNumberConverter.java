@@ -1,5 +1,6 @@
 package com.paytabs.banking.crypto;
 
+import com.paytabs.banking.profiling.StageEvent;
 import org.springframework.stereotype.Component;
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Converter;
@@ -16,11 +17,21 @@ public class CardNumberConverter implements AttributeConverter<String, String> {
 
     @Override
     public String convertToDatabaseColumn(String attribute) {
-        return encryptionUtil.encrypt(attribute);
+        StageEvent event = StageEvent.begin("card.encrypt");
+        try {
+            return encryptionUtil.encrypt(attribute);
+        } finally {
+            event.finish(null);
+        }
     }
 
     @Override
     public String convertToEntityAttribute(String dbData) {
-        return encryptionUtil.decrypt(dbData);
+        StageEvent event = StageEvent.begin("card.decrypt");
+        try {
+            return encryptionUtil.decrypt(dbData);
+        } finally {
+            event.finish(null);
+        }
     }
 }
@@ -0,0 +1,30 @@
+package com.paytabs.banking.crypto;
+
+import org.springframework.stereotype.Component;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores a card number as its keyed lookup hash, so JPQL comparisons against a plain card number
+ * parameter match the stored hash. Hashes read back from the database are kept as they are.
+ */
+@Converter
+@Component
+public class CardNumberLookupConverter implements AttributeConverter<String, String> {
+
+    private final EncryptionUtil encryptionUtil;
+
+    public CardNumberLookupConverter(EncryptionUtil encryptionUtil) {
+        this.encryptionUtil = encryptionUtil;
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String attribute) {
+        return EncryptionUtil.isLookupHash(attribute) ? attribute : encryptionUtil.lookupHash(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(String dbData) {
+        return dbData;
+    }
+}
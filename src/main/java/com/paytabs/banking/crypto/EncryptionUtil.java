@@ -3,35 +3,130 @@ package com.paytabs.banking.crypto;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import jakarta.annotation.PostConstruct;
 
+/**
+ * Encrypts card numbers with versioned AES-GCM keys.
+ *
+ * Ciphertexts are stored as {@code <keyId>:<base64(iv || ciphertext || tag)>}, with the key id
+ * authenticated as associated data, so the key a value was written with can be read off the
+ * column and rows can be moved to a new key one at a time. Values without a key id are from
+ * before key versioning and are decrypted with the legacy AES/ECB key.
+ *
+ * Encryption uses a random IV, so equal card numbers no longer produce equal ciphertexts;
+ * equality lookups go through {@link #lookupHash(String)} instead.
+ */
 @Component
 public class EncryptionUtil {
 
     private static final String ALGORITHM = "AES";
-    private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final String LEGACY_TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String LOOKUP_ALGORITHM = "HmacSHA256";
+    private static final String LOOKUP_PREFIX = "h1:";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final char KEY_ID_SEPARATOR = ':';
+
+    private final SecureRandom random = new SecureRandom();
 
     @Value("${encryption.secret.key}")
     private String secretKey;
+    @Value("${encryption.keys}")
+    private String keyring;
+    @Value("${encryption.active-key-id}")
+    private String activeKeyId;
+    @Value("${encryption.lookup.secret}")
+    private String lookupSecret;
     private SecretKeySpec key;
+    private Map<String, SecretKeySpec> keys;
+    private ThreadLocal<Cipher> cipher;
+    private ThreadLocal<Mac> lookupMac;
 
     @PostConstruct
     public void setup() {
+        // No working default ships with the code; local profiles take theirs from application-local-keys
+        if (keyring.isBlank() || lookupSecret.isBlank()) {
+            throw new IllegalStateException("encryption.keys and encryption.lookup.secret are not set; provide them "
+                    + "through ENCRYPTION_KEYS and ENCRYPTION_LOOKUP_SECRET or external configuration");
+        }
         this.key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        Map<String, SecretKeySpec> parsed = new LinkedHashMap<>();
+        for (String entry : keyring.split(",")) {
+            int separator = entry.indexOf(KEY_ID_SEPARATOR);
+            if (separator <= 0) {
+                throw new IllegalStateException("encryption.keys entries must be <keyId>:<base64 key>");
+            }
+            byte[] material = Base64.getDecoder().decode(entry.substring(separator + 1).trim());
+            parsed.put(entry.substring(0, separator).trim(), new SecretKeySpec(material, ALGORITHM));
+        }
+        if (!parsed.containsKey(activeKeyId)) {
+            throw new IllegalStateException("Active encryption key " + activeKeyId + " is not in encryption.keys");
+        }
+        this.keys = Collections.unmodifiableMap(parsed);
+        SecretKeySpec lookupKey = new SecretKeySpec(lookupSecret.getBytes(StandardCharsets.UTF_8), LOOKUP_ALGORITHM);
+        // Cipher and Mac lookups cost more than encrypting a card number, so each thread keeps its own
+        this.cipher = ThreadLocal.withInitial(() -> {
+            try {
+                return Cipher.getInstance(TRANSFORMATION);
+            } catch (Exception e) {
+                throw new RuntimeException("Error initializing cipher", e);
+            }
+        });
+        this.lookupMac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(LOOKUP_ALGORITHM);
+                instance.init(lookupKey);
+                return instance;
+            } catch (Exception e) {
+                throw new RuntimeException("Error initializing lookup hash", e);
+            }
+        });
     }
-    
+
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    /**
+     * Returns the id of the key the value was encrypted with, or null for legacy ECB values.
+     */
+    public static String keyIdOf(String encryptedData) {
+        if (encryptedData == null) {
+            return null;
+        }
+        int separator = encryptedData.indexOf(KEY_ID_SEPARATOR);
+        return separator > 0 ? encryptedData.substring(0, separator) : null;
+    }
+
+    public boolean isCurrent(String encryptedData) {
+        return activeKeyId.equals(keyIdOf(encryptedData));
+    }
+
     public String encrypt(String data) {
         if (data == null) {
             return null;
         }
         try {
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.ENCRYPT_MODE, key);
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = this.cipher.get();
+            cipher.init(Cipher.ENCRYPT_MODE, keys.get(activeKeyId), new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(activeKeyId.getBytes(StandardCharsets.UTF_8));
             byte[] encryptedBytes = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(encryptedBytes);
+            byte[] stored = new byte[IV_LENGTH + encryptedBytes.length];
+            System.arraycopy(iv, 0, stored, 0, IV_LENGTH);
+            System.arraycopy(encryptedBytes, 0, stored, IV_LENGTH, encryptedBytes.length);
+            return activeKeyId + KEY_ID_SEPARATOR + Base64.getEncoder().encodeToString(stored);
         } catch (Exception e) {
             throw new RuntimeException("Error encrypting data", e);
         }
@@ -41,8 +136,49 @@ public class EncryptionUtil {
         if (encryptedData == null) {
             return null;
         }
+        String keyId = keyIdOf(encryptedData);
+        if (keyId == null) {
+            return decryptLegacy(encryptedData);
+        }
+        SecretKeySpec versionedKey = keys.get(keyId);
+        if (versionedKey == null) {
+            throw new RuntimeException("Error decrypting data: unknown key " + keyId);
+        }
+        try {
+            byte[] stored = Base64.getDecoder().decode(encryptedData.substring(keyId.length() + 1));
+            Cipher cipher = this.cipher.get();
+            cipher.init(Cipher.DECRYPT_MODE, versionedKey, new GCMParameterSpec(TAG_BITS, stored, 0, IV_LENGTH));
+            cipher.updateAAD(keyId.getBytes(StandardCharsets.UTF_8));
+            byte[] decryptedBytes = cipher.doFinal(stored, IV_LENGTH, stored.length - IV_LENGTH);
+            return new String(decryptedBytes, StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            throw new RuntimeException("Error decrypting data", e);
+        }
+    }
+
+    /**
+     * Keyed hash of a card number for equality lookups. It does not change when the encryption
+     * key is rotated, so lookups keep working while rows are being re-encrypted.
+     */
+    public String lookupHash(String data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            byte[] digest = lookupMac.get().doFinal(data.getBytes(StandardCharsets.UTF_8));
+            return LOOKUP_PREFIX + Base64.getEncoder().encodeToString(digest);
+        } catch (Exception e) {
+            throw new RuntimeException("Error hashing data", e);
+        }
+    }
+
+    public static boolean isLookupHash(String value) {
+        return value != null && value.startsWith(LOOKUP_PREFIX);
+    }
+
+    private String decryptLegacy(String encryptedData) {
         try {
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            Cipher cipher = Cipher.getInstance(LEGACY_TRANSFORMATION);
             cipher.init(Cipher.DECRYPT_MODE, key);
             byte[] decodedBytes = Base64.getDecoder().decode(encryptedData);
             byte[] decryptedBytes = cipher.doFinal(decodedBytes);
@@ -0,0 +1,18 @@
+package com.paytabs.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Card plus owning user fields needed for card/PIN login, loaded in a single query.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardCredentials {
+    private String pinHash;
+    private boolean active;
+    private String username;
+    private String role;
+}
@@ -0,0 +1,17 @@
+package com.paytabs.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldRequest {
+    private String cardNumber;
+    private String pin;
+    /** Amount to reserve, or for a capture the amount to take (defaults to the full hold) */
+    private BigDecimal amount;
+}
@@ -0,0 +1,22 @@
+package com.paytabs.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldResponse {
+    private boolean success;
+    private String message;
+    private Long holdId;
+    private String status;
+    private BigDecimal amount;
+    private BigDecimal availableBalance;
+    private LocalDateTime expiresAt;
+    private String transactionId;
+}
@@ -0,0 +1,21 @@
+package com.paytabs.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeyRotationStatus {
+    private String activeKeyId;
+    private boolean running;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long rowsToRewrite;
+    private long rowsRewritten;
+    private long rowsSkipped;
+    private long rowsFailed;
+}
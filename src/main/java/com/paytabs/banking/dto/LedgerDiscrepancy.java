@@ -0,0 +1,20 @@
+package com.paytabs.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerDiscrepancy {
+    /** CHAIN_GAP, ARITHMETIC or BALANCE_MISMATCH */
+    private String kind;
+    private Long cardId;
+    private String cardLast4;
+    private Long transactionId;
+    private BigDecimal expected;
+    private BigDecimal actual;
+}
@@ -0,0 +1,20 @@
+package com.paytabs.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostingRunStatus {
+    private String period;
+    private String type;
+    private boolean running;
+    private int partitions;
+    private int completedPartitions;
+    private long cardsPosted;
+    private BigDecimal amountPosted;
+}
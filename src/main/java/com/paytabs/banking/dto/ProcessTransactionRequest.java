@@ -14,4 +14,6 @@ public class ProcessTransactionRequest {
     private String pinHash;
     private BigDecimal amount;
     private String type;
+    /** Card credited by a transfer; unused for other types */
+    private String targetCardNumber;
 } 
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.paytabs.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationReport {
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long cardsChecked;
+    private long transactionsScanned;
+    private long discrepancyCount;
+    /** First discrepancies found, capped to keep the report small */
+    private List<LedgerDiscrepancy> discrepancies;
+}
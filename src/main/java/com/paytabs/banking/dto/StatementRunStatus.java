@@ -0,0 +1,16 @@
+package com.paytabs.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementRunStatus {
+    private String period;
+    private boolean running;
+    private int partitions;
+    private int completedPartitions;
+    private long statementsWritten;
+}
@@ -0,0 +1,26 @@
+package com.paytabs.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Outbox payload for a balance change. Carries only the last four card digits.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionEvent {
+    private Long transactionId;
+    private Long linkedTransactionId;
+    private String cardLast4;
+    private String transactionType;
+    private BigDecimal amount;
+    private BigDecimal balanceBefore;
+    private BigDecimal balanceAfter;
+    private String customerId;
+    private LocalDateTime timestamp;
+}
@@ -12,4 +12,6 @@ public class TransactionRequest {
     private String pin;
     private double amount;
     private String type;
+    /** Card credited by a transfer; unused for other types */
+    private String targetCardNumber;
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.paytabs.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only transaction row for listings. Populated straight from a JPQL constructor
+ * expression, so no managed entities are created or dirty-checked.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionView {
+    private Long id;
+    private String cardNumber;
+    private String transactionType;
+    private BigDecimal amount;
+    private BigDecimal balanceBefore;
+    private BigDecimal balanceAfter;
+    private String status;
+    private String reason;
+    private String customerId;
+    private String customerName;
+    private LocalDateTime timestamp;
+}
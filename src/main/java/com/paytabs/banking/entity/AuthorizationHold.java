@@ -0,0 +1,38 @@
+package com.paytabs.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Pre-authorization that reserves part of a card's balance until it is captured, voided or expires.
+ */
+@Entity
+@Table(name = "authorization_holds", indexes = @Index(columnList = "status"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuthorizationHold {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long cardId;
+    private String cardNumber;
+    /** API user that placed the hold; only it (or an admin) may capture or void it */
+    private String authorizedBy;
+    private BigDecimal amount;
+    /** PENDING, CAPTURED, VOIDED or EXPIRED */
+    private String status;
+    private BigDecimal capturedAmount;
+    private Long transactionId;
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+    private LocalDateTime closedAt;
+}
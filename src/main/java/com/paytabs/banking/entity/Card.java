@@ -1,15 +1,17 @@
 package com.paytabs.banking.entity;
 
 import com.paytabs.banking.crypto.CardNumberConverter;
+import com.paytabs.banking.crypto.CardNumberLookupConverter;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "cards")
+@Table(name = "cards", indexes = @Index(name = "idx_cards_card_number_hash", columnList = "card_number_hash", unique = true))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -21,9 +23,24 @@ public class Card {
     @Convert(converter = CardNumberConverter.class)
     private String cardNumber;
 
+    /** Keyed hash of the card number; lookups compare against this because cardNumber is encrypted with a random IV */
+    @Convert(converter = CardNumberLookupConverter.class)
+    @Column(name = "card_number_hash")
+    private String cardNumberLookup;
+
     private String pinHash;
     private BigDecimal balance;
+
+    /** Sum of pending authorization holds; the available balance is balance minus this */
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private BigDecimal heldAmount = BigDecimal.ZERO;
     private boolean active;
     private String customerId;
     private String customerName;
+
+    public void setCardNumber(String cardNumber) {
+        this.cardNumber = cardNumber;
+        this.cardNumberLookup = cardNumber;
+    }
 }
@@ -0,0 +1,31 @@
+package com.paytabs.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Event written in the same database transaction as the balance change it describes, and later
+ * delivered to downstream consumers by OutboxRelay in id order.
+ */
+@Entity
+@Table(name = "outbox_events")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String eventType;
+    private Long transactionId;
+
+    @Column(length = 2000)
+    private String payload;
+
+    private LocalDateTime createdAt;
+}
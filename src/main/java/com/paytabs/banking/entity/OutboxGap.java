@@ -0,0 +1,28 @@
+package com.paytabs.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outbox event id a consumer's offset moved past while no committed row had it yet. The relay
+ * delivers the event if its transaction commits later, or drops the gap once it times out.
+ */
+@Entity
+@Table(name = "outbox_gaps",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"consumer", "eventId"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxGap {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String consumer;
+    private long eventId;
+    private LocalDateTime recordedAt;
+}
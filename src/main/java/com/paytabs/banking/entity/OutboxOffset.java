@@ -0,0 +1,24 @@
+package com.paytabs.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Last outbox event id acknowledged by a consumer (sink).
+ */
+@Entity
+@Table(name = "outbox_offsets")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxOffset {
+    @Id
+    private String consumer;
+
+    private long lastEventId;
+    private LocalDateTime updatedAt;
+}
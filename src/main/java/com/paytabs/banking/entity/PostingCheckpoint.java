@@ -0,0 +1,39 @@
+package com.paytabs.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of one card id partition of a fee or interest posting run. lastCardId advances in the
+ * same database transaction as the chunk it covers, so each card is posted at most once per
+ * period and type.
+ */
+@Entity
+@Table(name = "posting_checkpoints",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"postingPeriod", "postingType", "partitionIndex"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostingCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Posting period as yyyy-MM */
+    private String postingPeriod;
+    /** fee or interest */
+    private String postingType;
+    private int partitionIndex;
+    private long rangeStart;
+    private long rangeEnd;
+    private long lastCardId;
+    private long cardsPosted;
+    private BigDecimal amountPosted;
+    private boolean completed;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,34 @@
+package com.paytabs.banking.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of one user id partition of a monthly statement run. A restarted run resumes each
+ * partition after lastUserId.
+ */
+@Entity
+@Table(name = "statement_checkpoints",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"statementMonth", "partitionIndex"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Statement month as yyyy-MM */
+    private String statementMonth;
+    private int partitionIndex;
+    private long rangeStart;
+    private long rangeEnd;
+    private long lastUserId;
+    private long statementsWritten;
+    private boolean completed;
+    private LocalDateTime updatedAt;
+}
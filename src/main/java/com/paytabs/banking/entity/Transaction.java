@@ -10,7 +10,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = @Index(name = "idx_transactions_card_number", columnList = "cardNumber, timestamp"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,6 +30,9 @@ public class Transaction {
     private String customerId;
     private String customerName;
 
+    /** The other half of a transfer (transfer_out <-> transfer_in) */
+    private Long linkedTransactionId;
+
     @Builder.Default
     private LocalDateTime timestamp = LocalDateTime.now();
 }
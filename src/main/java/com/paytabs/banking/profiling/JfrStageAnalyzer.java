@@ -0,0 +1,96 @@
+package com.paytabs.banking.profiling;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Offline summary of StageEvent latencies from one or more .jfr files (or directories of them).
+ *
+ * Usage: {@code java -cp target/classes com.paytabs.banking.profiling.JfrStageAnalyzer data/jfr}
+ *
+ * Prints count, p50/p90/p99/max and total time per stage, followed by the outcome counts.
+ */
+public final class JfrStageAnalyzer {
+
+    private JfrStageAnalyzer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: JfrStageAnalyzer <recording.jfr|directory>...");
+            System.exit(1);
+        }
+
+        Map<String, StageStats> stages = new TreeMap<>();
+        for (String arg : args) {
+            for (Path file : recordings(Path.of(arg))) {
+                for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                    if (StageEvent.NAME.equals(event.getEventType().getName())) {
+                        stages.computeIfAbsent(event.getString("stage"), stage -> new StageStats())
+                                .add(event.getDuration().toNanos(), event.getString("outcome"));
+                    }
+                }
+            }
+        }
+
+        if (stages.isEmpty()) {
+            System.out.println("No " + StageEvent.NAME + " events found");
+            return;
+        }
+        System.out.printf("%-22s %10s %10s %10s %10s %10s %12s%n",
+                "stage", "count", "p50 ms", "p90 ms", "p99 ms", "max ms", "total ms");
+        stages.forEach((stage, stats) -> stats.print(stage));
+        System.out.println();
+        stages.forEach((stage, stats) -> stats.outcomes.forEach((outcome, count) ->
+                System.out.printf("%-22s %-16s %10d%n", stage, outcome, count)));
+    }
+
+    private static List<Path> recordings(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(file -> file.toString().endsWith(".jfr")).sorted().toList();
+        }
+    }
+
+    private static final class StageStats {
+        private final List<Long> durations = new ArrayList<>();
+        private final Map<String, Long> outcomes = new TreeMap<>();
+
+        void add(long nanos, String outcome) {
+            durations.add(nanos);
+            if (outcome != null) {
+                outcomes.merge(outcome, 1L, Long::sum);
+            }
+        }
+
+        void print(String stage) {
+            long[] sorted = durations.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            long total = Arrays.stream(sorted).sum();
+            System.out.printf("%-22s %10d %10.3f %10.3f %10.3f %10.3f %12.1f%n", stage, sorted.length,
+                    millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.90)),
+                    millis(percentile(sorted, 0.99)), millis(sorted[sorted.length - 1]), millis(total));
+        }
+
+        private static long percentile(long[] sorted, double quantile) {
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)];
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
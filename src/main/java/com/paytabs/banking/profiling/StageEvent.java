@@ -0,0 +1,60 @@
+package com.paytabs.banking.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event timing one stage of transaction processing or login (card lookup, PIN
+ * hashing, encryption, commit, ...). Enabled with no threshold and no stack trace so a
+ * continuous recording captures every occurrence cheaply; see JfrStageAnalyzer.
+ *
+ * Usage: {@code StageEvent event = StageEvent.begin("card.lookup"); ...; event.finish("found");}
+ */
+@Name(StageEvent.NAME)
+@Label("Banking Stage")
+@Description("Duration of one processing stage")
+@Category({"PayTabs Bank", "Transactions"})
+@Enabled
+@Threshold("0 ms")
+@StackTrace(false)
+public class StageEvent extends Event {
+
+    public static final String NAME = "com.paytabs.banking.Stage";
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Outcome")
+    String outcome;
+
+    public static StageEvent begin(String stage) {
+        StageEvent event = new StageEvent();
+        event.stage = stage;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Whether a running recording currently collects stage events; lets callers skip setup work.
+     */
+    public static boolean isStageRecorded() {
+        return new StageEvent().isEnabled();
+    }
+
+    /**
+     * Ends the stage and records it if the event is enabled in the running recording.
+     */
+    public void finish(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
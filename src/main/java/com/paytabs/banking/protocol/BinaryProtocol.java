@@ -0,0 +1,115 @@
+package com.paytabs.banking.protocol;
+
+import com.paytabs.banking.dto.ProcessTransactionRequest;
+import com.paytabs.banking.dto.TransactionResponse;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.HexFormat;
+
+/**
+ * Wire format of the binary transaction protocol. All integers are big-endian and every frame is
+ * prefixed with its length, excluding the length field itself:
+ *
+ * <pre>
+ * request:  int32 length | int8 opcode | int32 requestId | body
+ *   AUTH     body: uint16 tokenLength | API bearer token (ASCII)
+ *   PROCESS  body: int8 type (1 withdraw, 2 topup, 3 transfer) | int64 amount in cents
+ *                  | int8 cardLength | card number (ASCII) | 32 bytes SHA-256 digest of the PIN
+ *                  | int8 targetLength | target card number (ASCII, length 0 unless transfer)
+ * response: int32 length | int8 opcode (request opcode | 0x80) | int32 requestId | int8 status
+ *           | int64 amount in cents | int64 balance after in cents | int64 transaction id
+ *           | int64 timestamp in epoch ms | uint16 messageLength | message (UTF-8)
+ * </pre>
+ *
+ * Unknown amounts, balances and ids are sent as {@link #NONE}. Responses carry the request id
+ * they answer and may arrive in a different order than the requests.
+ */
+public final class BinaryProtocol {
+
+    public static final byte AUTH = 1;
+    public static final byte PROCESS = 2;
+    public static final byte RESPONSE_FLAG = (byte) 0x80;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_DECLINED = 1;
+    public static final byte STATUS_BAD_REQUEST = 2;
+    public static final byte STATUS_BUSY = 3;
+    public static final byte STATUS_UNAUTHORIZED = 4;
+    public static final byte STATUS_ERROR = 5;
+
+    public static final long NONE = Long.MIN_VALUE;
+    public static final int MAX_FRAME = 1024;
+
+    static final String[] STATUS_NAMES = {"ok", "declined", "bad_request", "busy", "unauthorized", "error"};
+
+    private static final String[] TYPES = {null, "withdraw", "topup", "transfer"};
+    private static final int PIN_DIGEST_LENGTH = 32;
+    private static final int MAX_MESSAGE = 255;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private BinaryProtocol() {
+    }
+
+    static String decodeToken(ByteBuffer body) {
+        return ascii(body, body.getShort() & 0xffff);
+    }
+
+    /**
+     * Decodes a PROCESS body, or returns null if a field is out of range. Throws
+     * BufferUnderflowException if the body is shorter than its fields say.
+     */
+    static ProcessTransactionRequest decodeProcess(ByteBuffer body) {
+        int type = body.get();
+        long cents = body.getLong();
+        String cardNumber = ascii(body, body.get() & 0xff);
+        byte[] pinDigest = new byte[PIN_DIGEST_LENGTH];
+        body.get(pinDigest);
+        int targetLength = body.get() & 0xff;
+        String targetCardNumber = targetLength > 0 ? ascii(body, targetLength) : null;
+        if (type <= 0 || type >= TYPES.length || cents <= 0 || cardNumber.isEmpty() || body.hasRemaining()) {
+            return null;
+        }
+        return new ProcessTransactionRequest(cardNumber, HEX.formatHex(pinDigest), BigDecimal.valueOf(cents, 2),
+                TYPES[type], targetCardNumber);
+    }
+
+    /**
+     * Writes a response frame, or returns false and leaves the buffer unchanged if it does not fit.
+     */
+    static boolean encode(ByteBuffer out, byte opcode, int requestId, byte status, TransactionResponse response,
+                          String message) {
+        byte[] text = message != null ? message.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int textLength = Math.min(text.length, MAX_MESSAGE);
+        int length = 1 + 4 + 1 + 8 * 4 + 2 + textLength;
+        if (out.remaining() < 4 + length) {
+            return false;
+        }
+        out.putInt(length)
+                .put((byte) (opcode | RESPONSE_FLAG))
+                .putInt(requestId)
+                .put(status)
+                .putLong(response != null ? cents(response.getAmount()) : NONE)
+                .putLong(response != null ? cents(response.getBalanceAfter()) : NONE)
+                .putLong(response != null && response.getTransactionId() != null
+                        ? Long.parseLong(response.getTransactionId()) : NONE)
+                .putLong(response != null && response.getTimestamp() != null
+                        ? response.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : NONE)
+                .putShort((short) textLength)
+                .put(text, 0, textLength);
+        return true;
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount != null ? amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue() : NONE;
+    }
+
+    private static String ascii(ByteBuffer body, int length) {
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,519 @@
+package com.paytabs.banking.protocol;
+
+import com.paytabs.banking.dto.ProcessTransactionRequest;
+import com.paytabs.banking.dto.TransactionResponse;
+import com.paytabs.banking.security.ApiTokenService;
+import com.paytabs.banking.service.AdaptiveConcurrencyLimiter;
+import com.paytabs.banking.service.CardShardExecutor;
+import com.paytabs.banking.service.System2Service;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Binary TCP ingress for System 2, next to the REST endpoint {@code POST /api/process} and with
+ * the same rules: the connection authenticates once with an acquirer's API token, and each
+ * request passes the adaptive concurrency limiter and runs on its card's shard in System2Service.
+ *
+ * Connections are spread over a few selector threads. Each connection reads and writes through
+ * two buffers taken from its thread's pool, and requests are decoded straight from the read
+ * buffer. A client may pipeline requests without waiting for responses; a connection stops being
+ * read while it has max-in-flight requests outstanding or responses it cannot send yet, so a
+ * slow client only ever holds back itself. See {@link BinaryProtocol} for the wire format.
+ */
+@Component
+@Slf4j
+public class BinaryProtocolServer {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int POOLED_BUFFERS = 64;
+    private static final long TOKEN_RECHECK_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final GrantedAuthority ACQUIRER = new SimpleGrantedAuthority("ROLE_ACQUIRER");
+
+    private final System2Service system2Service;
+    private final CardShardExecutor cardShardExecutor;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final ApiTokenService apiTokenService;
+    private final boolean enabled;
+    private final String host;
+    private final int port;
+    private final int ioThreads;
+    private final int maxInFlight;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Timer[] requestTimers = new Timer[BinaryProtocol.STATUS_NAMES.length];
+    private final List<EventLoop> loops = new ArrayList<>();
+    private volatile boolean running;
+    private ServerSocketChannel serverChannel;
+    private Thread acceptor;
+
+    public BinaryProtocolServer(System2Service system2Service, CardShardExecutor cardShardExecutor,
+                                AdaptiveConcurrencyLimiter concurrencyLimiter, ApiTokenService apiTokenService,
+                                MeterRegistry meterRegistry,
+                                @Value("${binary.enabled:false}") boolean enabled,
+                                @Value("${binary.host:127.0.0.1}") String host,
+                                @Value("${binary.port:7070}") int port,
+                                @Value("${binary.io-threads:2}") int ioThreads,
+                                @Value("${binary.max-in-flight:256}") int maxInFlight) {
+        this.system2Service = system2Service;
+        this.cardShardExecutor = cardShardExecutor;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.apiTokenService = apiTokenService;
+        this.enabled = enabled;
+        this.host = host;
+        this.port = port;
+        this.ioThreads = Math.max(1, ioThreads);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        for (int i = 0; i < requestTimers.length; i++) {
+            requestTimers[i] = Timer.builder("binary.requests").tag("status", BinaryProtocol.STATUS_NAMES[i])
+                    .register(meterRegistry);
+        }
+        Gauge.builder("binary.connections", connections, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(host, port));
+        running = true;
+        for (int i = 0; i < ioThreads; i++) {
+            EventLoop loop = new EventLoop(Selector.open());
+            loops.add(loop);
+            startThread("binary-io-" + i, loop);
+        }
+        acceptor = startThread("binary-accept", this::acceptLoop);
+        log.info("Binary transaction protocol listening on {}:{} with {} I/O threads", host, port, ioThreads);
+    }
+
+    // The bound port, which differs from binary.port when that is 0
+    int localPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            log.debug("Error closing binary protocol listener: {}", e.getMessage());
+        }
+        acceptor.interrupt();
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                EventLoop loop = loops.get(next++ % loops.size());
+                loop.newChannels.add(channel);
+                loop.selector.wakeup();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Error accepting binary protocol connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static Thread startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * A response to send on a connection, produced on a shard thread or on the event loop itself.
+     */
+    private record Completion(Connection connection, byte opcode, int requestId, byte status,
+                              TransactionResponse response, String message, long startedNanos) {
+    }
+
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer in;
+        private final ByteBuffer out;
+        private final ArrayDeque<Completion> unsent = new ArrayDeque<>();
+        private int inFlight;
+        private String token;
+        private long verifiedAtNanos;
+        private boolean closeAfterFlush;
+        private boolean closed;
+        private boolean dirty;
+
+        Connection(SocketChannel channel, SelectionKey key, ByteBuffer in, ByteBuffer out) {
+            this.channel = channel;
+            this.key = key;
+            this.in = in;
+            this.out = out;
+        }
+    }
+
+    /**
+     * One selector thread and the connections registered with it. Connection state and buffers are
+     * only touched by this thread; shard threads hand their results over through a queue.
+     */
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        private final Queue<Completion> completions = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean wakeupRequested = new AtomicBoolean();
+        private final ArrayDeque<ByteBuffer> bufferPool = new ArrayDeque<>();
+        private final ArrayDeque<Connection> dirty = new ArrayDeque<>();
+        private final List<Connection> open = new ArrayList<>();
+
+        EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    wakeupRequested.set(false);
+                    registerNewChannels();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isValid() && key.isWritable()) {
+                            flush(connection);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(connection);
+                        }
+                    }
+                    Completion completion;
+                    while ((completion = completions.poll()) != null) {
+                        complete(completion);
+                    }
+                    while (!dirty.isEmpty()) {
+                        flush(dirty.poll());
+                    }
+                } catch (IOException e) {
+                    log.warn("Binary protocol event loop error: {}", e.getMessage());
+                }
+            }
+            for (Connection connection : new ArrayList<>(open)) {
+                close(connection);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.debug("Error closing selector: {}", e.getMessage());
+            }
+        }
+
+        /** Called from shard threads; wakes the selector once per batch of results. */
+        void submit(Completion completion) {
+            completions.add(completion);
+            if (wakeupRequested.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+
+        private void registerNewChannels() throws IOException {
+            SocketChannel channel;
+            while ((channel = newChannels.poll()) != null) {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                Connection connection = new Connection(channel, key, acquire(), acquire());
+                key.attach(connection);
+                open.add(connection);
+                connections.incrementAndGet();
+            }
+        }
+
+        private void read(Connection connection) {
+            int read;
+            try {
+                read = connection.channel.read(connection.in);
+            } catch (IOException e) {
+                close(connection);
+                return;
+            }
+            if (read < 0) {
+                close(connection);
+                return;
+            }
+            processInput(connection);
+        }
+
+        private void processInput(Connection connection) {
+            ByteBuffer in = connection.in.flip();
+            while (!connection.closeAfterFlush && canAccept(connection) && in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < 5 || length > BinaryProtocol.MAX_FRAME) {
+                    log.warn("Closing binary protocol connection after a frame of {} bytes", length);
+                    close(connection);
+                    return;
+                }
+                if (in.remaining() < 4 + length) {
+                    break;
+                }
+                ByteBuffer frame = in.slice(in.position() + 4, length);
+                in.position(in.position() + 4 + length);
+                handle(connection, frame);
+            }
+            in.compact();
+            updateInterest(connection);
+        }
+
+        private boolean canAccept(Connection connection) {
+            return connection.inFlight < maxInFlight && connection.unsent.isEmpty();
+        }
+
+        private void handle(Connection connection, ByteBuffer frame) {
+            long started = System.nanoTime();
+            byte opcode = frame.get();
+            int requestId = frame.getInt();
+            try {
+                if (opcode == BinaryProtocol.AUTH) {
+                    String token = BinaryProtocol.decodeToken(frame);
+                    if (!isAcquirerToken(token)) {
+                        reject(connection, opcode, requestId, started);
+                        return;
+                    }
+                    connection.token = token;
+                    connection.verifiedAtNanos = started;
+                    respond(new Completion(connection, opcode, requestId, BinaryProtocol.STATUS_OK, null,
+                            "Authenticated", started));
+                } else if (opcode == BinaryProtocol.PROCESS) {
+                    if (!isAuthenticated(connection, started)) {
+                        reject(connection, opcode, requestId, started);
+                        return;
+                    }
+                    ProcessTransactionRequest request = BinaryProtocol.decodeProcess(frame);
+                    if (request == null) {
+                        respond(new Completion(connection, opcode, requestId, BinaryProtocol.STATUS_BAD_REQUEST, null,
+                                "Invalid request parameters", started));
+                        return;
+                    }
+                    dispatch(connection, opcode, requestId, request, started);
+                } else {
+                    respond(new Completion(connection, opcode, requestId, BinaryProtocol.STATUS_BAD_REQUEST, null,
+                            "Unknown opcode", started));
+                    connection.closeAfterFlush = true;
+                }
+            } catch (BufferUnderflowException e) {
+                respond(new Completion(connection, opcode, requestId, BinaryProtocol.STATUS_BAD_REQUEST, null,
+                        "Truncated request", started));
+            }
+        }
+
+        // Tokens expire, so a long-lived connection re-verifies its token every minute
+        private boolean isAuthenticated(Connection connection, long now) {
+            if (connection.token == null) {
+                return false;
+            }
+            if (now - connection.verifiedAtNanos > TOKEN_RECHECK_NANOS) {
+                if (!isAcquirerToken(connection.token)) {
+                    return false;
+                }
+                connection.verifiedAtNanos = now;
+            }
+            return true;
+        }
+
+        // As on POST /api/process, only tokens of the acquirer role may drive System 2 directly
+        private boolean isAcquirerToken(String token) {
+            Authentication authentication = apiTokenService.verifyToken(token);
+            return authentication != null && authentication.getAuthorities().contains(ACQUIRER);
+        }
+
+        private void reject(Connection connection, byte opcode, int requestId, long started) {
+            respond(new Completion(connection, opcode, requestId, BinaryProtocol.STATUS_UNAUTHORIZED, null,
+                    "Unauthorized", started));
+            connection.closeAfterFlush = true;
+        }
+
+        private void dispatch(Connection connection, byte opcode, int requestId, ProcessTransactionRequest request,
+                              long started) {
+            AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.API);
+            if (permit == null) {
+                respond(new Completion(connection, opcode, requestId, BinaryProtocol.STATUS_BUSY, null,
+                        "System busy, please retry", started));
+                return;
+            }
+            connection.inFlight++;
+            // PIN is already hashed by the caller, so it is verified as-is on the card's shard
+            cardShardExecutor.submit(request.getCardNumber(), () -> {
+                TransactionResponse result = system2Service.processPreHashedTransaction(request);
+                concurrencyLimiter.recordLatency(System.nanoTime() - started);
+                return result;
+            }).whenComplete((response, error) -> {
+                permit.release();
+                if (error == null) {
+                    submit(new Completion(connection, opcode, requestId,
+                            response.isSuccess() ? BinaryProtocol.STATUS_OK : BinaryProtocol.STATUS_DECLINED,
+                            response, response.getMessage(), started));
+                } else if (AdaptiveConcurrencyLimiter.isOverload(unwrap(error))) {
+                    concurrencyLimiter.recordDrop();
+                    submit(new Completion(connection, opcode, requestId, BinaryProtocol.STATUS_BUSY, null,
+                            "System busy, please retry", started));
+                } else {
+                    log.error("Binary protocol request {} failed", requestId, unwrap(error));
+                    submit(new Completion(connection, opcode, requestId, BinaryProtocol.STATUS_ERROR, null,
+                            "Processing failed", started));
+                }
+            });
+        }
+
+        private void complete(Completion completion) {
+            Connection connection = completion.connection();
+            connection.inFlight--;
+            if (connection.closed) {
+                return;
+            }
+            respond(completion);
+            // Requests left in the read buffer while the connection was at its in-flight limit
+            if (connection.in.position() > 0 && canAccept(connection)) {
+                processInput(connection);
+            } else {
+                updateInterest(connection);
+            }
+        }
+
+        private void respond(Completion completion) {
+            Connection connection = completion.connection();
+            if (!connection.unsent.isEmpty() || !encode(completion)) {
+                connection.unsent.add(completion);
+            }
+            markDirty(connection);
+        }
+
+        private boolean encode(Completion completion) {
+            if (!BinaryProtocol.encode(completion.connection().out, completion.opcode(), completion.requestId(),
+                    completion.status(), completion.response(), completion.message())) {
+                return false;
+            }
+            requestTimers[completion.status()].record(System.nanoTime() - completion.startedNanos(), TimeUnit.NANOSECONDS);
+            return true;
+        }
+
+        private void markDirty(Connection connection) {
+            if (!connection.dirty) {
+                connection.dirty = true;
+                dirty.add(connection);
+            }
+        }
+
+        private void flush(Connection connection) {
+            connection.dirty = false;
+            if (connection.closed) {
+                return;
+            }
+            ByteBuffer out = connection.out;
+            try {
+                out.flip();
+                connection.channel.write(out);
+                out.compact();
+            } catch (IOException e) {
+                close(connection);
+                return;
+            }
+            while (!connection.unsent.isEmpty() && encode(connection.unsent.peek())) {
+                connection.unsent.poll();
+            }
+            if (connection.closeAfterFlush && out.position() == 0 && connection.unsent.isEmpty()) {
+                close(connection);
+                return;
+            }
+            // Whatever is left goes out on OP_WRITE; requests held back by unsent responses resume here
+            if (connection.unsent.isEmpty() && connection.in.position() > 0) {
+                processInput(connection);
+            } else {
+                updateInterest(connection);
+            }
+        }
+
+        private void updateInterest(Connection connection) {
+            if (connection.closed || !connection.key.isValid()) {
+                return;
+            }
+            int ops = 0;
+            if (canAccept(connection) && !connection.closeAfterFlush) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (connection.out.position() > 0) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            connection.key.interestOps(ops);
+        }
+
+        private void close(Connection connection) {
+            if (connection.closed) {
+                return;
+            }
+            connection.closed = true;
+            connection.key.cancel();
+            try {
+                connection.channel.close();
+            } catch (IOException e) {
+                log.debug("Error closing binary protocol connection: {}", e.getMessage());
+            }
+            release(connection.in);
+            release(connection.out);
+            open.remove(connection);
+            connections.decrementAndGet();
+        }
+
+        private ByteBuffer acquire() {
+            ByteBuffer buffer = bufferPool.poll();
+            return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        private void release(ByteBuffer buffer) {
+            if (bufferPool.size() < POOLED_BUFFERS) {
+                bufferPool.push(buffer.clear());
+            }
+        }
+    }
+}
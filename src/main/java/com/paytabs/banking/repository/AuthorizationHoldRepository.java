@@ -0,0 +1,22 @@
+package com.paytabs.banking.repository;
+
+import com.paytabs.banking.entity.AuthorizationHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface AuthorizationHoldRepository extends JpaRepository<AuthorizationHold, Long> {
+
+    /**
+     * Resolves the hold's card without loading the hold, so the card can be locked before the hold is read.
+     */
+    @Query("select h.cardId from AuthorizationHold h where h.id = :id")
+    Optional<Long> findCardIdById(@Param("id") Long id);
+
+    @Query("select h.authorizedBy from AuthorizationHold h where h.id = :id")
+    Optional<String> findAuthorizedByById(@Param("id") Long id);
+}
@@ -1,7 +1,12 @@
 package com.paytabs.banking.repository;
 
+import com.paytabs.banking.dto.CardCredentials;
 import com.paytabs.banking.entity.Card;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,6 +14,30 @@ import java.util.Optional;
 
 @Repository
 public interface CardRepository extends JpaRepository<Card, Long> {
-    Optional<Card> findByCardNumber(String cardNumber);
-    List<Card> findByCustomerId(String customerId);
+    @Query("select c from Card c where c.cardNumberLookup = :cardNumber")
+    Optional<Card> findByCardNumber(@Param("cardNumber") String cardNumber);
+
+    /**
+     * Loads the card with a database row lock (SELECT ... FOR UPDATE) held until the
+     * surrounding transaction ends, so balance updates are safe across application nodes.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.cardNumberLookup = :cardNumber")
+    Optional<Card> findLockedByCardNumber(@Param("cardNumber") String cardNumber);
+
+    /**
+     * Resolves a card's id without loading the entity, so it can be locked afterwards with fresh state.
+     */
+    @Query("select c.id from Card c where c.cardNumberLookup = :cardNumber")
+    Optional<Long> findIdByCardNumber(@Param("cardNumber") String cardNumber);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> findLockedById(@Param("id") Long id);
+
+    List<Card> findByCustomerIdOrderById(String customerId);
+
+    @Query("select new com.paytabs.banking.dto.CardCredentials(c.pinHash, c.active, u.username, u.role) " +
+           "from Card c join User u on u.customerId = c.customerId where c.cardNumberLookup = :cardNumber")
+    Optional<CardCredentials> findCredentialsByCardNumber(@Param("cardNumber") String cardNumber);
 }
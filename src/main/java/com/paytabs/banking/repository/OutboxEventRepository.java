@@ -0,0 +1,9 @@
+package com.paytabs.banking.repository;
+
+import com.paytabs.banking.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+}
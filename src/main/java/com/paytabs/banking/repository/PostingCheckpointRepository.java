@@ -0,0 +1,12 @@
+package com.paytabs.banking.repository;
+
+import com.paytabs.banking.entity.PostingCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PostingCheckpointRepository extends JpaRepository<PostingCheckpoint, Long> {
+    List<PostingCheckpoint> findByPostingPeriodAndPostingTypeOrderByPartitionIndex(String period, String type);
+}
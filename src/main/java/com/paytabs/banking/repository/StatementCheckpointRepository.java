@@ -0,0 +1,12 @@
+package com.paytabs.banking.repository;
+
+import com.paytabs.banking.entity.StatementCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StatementCheckpointRepository extends JpaRepository<StatementCheckpoint, Long> {
+    List<StatementCheckpoint> findByStatementMonthOrderByPartitionIndex(String period);
+}
@@ -1,13 +1,50 @@
 package com.paytabs.banking.repository;
 
+import com.paytabs.banking.dto.TransactionView;
 import com.paytabs.banking.entity.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-    List<Transaction> findByCustomerIdOrderByTimestampDesc(String customerId);
-    List<Transaction> findAllByOrderByTimestampDesc();
+    String VIEW_SELECT = "select new com.paytabs.banking.dto.TransactionView(t.id, t.cardNumber, t.transactionType, " +
+            "t.amount, t.balanceBefore, t.balanceAfter, t.status, t.reason, t.customerId, t.customerName, t.timestamp) " +
+            "from Transaction t ";
+
+    @Query(VIEW_SELECT + "order by t.timestamp desc")
+    List<TransactionView> findAllViews();
+
+    @Query(VIEW_SELECT + "where t.id between :fromId and :toId")
+    List<TransactionView> findViewsByIdBetween(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Query(VIEW_SELECT + "where t.id > :afterId order by t.id")
+    List<TransactionView> findViewsAfterId(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("select min(t.id) from Transaction t")
+    Long findMinId();
+
+    @Query("select max(t.id) from Transaction t")
+    Long findMaxId();
+
+    @Query(VIEW_SELECT + "where t.customerId = :customerId order by t.timestamp desc")
+    List<TransactionView> findViewsByCustomerId(@Param("customerId") String customerId);
+
+    /**
+     * Ids of the perCard most recent transactions of each card, so a busy card cannot push the
+     * other cards out of a combined history. Native because of the window function.
+     */
+    @Query(value = "select id from (select id, row_number() over (partition by card_number " +
+            "order by timestamp desc, id desc) as recency from transactions where card_number in (:cardNumbers)) r " +
+            "where recency <= :perCard", nativeQuery = true)
+    List<Long> findRecentIdsByCardNumbers(@Param("cardNumbers") Collection<String> cardNumbers,
+                                          @Param("perCard") int perCard);
+
+    @Query(VIEW_SELECT + "where t.id in :ids order by t.timestamp desc, t.id desc")
+    List<TransactionView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,132 @@
+package com.paytabs.banking.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Issues and verifies HMAC-SHA256 signed bearer tokens (JWT compact format) for the REST API.
+ * Verification only needs the cached key, so no session or database lookup happens per request.
+ */
+@Component
+@Slf4j
+public class ApiTokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    // HS256 keys shorter than the hash output weaken the signature
+    private static final int MIN_SECRET_BYTES = 32;
+    private static final String HEADER = base64Url("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${api.token.secret}")
+    private String secret;
+
+    @Value("${api.token.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    private SecretKeySpec key;
+    private ThreadLocal<Mac> mac;
+
+    public ApiTokenService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void setup() {
+        if (secret.getBytes(StandardCharsets.UTF_8).length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("api.token.secret is not set or shorter than " + MIN_SECRET_BYTES
+                    + " bytes; provide it through API_TOKEN_SECRET or external configuration");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (Exception e) {
+                throw new RuntimeException("Error initializing token signer", e);
+            }
+        });
+    }
+
+    public String issueToken(Authentication authentication) {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("sub", authentication.getName());
+        payload.put("exp", Instant.now().getEpochSecond() + ttlSeconds);
+        var authorities = payload.putArray("auth");
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            authorities.add(authority.getAuthority());
+        }
+
+        try {
+            String signingInput = HEADER + "." + base64Url(objectMapper.writeValueAsBytes(payload));
+            return signingInput + "." + base64Url(sign(signingInput));
+        } catch (Exception e) {
+            throw new RuntimeException("Error issuing API token", e);
+        }
+    }
+
+    /**
+     * Returns the authentication carried by a valid token, or null if the token is malformed,
+     * incorrectly signed or expired.
+     */
+    public Authentication verifyToken(String token) {
+        int firstDot = token.indexOf('.');
+        int lastDot = token.lastIndexOf('.');
+        if (firstDot <= 0 || lastDot == firstDot) {
+            return null;
+        }
+
+        try {
+            String signingInput = token.substring(0, lastDot);
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(lastDot + 1));
+            if (!MessageDigest.isEqual(sign(signingInput), signature)) {
+                return null;
+            }
+
+            JsonNode payload = objectMapper.readTree(Base64.getUrlDecoder().decode(token.substring(firstDot + 1, lastDot)));
+            if (payload.path("exp").asLong() < Instant.now().getEpochSecond()) {
+                return null;
+            }
+
+            List<GrantedAuthority> authorities = new ArrayList<>();
+            for (JsonNode authority : payload.path("auth")) {
+                authorities.add(new SimpleGrantedAuthority(authority.asText()));
+            }
+            return new UsernamePasswordAuthenticationToken(payload.path("sub").asText(), null, authorities);
+        } catch (Exception e) {
+            log.debug("Rejected malformed API token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    private byte[] sign(String signingInput) {
+        return mac.get().doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String base64Url(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
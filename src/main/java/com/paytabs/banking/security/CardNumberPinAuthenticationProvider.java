@@ -1,10 +1,8 @@
 package com.paytabs.banking.security;
 
-import com.paytabs.banking.crypto.EncryptionUtil;
-import com.paytabs.banking.entity.Card;
-import com.paytabs.banking.entity.User;
+import com.paytabs.banking.dto.CardCredentials;
+import com.paytabs.banking.profiling.StageEvent;
 import com.paytabs.banking.repository.CardRepository;
-import com.paytabs.banking.repository.UserRepository;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -17,6 +15,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.util.Collections;
+import java.util.HexFormat;
 import java.util.Optional;
 
 @Component
@@ -24,13 +23,11 @@ import java.util.Optional;
 public class CardNumberPinAuthenticationProvider implements AuthenticationProvider {
 
     private final CardRepository cardRepository;
-    private final UserRepository userRepository;
-    private final EncryptionUtil encryptionUtil;
+    private final UnknownIdentifierCache unknownIdentifierCache;
 
-    public CardNumberPinAuthenticationProvider(CardRepository cardRepository, UserRepository userRepository, EncryptionUtil encryptionUtil) {
+    public CardNumberPinAuthenticationProvider(CardRepository cardRepository, UnknownIdentifierCache unknownIdentifierCache) {
         this.cardRepository = cardRepository;
-        this.userRepository = userRepository;
-        this.encryptionUtil = encryptionUtil;
+        this.unknownIdentifierCache = unknownIdentifierCache;
     }
 
     @Override
@@ -38,35 +35,50 @@ public class CardNumberPinAuthenticationProvider implements AuthenticationProvid
         String cardNumber = authentication.getName();
         String pin = authentication.getCredentials().toString();
 
-        if (!cardNumber.matches("^\\d{16}$")) {
+        if (!isCardNumber(cardNumber)) {
             return null;
         }
-        
+
+        StageEvent event = StageEvent.begin("auth.card");
+        String outcome = "rejected";
+        try {
+            Authentication result = authenticateCard(cardNumber, pin);
+            outcome = "authenticated";
+            return result;
+        } finally {
+            event.finish(outcome);
+        }
+    }
+
+    private Authentication authenticateCard(String cardNumber, String pin) {
+        if (unknownIdentifierCache.isKnownUnknown(UnknownIdentifierCache.Kind.CARD_NUMBER, cardNumber)) {
+            throw new BadCredentialsException("Invalid card number or PIN");
+        }
+
         // Pass the plain-text card number. The AttributeConverter will handle encryption.
-        Optional<Card> cardOptional = cardRepository.findByCardNumber(cardNumber);
+        // Card and owning user come back in one joined query.
+        Optional<CardCredentials> credentialsOptional = cardRepository.findCredentialsByCardNumber(cardNumber);
 
-        if (cardOptional.isEmpty()) {
+        if (credentialsOptional.isEmpty()) {
+            unknownIdentifierCache.recordUnknown(UnknownIdentifierCache.Kind.CARD_NUMBER, cardNumber);
             throw new BadCredentialsException("Invalid card number or PIN");
         }
 
-        Card card = cardOptional.get();
-        String hashedPin = hashPin(pin);
+        CardCredentials credentials = credentialsOptional.get();
 
-        if (!hashedPin.equals(card.getPinHash())) {
+        if (!MessageDigest.isEqual(hashPin(pin).getBytes(StandardCharsets.US_ASCII),
+                credentials.getPinHash().getBytes(StandardCharsets.US_ASCII))) {
             throw new BadCredentialsException("Invalid card number or PIN");
         }
 
-        if (!card.isActive()) {
+        if (!credentials.isActive()) {
             throw new BadCredentialsException("Card is inactive");
         }
 
-        User user = userRepository.findByCustomerId(card.getCustomerId())
-                .orElseThrow(() -> new BadCredentialsException("User account not found for this card"));
-
         return new UsernamePasswordAuthenticationToken(
-                user.getUsername(),
+                credentials.getUsername(),
                 null,
-                Collections.singleton(new SimpleGrantedAuthority("ROLE_" + user.getRole()))
+                Collections.singleton(new SimpleGrantedAuthority("ROLE_" + credentials.getRole()))
         );
     }
 
@@ -75,20 +87,25 @@ public class CardNumberPinAuthenticationProvider implements AuthenticationProvid
         return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
     }
 
+    private static boolean isCardNumber(String value) {
+        if (value.length() != 16) {
+            return false;
+        }
+        for (int i = 0; i < 16; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private String hashPin(String pin) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(pin.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
+            return HexFormat.of().formatHex(digest.digest(pin.getBytes(StandardCharsets.UTF_8)));
         } catch (Exception e) {
             throw new RuntimeException("Error hashing PIN", e);
         }
     }
 }
-
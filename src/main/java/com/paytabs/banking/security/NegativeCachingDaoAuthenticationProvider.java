@@ -0,0 +1,84 @@
+package com.paytabs.banking.security;
+
+import com.paytabs.banking.profiling.StageEvent;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Username/password provider that skips the user lookup for usernames that recently turned out
+ * not to exist. The BCrypt round still runs against a dummy hash, so a cached rejection takes as
+ * long as a real one and response times do not reveal which usernames were tried before.
+ */
+public class NegativeCachingDaoAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final UnknownIdentifierCache unknownIdentifierCache;
+    private volatile String dummyPasswordHash;
+
+    public NegativeCachingDaoAuthenticationProvider(UnknownIdentifierCache unknownIdentifierCache) {
+        this.unknownIdentifierCache = unknownIdentifierCache;
+        setHideUserNotFoundExceptions(false);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+
+        StageEvent event = StageEvent.begin("auth.password");
+        String outcome = "rejected";
+        if (unknownIdentifierCache.isKnownUnknown(UnknownIdentifierCache.Kind.USERNAME, username)) {
+            matchDummyPassword(authentication);
+            event.finish("cached-unknown");
+            throw badCredentials();
+        }
+
+        try {
+            Authentication result = super.authenticate(authentication);
+            outcome = "authenticated";
+            return result;
+        } catch (UsernameNotFoundException e) {
+            unknownIdentifierCache.recordUnknown(UnknownIdentifierCache.Kind.USERNAME, username);
+            outcome = "unknown";
+            throw badCredentials();
+        } finally {
+            event.finish(outcome);
+        }
+    }
+
+    // Timed separately so the BCrypt round can be told apart from the user lookup
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails,
+                                                  UsernamePasswordAuthenticationToken authentication)
+            throws AuthenticationException {
+        StageEvent event = StageEvent.begin("auth.password.verify");
+        String outcome = "mismatch";
+        try {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+            outcome = "match";
+        } finally {
+            event.finish(outcome);
+        }
+    }
+
+    @Override
+    public void setPasswordEncoder(PasswordEncoder passwordEncoder) {
+        super.setPasswordEncoder(passwordEncoder);
+        this.dummyPasswordHash = passwordEncoder.encode("userNotFoundPassword");
+    }
+
+    private void matchDummyPassword(Authentication authentication) {
+        if (authentication.getCredentials() != null && dummyPasswordHash != null) {
+            getPasswordEncoder().matches(authentication.getCredentials().toString(), dummyPasswordHash);
+        }
+    }
+
+    private BadCredentialsException badCredentials() {
+        return new BadCredentialsException(
+                messages.getMessage("AbstractUserDetailsAuthenticationProvider.badCredentials", "Bad credentials"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.paytabs.banking.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers login identifiers (usernames, card numbers) that recently matched no account,
+ * so repeated attempts can be rejected without a database lookup or a BCrypt round.
+ * Entries expire after a TTL and are dropped as soon as the identifier is registered on this
+ * instance. A TTL of zero or less turns the cache off, which the cluster profile does because a
+ * signup on another node cannot drop this node's entries.
+ */
+@Component
+public class UnknownIdentifierCache {
+
+    public enum Kind { USERNAME, CARD_NUMBER }
+
+    private final ConcurrentHashMap<String, Long> expiries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxSize;
+
+    public UnknownIdentifierCache(@Value("${auth.negative-cache.ttl-seconds:300}") long ttlSeconds,
+                                  @Value("${auth.negative-cache.max-size:10000}") int maxSize) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxSize = maxSize;
+    }
+
+    public boolean isKnownUnknown(Kind kind, String identifier) {
+        if (ttlMillis <= 0) {
+            return false;
+        }
+        String key = key(kind, identifier);
+        Long expiry = expiries.get(key);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry < System.currentTimeMillis()) {
+            expiries.remove(key, expiry);
+            return false;
+        }
+        return true;
+    }
+
+    public void recordUnknown(Kind kind, String identifier) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        if (expiries.size() >= maxSize) {
+            // Card-testing bursts can fill the cache with junk; start over rather than track eviction order
+            expiries.clear();
+        }
+        expiries.put(key(kind, identifier), System.currentTimeMillis() + ttlMillis);
+    }
+
+    public void forget(Kind kind, String identifier) {
+        expiries.remove(key(kind, identifier));
+    }
+
+    private static String key(Kind kind, String identifier) {
+        return kind.name() + ':' + identifier;
+    }
+}
@@ -0,0 +1,202 @@
+package com.paytabs.banking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for the transaction endpoints. Caps the number of transactions in flight
+ * and rejects the rest immediately instead of letting them queue for shards and connections.
+ *
+ * The cap adapts gradient-style: every window, the average latency of the window is compared
+ * with a slowly moving long-term baseline. While they agree the limit grows by about sqrt(limit);
+ * once the short-term latency rises above the tolerance the limit shrinks in proportion. Failed
+ * or rejected work (shard queue full, pool timeouts) cuts the limit multiplicatively.
+ *
+ * Customer dashboard traffic may use the whole limit; bulk API traffic only apiShare of it, so
+ * it is shed first.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Priority { CUSTOMER, API }
+
+    /**
+     * One admitted request; release exactly once when the request is finished.
+     */
+    public interface Permit {
+        void release();
+    }
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<Priority, Counter> rejections = new EnumMap<>(Priority.class);
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double apiShare;
+    private final double tolerance;
+    private final double smoothing;
+    private final double backoffRatio;
+    private final int longWindow;
+    private final long windowNanos;
+    private final int minWindowSamples;
+
+    private volatile double limit;
+    // Window state, guarded by this
+    private long windowStart = System.nanoTime();
+    private long windowLatencySum;
+    private int windowSamples;
+    private int windowPeakInFlight;
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${transaction.limiter.enabled:true}") boolean enabled,
+                                      @Value("${transaction.limiter.initial-limit:20}") int initialLimit,
+                                      @Value("${transaction.limiter.min-limit:4}") int minLimit,
+                                      @Value("${transaction.limiter.max-limit:200}") int maxLimit,
+                                      @Value("${transaction.limiter.api-share:0.8}") double apiShare,
+                                      @Value("${transaction.limiter.tolerance:1.5}") double tolerance,
+                                      @Value("${transaction.limiter.smoothing:0.2}") double smoothing,
+                                      @Value("${transaction.limiter.backoff-ratio:0.9}") double backoffRatio,
+                                      @Value("${transaction.limiter.long-window:600}") int longWindow,
+                                      @Value("${transaction.limiter.window-ms:100}") long windowMillis,
+                                      @Value("${transaction.limiter.min-window-samples:10}") int minWindowSamples) {
+        this.enabled = enabled;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.apiShare = apiShare;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.backoffRatio = backoffRatio;
+        this.longWindow = longWindow;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.minWindowSamples = minWindowSamples;
+
+        Gauge.builder("transactions.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("transactions.concurrency.in-flight", inFlight, AtomicInteger::get).register(meterRegistry);
+        for (Priority priority : Priority.values()) {
+            rejections.put(priority, Counter.builder("transactions.concurrency.rejected")
+                    .tag("priority", priority.name().toLowerCase()).register(meterRegistry));
+        }
+    }
+
+    /**
+     * Admits a request if its priority class is below its share of the current limit.
+     * Returns null if the request should be rejected.
+     */
+    public Permit tryAcquire(Priority priority) {
+        if (!enabled) {
+            return () -> { };
+        }
+        int cap = (int) Math.max(1, priority == Priority.CUSTOMER ? limit : limit * apiShare);
+        while (true) {
+            int current = inFlight.get();
+            if (current >= cap) {
+                rejections.get(priority).increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Admitted();
+            }
+        }
+    }
+
+    /**
+     * True while the full limit is taken, i.e. even customer traffic is being turned away.
+     */
+    public boolean isSaturated() {
+        return enabled && inFlight.get() >= (int) limit;
+    }
+
+    public double getLimit() {
+        return limit;
+    }
+
+    /**
+     * Records the time a transaction spent in System 2, from handing it to its card shard until
+     * the result came back, so shard queueing and connection waits are included.
+     */
+    public synchronized void recordLatency(long nanos) {
+        windowLatencySum += nanos;
+        windowSamples++;
+        windowPeakInFlight = Math.max(windowPeakInFlight, inFlight.get());
+
+        long now = System.nanoTime();
+        if (now - windowStart >= windowNanos && windowSamples >= minWindowSamples) {
+            adjust((double) windowLatencySum / windowSamples);
+            windowStart = now;
+            windowLatencySum = 0;
+            windowSamples = 0;
+            windowPeakInFlight = 0;
+        }
+    }
+
+    /**
+     * Records work that failed from overload (queue full, lock or pool timeout).
+     */
+    public synchronized void recordDrop() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    /**
+     * Whether a failure means the system was overloaded rather than that the request was bad.
+     */
+    public static boolean isOverload(Throwable failure) {
+        return failure instanceof RejectedExecutionException
+                || failure instanceof TransientDataAccessException
+                || failure instanceof CannotCreateTransactionException;
+    }
+
+    // Caller holds the lock
+    private void adjust(double shortRtt) {
+        // The baseline follows latency freely while it is within tolerance. Under congestion it
+        // creeps up ten times slower, so queueing is not mistaken for the new normal, while a
+        // lasting slowdown of the database is still accepted eventually
+        if (longRtt == 0) {
+            longRtt = shortRtt;
+        } else {
+            boolean congested = shortRtt > tolerance * longRtt;
+            longRtt += (shortRtt - longRtt) / (congested ? 10.0 * longWindow : longWindow);
+        }
+
+        // Too little traffic to tell whether a higher limit would hold; keep the current one
+        if (windowPeakInFlight < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        newLimit = limit * (1 - smoothing) + newLimit * smoothing;
+        newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        if ((int) newLimit != (int) limit) {
+            log.debug("Concurrency limit {} -> {} (short rtt {} ms, long rtt {} ms)", (int) limit, (int) newLimit,
+                    String.format("%.2f", shortRtt / 1e6), String.format("%.2f", longRtt / 1e6));
+        }
+        limit = newLimit;
+    }
+
+    private final class Admitted implements Permit {
+        private boolean released;
+
+        @Override
+        public void release() {
+            if (!released) {
+                released = true;
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.crypto.EncryptionUtil;
+import com.paytabs.banking.dto.KeyRotationStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-encrypts stored card numbers under the active key after a key rotation, and fills in
+ * lookup hashes for cards stored before key versioning.
+ *
+ * The card id range is rewritten in parallel chunks. Each row is updated on its own, conditional
+ * on the ciphertext read, so a row is never locked for longer than one statement and a card
+ * updated by a live transaction in the meantime (which writes it under the active key anyway)
+ * is just skipped. Rewrites are paced to a rows-per-second budget shared by all workers, and
+ * workers pause while the transaction concurrency limiter is saturated.
+ *
+ * Missing lookup hashes are filled in synchronously on startup, before any other runner, since
+ * card lookups depend on them.
+ */
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class CardKeyRotationService implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final int threads;
+    private final int chunkSize;
+    private final double rowsPerSecond;
+    private final long saturationPauseMillis;
+    private final boolean runOnStartup;
+    private final ExecutorService rotationExecutor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean stopRequested = new AtomicBoolean();
+    private final AtomicLong rowsToRewrite = new AtomicLong();
+    private final AtomicLong rowsRewritten = new AtomicLong();
+    private final AtomicLong rowsSkipped = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final Counter rewrittenCounter;
+    private final Counter skippedCounter;
+    private final Counter failedCounter;
+    private final Timer chunkTimer;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    public CardKeyRotationService(DataSource dataSource, EncryptionUtil encryptionUtil,
+                                  AdaptiveConcurrencyLimiter concurrencyLimiter, MeterRegistry meterRegistry,
+                                  @Value("${encryption.rotation.threads:2}") int threads,
+                                  @Value("${encryption.rotation.chunk-size:500}") int chunkSize,
+                                  @Value("${encryption.rotation.rows-per-second:2000}") double rowsPerSecond,
+                                  @Value("${encryption.rotation.saturation-pause-ms:200}") long saturationPauseMillis,
+                                  @Value("${encryption.rotation.on-startup:true}") boolean runOnStartup) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(chunkSize);
+        this.encryptionUtil = encryptionUtil;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.rowsPerSecond = rowsPerSecond;
+        this.saturationPauseMillis = saturationPauseMillis;
+        this.runOnStartup = runOnStartup;
+        this.rewrittenCounter = Counter.builder("encryption.rotation.rows").tag("outcome", "rewritten").register(meterRegistry);
+        this.skippedCounter = Counter.builder("encryption.rotation.rows").tag("outcome", "skipped").register(meterRegistry);
+        this.failedCounter = Counter.builder("encryption.rotation.rows").tag("outcome", "failed").register(meterRegistry);
+        this.chunkTimer = Timer.builder("encryption.rotation.chunk").register(meterRegistry);
+        Gauge.builder("encryption.rotation.rows.remaining", this,
+                service -> Math.max(0, service.rowsToRewrite.get() - service.processedRows())).register(meterRegistry);
+        Gauge.builder("encryption.rotation.progress", this, CardKeyRotationService::progress).register(meterRegistry);
+        Gauge.builder("encryption.rotation.running", running, flag -> flag.get() ? 1 : 0).register(meterRegistry);
+        // Runs the coordinating rotate() call only; the chunks go to a pool sized by encryption.rotation.threads
+        this.rotationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "card-key-rotation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested.set(true);
+        rotationExecutor.shutdownNow();
+    }
+
+    @Override
+    public void run(String... args) {
+        long start = System.nanoTime();
+        long filled = backfillLookupHashes();
+        if (filled > 0) {
+            log.info("Filled in lookup hashes for {} cards in {} ms", filled,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        if (runOnStartup && countStaleRows() > 0) {
+            startRotation();
+        }
+    }
+
+    /**
+     * Starts re-encrypting cards under the active key in the background. Returns false if a
+     * rotation is already running.
+     */
+    public boolean startRotation() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        stopRequested.set(false);
+        CompletableFuture.runAsync(() -> {
+            try {
+                rotate();
+            } catch (Exception e) {
+                log.error("Card re-encryption failed; rows not yet rewritten are picked up by the next run", e);
+            } finally {
+                finishedAt = LocalDateTime.now();
+                running.set(false);
+            }
+        }, rotationExecutor);
+        return true;
+    }
+
+    /**
+     * Asks a running rotation to stop after its current chunks. Returns false if none is running.
+     */
+    public boolean stopRotation() {
+        if (!running.get()) {
+            return false;
+        }
+        stopRequested.set(true);
+        return true;
+    }
+
+    public KeyRotationStatus getStatus() {
+        return new KeyRotationStatus(encryptionUtil.getActiveKeyId(), running.get(), startedAt, finishedAt,
+                rowsToRewrite.get(), rowsRewritten.get(), rowsSkipped.get(), rowsFailed.get());
+    }
+
+    private void rotate() {
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        rowsRewritten.set(0);
+        rowsSkipped.set(0);
+        rowsFailed.set(0);
+        rowsToRewrite.set(countStaleRows());
+        log.info("Re-encrypting {} cards under key {} with {} threads at up to {} rows/s", rowsToRewrite.get(),
+                encryptionUtil.getActiveKeyId(), threads, rowsPerSecond);
+
+        Throttle throttle = new Throttle(rowsPerSecond);
+        forEachChunk(threads, (fromId, toId) -> {
+            long start = System.nanoTime();
+            rewriteChunk(fromId, toId, throttle);
+            chunkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+
+        log.info("Card re-encryption {}: {} rewritten, {} skipped, {} failed",
+                stopRequested.get() ? "stopped" : "finished", rowsRewritten.get(), rowsSkipped.get(), rowsFailed.get());
+    }
+
+    private void rewriteChunk(long fromId, long toId, Throttle throttle) {
+        List<Object[]> updates = new ArrayList<>();
+        jdbcTemplate.query("select id, card_number, card_number_hash from cards where id between ? and ?", rs -> {
+            String stored = rs.getString("card_number");
+            if (stored == null || (encryptionUtil.isCurrent(stored) && rs.getString("card_number_hash") != null)) {
+                return;
+            }
+            try {
+                String cardNumber = encryptionUtil.decrypt(stored);
+                updates.add(new Object[]{encryptionUtil.encrypt(cardNumber), encryptionUtil.lookupHash(cardNumber),
+                        rs.getLong("id"), stored});
+            } catch (RuntimeException e) {
+                rowsFailed.incrementAndGet();
+                failedCounter.increment();
+                log.warn("Cannot re-encrypt card {}: {}", rs.getLong("id"), e.getMessage());
+            }
+        }, fromId, toId);
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        waitWhileSaturated();
+        throttle.acquire(updates.size());
+        // No surrounding transaction: every row commits on its own and holds its lock only for that statement
+        int[] counts = jdbcTemplate.batchUpdate(
+                "update cards set card_number = ?, card_number_hash = ? where id = ? and card_number = ?", updates);
+        for (int count : counts) {
+            if (count == 0) {
+                rowsSkipped.incrementAndGet();
+                skippedCounter.increment();
+            } else {
+                rowsRewritten.incrementAndGet();
+                rewrittenCounter.increment();
+            }
+        }
+    }
+
+    // Lookup hashes only, unthrottled: runs before traffic is served, and lookups fail without them
+    private long backfillLookupHashes() {
+        Long missing = jdbcTemplate.queryForObject("select count(*) from cards where card_number_hash is null", Long.class);
+        if (missing == null || missing == 0) {
+            return 0;
+        }
+        AtomicLong filled = new AtomicLong();
+        forEachChunk(threads, (fromId, toId) -> {
+            List<Object[]> updates = new ArrayList<>();
+            jdbcTemplate.query("select id, card_number from cards where id between ? and ? and card_number_hash is null",
+                    rs -> {
+                        try {
+                            String cardNumber = encryptionUtil.decrypt(rs.getString("card_number"));
+                            updates.add(new Object[]{encryptionUtil.lookupHash(cardNumber), rs.getLong("id")});
+                        } catch (RuntimeException e) {
+                            log.warn("Cannot compute the lookup hash of card {}: {}", rs.getLong("id"), e.getMessage());
+                        }
+                    }, fromId, toId);
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate("update cards set card_number_hash = ? where id = ? and card_number_hash is null",
+                        updates);
+                filled.addAndGet(updates.size());
+            }
+        });
+        return filled.get();
+    }
+
+    private long countStaleRows() {
+        Long stale = jdbcTemplate.queryForObject(
+                "select count(*) from cards where card_number_hash is null or card_number not like ?",
+                Long.class, encryptionUtil.getActiveKeyId() + ":%");
+        return stale != null ? stale : 0;
+    }
+
+    private void forEachChunk(int parallelism, ChunkAction action) {
+        Map<String, Object> range = jdbcTemplate.queryForMap("select min(id) as min_id, max(id) as max_id from cards");
+        Number minId = (Number) range.get("min_id");
+        Number maxId = (Number) range.get("max_id");
+        if (minId == null) {
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<CompletableFuture<Void>> chunks = new ArrayList<>();
+            for (long from = minId.longValue(); from <= maxId.longValue(); from += chunkSize) {
+                long fromId = from;
+                long toId = Math.min(maxId.longValue(), from + chunkSize - 1);
+                chunks.add(CompletableFuture.runAsync(() -> {
+                    if (!stopRequested.get()) {
+                        action.apply(fromId, toId);
+                    }
+                }, pool));
+            }
+            CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void waitWhileSaturated() {
+        while (concurrencyLimiter.isSaturated() && !stopRequested.get()) {
+            sleep(TimeUnit.MILLISECONDS.toNanos(saturationPauseMillis));
+        }
+    }
+
+    private long processedRows() {
+        return rowsRewritten.get() + rowsSkipped.get() + rowsFailed.get();
+    }
+
+    private double progress() {
+        long total = rowsToRewrite.get();
+        return total == 0 ? 1.0 : Math.min(1.0, (double) processedRows() / total);
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Card re-encryption interrupted", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+        void apply(long fromId, long toId);
+    }
+
+    /**
+     * Spaces rows evenly at the configured rate across all workers. Unused time is not saved up,
+     * so the job never bursts after an idle or saturated period.
+     */
+    private static final class Throttle {
+        private final long intervalNanos;
+        private long nextFreeNanos = System.nanoTime();
+
+        Throttle(double perSecond) {
+            this.intervalNanos = perSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / perSecond) : 0;
+        }
+
+        void acquire(int rows) {
+            if (intervalNanos == 0) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(now, nextFreeNanos);
+                nextFreeNanos = start + rows * intervalNanos;
+                wait = start - now;
+            }
+            if (wait > 0) {
+                sleep(wait);
+            }
+        }
+    }
+}
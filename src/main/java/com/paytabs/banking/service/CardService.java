@@ -7,6 +7,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -17,15 +18,35 @@ public class CardService {
     private final CardRepository cardRepository;
     private final UserService userService;
 
-    public Card getCustomerCard(String username) {
+    /**
+     * All cards of the user's customer, oldest first, loaded with a single query.
+     */
+    @Transactional(readOnly = true)
+    public List<Card> getCustomerCards(String username) {
         User user = userService.findByUsername(username);
-        if (user == null) return null;
-        
-        String customerId = user.getCustomerId();
-        List<Card> cards = cardRepository.findByCustomerId(customerId);
-        return cards.isEmpty() ? null : cards.get(0);
+        if (user == null) return List.of();
+
+        return cardRepository.findByCustomerIdOrderById(user.getCustomerId());
+    }
+
+    /**
+     * The given card if it belongs to the user, or the user's first card when cardId is null.
+     */
+    @Transactional(readOnly = true)
+    public Card getCustomerCard(String username, Long cardId) {
+        List<Card> cards = getCustomerCards(username);
+        if (cardId == null) {
+            return cards.isEmpty() ? null : cards.get(0);
+        }
+        return cards.stream().filter(card -> card.getId().equals(cardId)).findFirst().orElse(null);
+    }
+
+    @Transactional(readOnly = true)
+    public Card getCustomerCard(String username) {
+        return getCustomerCard(username, null);
     }
 
+    @Transactional(readOnly = true)
     public Card getCurrentUserCard() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth == null || auth.getName() == null) return null;
@@ -0,0 +1,80 @@
+package com.paytabs.banking.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs card operations on a fixed set of single-threaded shards.
+ * A card number always hashes to the same shard, so operations for one card
+ * execute in submission order while different cards run in parallel. Shards serialize per-card
+ * in-memory state such as velocity windows; database updates rely on row locks instead.
+ */
+@Component
+@Slf4j
+public class CardShardExecutor {
+
+    private final ThreadPoolExecutor[] shards;
+
+    public CardShardExecutor(@Value("${transaction.processing.shards:0}") int shardCount,
+                             @Value("${transaction.processing.shard-queue-capacity:1024}") int queueCapacity) {
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        this.shards = new ThreadPoolExecutor[count];
+        for (int i = 0; i < count; i++) {
+            String threadName = "card-shard-" + i;
+            shards[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        log.info("Started {} card shards with queue capacity {}", count, queueCapacity);
+    }
+
+    /**
+     * Submits a task to the shard owning the given card number.
+     * The returned future fails with a RejectedExecutionException if the shard queue is full.
+     */
+    public <T> CompletableFuture<T> submit(String cardNumber, Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, shards[shardFor(cardNumber)]);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    int shardFor(String cardNumber) {
+        return Math.floorMod(cardNumber.hashCode(), shards.length);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+        for (ThreadPoolExecutor shard : shards) {
+            try {
+                if (!shard.awaitTermination(10, TimeUnit.SECONDS)) {
+                    shard.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                shard.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
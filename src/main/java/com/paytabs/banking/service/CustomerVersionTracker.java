@@ -0,0 +1,211 @@
+package com.paytabs.banking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version counters behind the ETag and Last-Modified headers of customer and admin read
+ * endpoints, so a conditional request can be answered without querying the database.
+ *
+ * Customers are hashed onto a fixed number of stripes, each with a counter and the time of its
+ * last change; a change to one customer also invalidates the others in its stripe, which only
+ * costs them a full response. A global counter covers admin views over all customers. Counters
+ * are bumped when a write on this instance commits. With several instances (catch-up enabled),
+ * writes made elsewhere are picked up by a periodic read of new transaction rows and recently
+ * opened or closed holds, limited to rows older than the settle window like the outbox relay.
+ * Ids the catch-up skips are kept as gaps and re-checked on every run, since an identity value
+ * can commit after a higher one; gaps older than the gap timeout are dropped as rolled back.
+ * ETags carry a per-instance tag, so ETags from another instance or an earlier run never match.
+ */
+@Component
+public class CustomerVersionTracker {
+
+    private static final int STRIPES = 1 << 16;
+    private static final int CATCH_UP_PAGE = 1000;
+    // A restart can make H2 skip a block of identity values; gaps beyond this are not tracked
+    private static final int MAX_GAPS = 10_000;
+
+    /**
+     * A counter value and when it last changed, in epoch milliseconds.
+     */
+    public record Version(long counter, long modifiedMillis) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final boolean catchUpEnabled;
+    private final long settleMillis;
+    private final long gapTimeoutMillis;
+    private final String instanceTag = Long.toString(System.currentTimeMillis(), 36);
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicLongArray counters = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray modified = new AtomicLongArray(STRIPES);
+    private final AtomicLong globalCounter = new AtomicLong();
+    private final AtomicLong globalModified = new AtomicLong(startedAt);
+    private long lastTransactionId = -1;
+    private LocalDateTime holdsCheckedUntil;
+    // Skipped transaction id -> when it was first skipped, in epoch milliseconds
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+
+    public CustomerVersionTracker(DataSource dataSource,
+                                  @Value("${http.conditional.enabled:true}") boolean enabled,
+                                  @Value("${http.conditional.catch-up.enabled:false}") boolean catchUpEnabled,
+                                  @Value("${http.conditional.settle-ms:1000}") long settleMillis,
+                                  @Value("${http.conditional.gap-timeout-ms:300000}") long gapTimeoutMillis) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.enabled = enabled;
+        this.catchUpEnabled = catchUpEnabled;
+        this.settleMillis = settleMillis;
+        this.gapTimeoutMillis = gapTimeoutMillis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Bumps the customer's and the global version once the surrounding transaction commits, or
+     * straight away outside a transaction.
+     */
+    public void bumpAfterCommit(String customerId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(customerId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                bump(customerId);
+            }
+        });
+    }
+
+    public void bump(String customerId) {
+        long now = System.currentTimeMillis();
+        if (customerId != null) {
+            int stripe = stripe(customerId);
+            counters.incrementAndGet(stripe);
+            modified.accumulateAndGet(stripe, now, Math::max);
+        }
+        globalCounter.incrementAndGet();
+        globalModified.accumulateAndGet(now, Math::max);
+    }
+
+    public Version current(String customerId) {
+        int stripe = stripe(customerId);
+        long changed = modified.get(stripe);
+        return new Version(counters.get(stripe), changed != 0 ? changed : startedAt);
+    }
+
+    public Version global() {
+        return new Version(globalCounter.get(), globalModified.get());
+    }
+
+    /**
+     * Weak ETag for one representation (scope plus variant, e.g. a customer's dashboard for a card)
+     * at the given version.
+     */
+    public String etag(String scope, String variant, Version version) {
+        return "W/\"" + instanceTag + "-" + Long.toString(version.counter(), 36) + "-"
+                + Long.toHexString(hash(scope + '|' + variant)) + "\"";
+    }
+
+    @Scheduled(fixedDelayString = "${http.conditional.catch-up-ms:5000}")
+    public synchronized void catchUp() {
+        if (!enabled || !catchUpEnabled) {
+            return;
+        }
+        LocalDateTime settled = LocalDateTime.now().minus(settleMillis, ChronoUnit.MILLIS);
+        if (lastTransactionId < 0) {
+            // Only writes from now on matter; nothing has been served yet
+            Long maxId = jdbcTemplate.queryForObject("select max(id) from transactions", Long.class);
+            lastTransactionId = maxId != null ? maxId : 0;
+            holdsCheckedUntil = settled;
+            return;
+        }
+
+        checkGaps();
+        long now = System.currentTimeMillis();
+        while (true) {
+            List<Object[]> page = jdbcTemplate.query(
+                    "select id, customer_id from transactions where id > ? and timestamp <= ? order by id limit ?",
+                    (rs, rowNum) -> new Object[]{rs.getLong("id"), rs.getString("customer_id")},
+                    lastTransactionId, Timestamp.valueOf(settled), CATCH_UP_PAGE);
+            for (Object[] row : page) {
+                long id = (Long) row[0];
+                for (long missing = lastTransactionId + 1; missing < id && gaps.size() < MAX_GAPS; missing++) {
+                    gaps.put(missing, now);
+                }
+                bump((String) row[1]);
+                lastTransactionId = id;
+            }
+            if (page.size() < CATCH_UP_PAGE) {
+                break;
+            }
+        }
+
+        // Holds change a card's held amount without writing a transaction row
+        jdbcTemplate.queryForList("select distinct c.customer_id from authorization_holds h join cards c on c.id = h.card_id " +
+                        "where (h.created_at > ? and h.created_at <= ?) or (h.closed_at > ? and h.closed_at <= ?)",
+                String.class, Timestamp.valueOf(holdsCheckedUntil), Timestamp.valueOf(settled),
+                Timestamp.valueOf(holdsCheckedUntil), Timestamp.valueOf(settled))
+                .forEach(this::bump);
+        holdsCheckedUntil = settled;
+    }
+
+    /**
+     * Bumps customers whose transaction committed after the catch-up had already passed its id,
+     * and drops gaps older than the gap timeout.
+     */
+    private void checkGaps() {
+        if (gaps.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(gaps.keySet());
+        for (int from = 0; from < ids.size(); from += CATCH_UP_PAGE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + CATCH_UP_PAGE, ids.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query("select id, customer_id from transactions where id in (" + placeholders + ")",
+                    rs -> {
+                        bump(rs.getString("customer_id"));
+                        gaps.remove(rs.getLong("id"));
+                    }, chunk.toArray());
+        }
+        long expiredBefore = System.currentTimeMillis() - gapTimeoutMillis;
+        gaps.values().removeIf(skippedAt -> skippedAt < expiredBefore);
+    }
+
+    int pendingGaps() {
+        return gaps.size();
+    }
+
+    private static int stripe(String customerId) {
+        return (int) (hash(customerId) & (STRIPES - 1));
+    }
+
+    // 64-bit FNV-1a: spreads similar customer ids across stripes and keeps ETag variant hashes apart
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,65 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.entity.OutboxEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Default sink: appends each event as a tab-separated line (id, type, JSON payload) to a local
+ * log file and forces it to disk before the batch is acknowledged. The consumer name keys the
+ * sink's offset, so instances writing separate files must use separate names.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.sink", havingValue = "file", matchIfMissing = true)
+public class FileOutboxSink implements OutboxSink {
+
+    private final FileChannel channel;
+    private final String consumer;
+
+    public FileOutboxSink(@Value("${outbox.file.path:data/outbox/events.log}") String path,
+                          @Value("${outbox.file.consumer:file-log}") String consumer) throws IOException {
+        this.consumer = consumer;
+        Path file = Path.of(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public String name() {
+        return consumer;
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) throws IOException {
+        StringBuilder lines = new StringBuilder(events.size() * 256);
+        for (OutboxEvent event : events) {
+            lines.append(event.getId()).append('\t')
+                    .append(event.getEventType()).append('\t')
+                    .append(event.getPayload()).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        channel.close();
+    }
+}
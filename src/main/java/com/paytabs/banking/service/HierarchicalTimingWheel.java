@@ -0,0 +1,207 @@
+package com.paytabs.banking.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchical timing wheel for large numbers of long-lived timeouts.
+ *
+ * Level 0 has one bucket per tick; each higher level has buckets wheelSize times coarser and
+ * is added on demand. A timeout is placed on the lowest level whose span covers it and is
+ * moved down a level when its coarse bucket comes round, so scheduling and cancelling are O(1)
+ * and each tick only touches the timeouts that are actually due. Buckets are intrusive doubly
+ * linked lists, so cancelling unlinks the entry instead of leaving it to be skipped later.
+ *
+ * Expired tasks run on the wheel's single driver thread and should hand off anything slow.
+ */
+@Slf4j
+public class HierarchicalTimingWheel {
+
+    /**
+     * Handle for a scheduled task.
+     */
+    public interface Timeout {
+        /** Returns true if the task was still pending and will now never run. */
+        boolean cancel();
+    }
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<Entry[]> levels = new ArrayList<>();
+    private final ScheduledExecutorService driver;
+    private long currentTick;
+    private long pending;
+
+    public HierarchicalTimingWheel(String name, long tickMillis, int wheelSize) {
+        this(name, tickMillis, wheelSize, System.currentTimeMillis());
+    }
+
+    // Tests start the wheel at a fixed time and drive it with advanceTo instead of the driver thread
+    HierarchicalTimingWheel(String name, long tickMillis, int wheelSize, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTick = startMillis / tickMillis;
+        this.driver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        levels.add(newLevel());
+    }
+
+    public void start() {
+        driver.scheduleAtFixedRate(() -> advanceTo(System.currentTimeMillis()), tickMillis, tickMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        driver.shutdownNow();
+    }
+
+    /**
+     * Runs the task at or shortly after deadlineMillis; already past deadlines run on the next tick.
+     */
+    public synchronized Timeout schedule(long deadlineMillis, Runnable task) {
+        Entry entry = new Entry(Math.max(ceilDiv(deadlineMillis, tickMillis), currentTick + 1), task);
+        insert(entry);
+        pending++;
+        return entry;
+    }
+
+    public synchronized long pendingCount() {
+        return pending;
+    }
+
+    void advanceTo(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        while (true) {
+            List<Entry> expired;
+            synchronized (this) {
+                if (currentTick >= targetTick) {
+                    return;
+                }
+                expired = processTick(currentTick + 1);
+            }
+            for (Entry entry : expired) {
+                try {
+                    entry.task.run();
+                } catch (RuntimeException e) {
+                    log.error("Timing wheel task failed", e);
+                }
+            }
+        }
+    }
+
+    // Caller holds the lock. Cascades the coarse buckets that start at this tick, then expires level 0.
+    private List<Entry> processTick(long tick) {
+        for (int level = levels.size() - 1; level >= 1; level--) {
+            long granularity = granularity(level);
+            if (tick % granularity == 0) {
+                Entry head = levels.get(level)[(int) ((tick / granularity) % wheelSize)];
+                for (Entry entry = head.next; entry != head; ) {
+                    Entry next = entry.next;
+                    entry.unlink();
+                    insert(entry);
+                    entry = next;
+                }
+            }
+        }
+
+        List<Entry> expired = new ArrayList<>();
+        Entry head = levels.get(0)[(int) (tick % wheelSize)];
+        for (Entry entry = head.next; entry != head; ) {
+            Entry next = entry.next;
+            entry.unlink();
+            entry.expired = true;
+            expired.add(entry);
+            entry = next;
+        }
+        pending -= expired.size();
+        currentTick = tick;
+        return expired;
+    }
+
+    // Places the entry on the lowest level that spans it, measured from the next tick to process
+    private void insert(Entry entry) {
+        long delta = entry.deadlineTick - (currentTick + 1);
+        int level = 0;
+        while (delta >= granularity(level + 1)) {
+            level++;
+            if (level == levels.size()) {
+                levels.add(newLevel());
+            }
+        }
+        long slot = (entry.deadlineTick / granularity(level)) % wheelSize;
+        entry.linkAfter(levels.get(level)[(int) slot]);
+    }
+
+    private long granularity(int level) {
+        long granularity = 1;
+        for (int i = 0; i < level; i++) {
+            if (granularity > Long.MAX_VALUE / wheelSize) {
+                return Long.MAX_VALUE;
+            }
+            granularity *= wheelSize;
+        }
+        return granularity;
+    }
+
+    private Entry[] newLevel() {
+        Entry[] buckets = new Entry[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new Entry(0, null);
+            buckets[i].prev = buckets[i];
+            buckets[i].next = buckets[i];
+        }
+        return buckets;
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    private final class Entry implements Timeout {
+        private final long deadlineTick;
+        private final Runnable task;
+        private Entry prev;
+        private Entry next;
+        private boolean expired;
+
+        Entry(long deadlineTick, Runnable task) {
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (HierarchicalTimingWheel.this) {
+                if (expired || prev == null) {
+                    return false;
+                }
+                unlink();
+                expired = true;
+                pending--;
+                return true;
+            }
+        }
+
+        void linkAfter(Entry head) {
+            prev = head;
+            next = head.next;
+            head.next.prev = this;
+            head.next = this;
+        }
+
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+    }
+}
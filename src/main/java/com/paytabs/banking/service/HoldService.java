@@ -0,0 +1,422 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.dto.HoldRequest;
+import com.paytabs.banking.dto.HoldResponse;
+import com.paytabs.banking.entity.AuthorizationHold;
+import com.paytabs.banking.entity.Card;
+import com.paytabs.banking.entity.Transaction;
+import com.paytabs.banking.repository.AuthorizationHoldRepository;
+import com.paytabs.banking.repository.CardRepository;
+import com.paytabs.banking.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Authorize-then-capture: a hold reserves part of a card's balance (Card.heldAmount) until it is
+ * captured, voided or expires.
+ *
+ * Expiry is driven by an in-process hierarchical timing wheel; pending holds are read back from
+ * the database and rescheduled on startup, and a failed expiry is re-armed. A slow periodic sweep
+ * releases holds the wheels missed, such as those placed on an instance that has since died. Every
+ * change to a hold is made while holding its card's row lock, so holds, withdrawals and transfers
+ * on the same card are serialized, and a hold released twice is only released once.
+ */
+@Service
+@Slf4j
+public class HoldService {
+
+    private static final String PENDING = "PENDING";
+    private static final String CAPTURED = "CAPTURED";
+    private static final String VOIDED = "VOIDED";
+    private static final String EXPIRED = "EXPIRED";
+    private static final int SWEEP_BATCH = 1000;
+
+    private final CardRepository cardRepository;
+    private final AuthorizationHoldRepository holdRepository;
+    private final TransactionRepository transactionRepository;
+    private final OutboxService outboxService;
+    private final TransactionSearchIndex searchIndex;
+    private final CustomerVersionTracker customerVersions;
+    private final CardShardExecutor cardShardExecutor;
+    private final VelocityRuleEngine velocityRuleEngine;
+    private final IssuedCardFilter issuedCardFilter;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final long holdTtlSeconds;
+    private final long expiryRetryMillis;
+    private final long sweepMillis;
+    private final HierarchicalTimingWheel wheel;
+    private final ExecutorService expiryExecutor;
+    private final Map<Long, HierarchicalTimingWheel.Timeout> timers = new ConcurrentHashMap<>();
+
+    public HoldService(CardRepository cardRepository, AuthorizationHoldRepository holdRepository,
+                       TransactionRepository transactionRepository, OutboxService outboxService,
+                       TransactionSearchIndex searchIndex, CustomerVersionTracker customerVersions,
+                       CardShardExecutor cardShardExecutor, VelocityRuleEngine velocityRuleEngine,
+                       IssuedCardFilter issuedCardFilter, PlatformTransactionManager transactionManager,
+                       DataSource dataSource,
+                       @Value("${holds.ttl-seconds:86400}") long holdTtlSeconds,
+                       @Value("${holds.wheel.tick-ms:1000}") long tickMillis,
+                       @Value("${holds.wheel.size:512}") int wheelSize,
+                       @Value("${holds.expiry-threads:2}") int expiryThreads,
+                       @Value("${holds.expiry-retry-ms:5000}") long expiryRetryMillis,
+                       @Value("${holds.sweep-ms:60000}") long sweepMillis) {
+        this.cardRepository = cardRepository;
+        this.holdRepository = holdRepository;
+        this.transactionRepository = transactionRepository;
+        this.outboxService = outboxService;
+        this.searchIndex = searchIndex;
+        this.customerVersions = customerVersions;
+        this.cardShardExecutor = cardShardExecutor;
+        this.velocityRuleEngine = velocityRuleEngine;
+        this.issuedCardFilter = issuedCardFilter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.holdTtlSeconds = holdTtlSeconds;
+        this.expiryRetryMillis = expiryRetryMillis;
+        this.sweepMillis = sweepMillis;
+        this.wheel = new HierarchicalTimingWheel("hold-expiry-wheel", tickMillis, wheelSize);
+        this.expiryExecutor = Executors.newFixedThreadPool(expiryThreads, runnable -> {
+            Thread thread = new Thread(runnable, "hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets held_amount to 0 on rows written before the column existed. ddl-auto=update databases
+     * may have added it as a nullable column; the prod schema script does the same itself.
+     */
+    @PostConstruct
+    public void backfillHeldAmounts() {
+        int filled = jdbcTemplate.update("update cards set held_amount = 0 where held_amount is null");
+        if (filled > 0) {
+            log.info("Set held_amount to 0 on {} cards written before authorization holds", filled);
+        }
+    }
+
+    /**
+     * Starts the wheel and reschedules every hold that was still pending when the application stopped.
+     * Holds that expired while it was down are released on the first tick.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverPendingHolds() {
+        long[] recovered = {0};
+        jdbcTemplate.query("select id, expires_at from authorization_holds where status = 'PENDING'",
+                rs -> {
+                    scheduleExpiry(rs.getLong("id"), rs.getTimestamp("expires_at").toLocalDateTime());
+                    recovered[0]++;
+                });
+        wheel.start();
+        log.info("Scheduled expiry for {} pending authorization holds", recovered[0]);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.stop();
+        expiryExecutor.shutdownNow();
+    }
+
+    /**
+     * Reserves the amount on the card. Like a withdrawal, an authorization must pass the issued card
+     * filter and the card's velocity limits, and counts against them once approved; it runs on the
+     * card's shard, which owns those limits.
+     */
+    public HoldResponse authorize(HoldRequest request, String caller) {
+        if (issuedCardFilter.check(request.getCardNumber()) != null) {
+            return new HoldResponse(false, "Invalid card number", null, "failed", request.getAmount(), null, null, null);
+        }
+        try {
+            return cardShardExecutor.submit(request.getCardNumber(), () -> authorizeOnShard(request, caller)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                return new HoldResponse(false, "System busy, please retry", null, "failed", request.getAmount(),
+                        null, null, null);
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private HoldResponse authorizeOnShard(HoldRequest request, String caller) {
+        long now = System.currentTimeMillis();
+        HoldResponse response = transactionTemplate.execute(status -> {
+            BigDecimal amount = request.getAmount();
+            Optional<Card> cardOptional = cardRepository.findLockedByCardNumber(request.getCardNumber());
+            if (cardOptional.isEmpty()) {
+                return recordFailure(request.getCardNumber(), amount, "Invalid card number", null);
+            }
+
+            Card card = cardOptional.get();
+            if (!pinMatches(request.getPin(), card.getPinHash())) {
+                log.warn("Invalid PIN for hold on card: {}", request.getCardNumber());
+                return recordFailure(request.getCardNumber(), amount, "Invalid PIN", card);
+            }
+            if (!card.isActive()) {
+                return recordFailure(request.getCardNumber(), amount, "Card is inactive", card);
+            }
+            String declineReason = velocityRuleEngine.evaluate(request.getCardNumber(), "withdraw", amount, now);
+            if (declineReason != null) {
+                return recordFailure(request.getCardNumber(), amount, declineReason, card);
+            }
+            BigDecimal available = card.getBalance().subtract(card.getHeldAmount());
+            if (available.compareTo(amount) < 0) {
+                return recordFailure(request.getCardNumber(), amount, "Insufficient balance", card);
+            }
+
+            card.setHeldAmount(card.getHeldAmount().add(amount));
+            cardRepository.save(card);
+            customerVersions.bumpAfterCommit(card.getCustomerId());
+            LocalDateTime now = LocalDateTime.now();
+            AuthorizationHold hold = holdRepository.save(AuthorizationHold.builder()
+                    .cardId(card.getId())
+                    .cardNumber(request.getCardNumber())
+                    .authorizedBy(caller)
+                    .amount(amount)
+                    .status(PENDING)
+                    .createdAt(now)
+                    .expiresAt(now.plusSeconds(holdTtlSeconds))
+                    .build());
+
+            log.info("Authorized hold {} of {} on card ending in {}", hold.getId(), amount,
+                    request.getCardNumber().substring(request.getCardNumber().length() - 4));
+            return new HoldResponse(true, "Authorization approved", hold.getId(), PENDING, amount,
+                    available.subtract(amount), hold.getExpiresAt(), null);
+        });
+
+        if (response.isSuccess()) {
+            velocityRuleEngine.record(request.getCardNumber(), "withdraw", request.getAmount(), now);
+            scheduleExpiry(response.getHoldId(), response.getExpiresAt());
+        }
+        return response;
+    }
+
+    /**
+     * Takes up to the held amount from the card's balance and releases the rest of the hold. Only
+     * the user that placed the hold or an admin may capture it.
+     */
+    public HoldResponse capture(Long holdId, BigDecimal amount, String caller, boolean admin) {
+        HoldResponse response = transactionTemplate.execute(status -> {
+            Optional<Long> cardId = holdRepository.findCardIdById(holdId);
+            if (cardId.isEmpty()) {
+                return failure(holdId, "Hold not found");
+            }
+            Card card = cardRepository.findLockedById(cardId.get()).orElseThrow();
+            AuthorizationHold hold = holdRepository.findById(holdId).orElseThrow();
+            if (!mayClose(hold, caller, admin)) {
+                return failure(holdId, "Hold not found");
+            }
+            if (!PENDING.equals(hold.getStatus())) {
+                return failure(holdId, "Hold is already " + hold.getStatus().toLowerCase());
+            }
+            // The hold stays pending, so a card blocked after authorization is released on expiry or void
+            if (!card.isActive()) {
+                return failure(holdId, "Card is inactive");
+            }
+
+            BigDecimal captureAmount = amount != null ? amount : hold.getAmount();
+            if (captureAmount.signum() <= 0 || captureAmount.compareTo(hold.getAmount()) > 0) {
+                return failure(holdId, "Capture amount must be positive and at most the held amount");
+            }
+
+            BigDecimal balanceBefore = card.getBalance();
+            card.setHeldAmount(card.getHeldAmount().subtract(hold.getAmount()));
+            card.setBalance(balanceBefore.subtract(captureAmount));
+            cardRepository.save(card);
+            customerVersions.bumpAfterCommit(card.getCustomerId());
+
+            Transaction transaction = transactionRepository.save(Transaction.builder()
+                    .cardNumber(hold.getCardNumber())
+                    .transactionType("capture")
+                    .amount(captureAmount)
+                    .balanceBefore(balanceBefore)
+                    .balanceAfter(card.getBalance())
+                    .status("success")
+                    .customerId(card.getCustomerId())
+                    .customerName(card.getCustomerName())
+                    .build());
+            outboxService.recordBalanceChange(transaction);
+            searchIndex.indexAfterCommit(transaction);
+
+            close(hold, CAPTURED);
+            hold.setCapturedAmount(captureAmount);
+            hold.setTransactionId(transaction.getId());
+
+            return new HoldResponse(true, "Capture successful", holdId, CAPTURED, captureAmount,
+                    card.getBalance().subtract(card.getHeldAmount()), hold.getExpiresAt(), transaction.getId().toString());
+        });
+
+        if (response.isSuccess()) {
+            cancelExpiry(holdId);
+        }
+        return response;
+    }
+
+    /**
+     * Releases the hold. Only the user that placed it or an admin may void it.
+     */
+    public HoldResponse voidHold(Long holdId, String caller, boolean admin) {
+        HoldResponse response = transactionTemplate.execute(status -> {
+            if (!admin && !caller.equals(holdRepository.findAuthorizedByById(holdId).orElse(null))) {
+                return failure(holdId, "Hold not found");
+            }
+            return release(holdId, VOIDED);
+        });
+        if (response.isSuccess()) {
+            cancelExpiry(holdId);
+        }
+        return response;
+    }
+
+    /**
+     * Releases the hold if it is still pending. A failure (lock timeout, database error) re-arms the
+     * expiry after holds.expiry-retry-ms instead of leaving the amount reserved until a restart.
+     */
+    void expire(Long holdId) {
+        timers.remove(holdId);
+        try {
+            HoldResponse response = transactionTemplate.execute(status -> release(holdId, EXPIRED));
+            if (response.isSuccess()) {
+                log.info("Hold {} expired and was released", holdId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Expiring hold {} failed, retrying in {} ms: {}", holdId, expiryRetryMillis, e.getMessage());
+            scheduleExpiry(holdId, LocalDateTime.now().plusNanos(expiryRetryMillis * 1_000_000));
+        }
+    }
+
+    /**
+     * Releases pending holds that are overdue by more than one sweep interval. The wheel of the
+     * instance that placed a hold normally releases it on time; this catches holds of instances
+     * that stopped or died, in any instance sharing the database.
+     */
+    @Scheduled(fixedDelayString = "${holds.sweep-ms:60000}", initialDelayString = "${holds.sweep-ms:60000}")
+    public void sweepOverdueHolds() {
+        List<Long> overdue = jdbcTemplate.queryForList(
+                "select id from authorization_holds where status = 'PENDING' and expires_at < ? order by expires_at limit ?",
+                Long.class, Timestamp.valueOf(LocalDateTime.now().minusNanos(sweepMillis * 1_000_000)), SWEEP_BATCH);
+        if (!overdue.isEmpty()) {
+            log.info("Releasing {} overdue authorization holds", overdue.size());
+            for (Long holdId : overdue) {
+                cancelExpiry(holdId);
+                expire(holdId);
+            }
+        }
+    }
+
+    public long pendingExpiryCount() {
+        return wheel.pendingCount();
+    }
+
+    private HoldResponse release(Long holdId, String outcome) {
+        Optional<Long> cardId = holdRepository.findCardIdById(holdId);
+        if (cardId.isEmpty()) {
+            return failure(holdId, "Hold not found");
+        }
+        Card card = cardRepository.findLockedById(cardId.get()).orElseThrow();
+        AuthorizationHold hold = holdRepository.findById(holdId).orElseThrow();
+        if (!PENDING.equals(hold.getStatus())) {
+            return failure(holdId, "Hold is already " + hold.getStatus().toLowerCase());
+        }
+
+        card.setHeldAmount(card.getHeldAmount().subtract(hold.getAmount()));
+        cardRepository.save(card);
+        customerVersions.bumpAfterCommit(card.getCustomerId());
+        close(hold, outcome);
+
+        return new HoldResponse(true, VOIDED.equals(outcome) ? "Hold voided" : "Hold expired", holdId, outcome,
+                hold.getAmount(), card.getBalance().subtract(card.getHeldAmount()), hold.getExpiresAt(), null);
+    }
+
+    // Other callers get the same answer as for a missing hold, so hold ids cannot be probed
+    private static boolean mayClose(AuthorizationHold hold, String caller, boolean admin) {
+        return admin || (caller != null && caller.equals(hold.getAuthorizedBy()));
+    }
+
+    private void close(AuthorizationHold hold, String outcome) {
+        hold.setStatus(outcome);
+        hold.setClosedAt(LocalDateTime.now());
+        holdRepository.save(hold);
+    }
+
+    private void scheduleExpiry(Long holdId, LocalDateTime expiresAt) {
+        long deadline = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        // The wheel thread only hands the expiry off, so a burst of expiries cannot delay its ticks
+        HierarchicalTimingWheel.Timeout previous = timers.put(holdId,
+                wheel.schedule(deadline, () -> expiryExecutor.execute(() -> expire(holdId))));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void cancelExpiry(Long holdId) {
+        HierarchicalTimingWheel.Timeout timeout = timers.remove(holdId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private HoldResponse recordFailure(String cardNumber, BigDecimal amount, String reason, Card card) {
+        BigDecimal balance = card != null ? card.getBalance() : BigDecimal.ZERO;
+        Transaction transaction = transactionRepository.save(Transaction.builder()
+                .cardNumber(cardNumber)
+                .transactionType("authorize")
+                .amount(amount)
+                .balanceBefore(balance)
+                .balanceAfter(balance)
+                .status("failed")
+                .reason(reason)
+                .customerId(card != null ? card.getCustomerId() : null)
+                .customerName(card != null ? card.getCustomerName() : null)
+                .build());
+        searchIndex.indexAfterCommit(transaction);
+        customerVersions.bumpAfterCommit(transaction.getCustomerId());
+        return new HoldResponse(false, reason, null, "failed", amount, null, null, null);
+    }
+
+    private static HoldResponse failure(Long holdId, String reason) {
+        return new HoldResponse(false, reason, holdId, "failed", null, null, null, null);
+    }
+
+    private static boolean pinMatches(String pin, String storedHash) {
+        if (pin == null || storedHash == null) {
+            return false;
+        }
+        try {
+            String hash = HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(pin.getBytes(StandardCharsets.UTF_8)));
+            return MessageDigest.isEqual(hash.getBytes(StandardCharsets.US_ASCII),
+                    storedHash.getBytes(StandardCharsets.US_ASCII));
+        } catch (Exception e) {
+            throw new RuntimeException("Error hashing PIN", e);
+        }
+    }
+}
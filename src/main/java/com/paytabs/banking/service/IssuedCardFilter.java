@@ -0,0 +1,188 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.crypto.EncryptionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ingress check for card numbers: rejects numbers that are malformed or were never issued
+ * without touching the database, so card-testing traffic costs neither an encrypted lookup nor a
+ * failure row. Rejections are only counted, per reason, in transactions.ingress.rejected.
+ *
+ * Issued cards are tracked in a Bloom filter, loaded from the cards table on startup and fed by
+ * card creation on this instance. Cards issued by other instances are picked up by a periodic
+ * incremental read by id; the read overlaps the previous one because identity ids are assigned
+ * before commit. Until the first load completes every well-formed number is let through.
+ *
+ * When the filter outgrows its planned size it is rebuilt from the cards table into a larger one.
+ * Cards added on this instance during the rebuild go into both filters, so none is lost when the
+ * larger filter replaces the current one.
+ */
+@Component
+@Slf4j
+public class IssuedCardFilter {
+
+    public static final String REASON_FORMAT = "format";
+    public static final String REASON_LUHN = "luhn";
+    public static final String REASON_UNKNOWN = "unknown";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final Map<String, Counter> rejections = new HashMap<>();
+    private final boolean enabled;
+    private final long expectedCards;
+    private final double falsePositiveRate;
+    private final long idOverlap;
+    private final Object swapLock = new Object();
+    private volatile BloomFilter filter;
+    // The larger filter while a rebuild is reading the cards table, otherwise null
+    private BloomFilter rebuilding;
+    private volatile boolean loaded;
+    private long lastCardId;
+    private long cardCount;
+
+    public IssuedCardFilter(DataSource dataSource, EncryptionUtil encryptionUtil, MeterRegistry meterRegistry,
+                            @Value("${ingress.card-filter.enabled:true}") boolean enabled,
+                            @Value("${ingress.card-filter.expected-cards:1000000}") long expectedCards,
+                            @Value("${ingress.card-filter.false-positive-rate:0.001}") double falsePositiveRate,
+                            @Value("${ingress.card-filter.id-overlap:1000}") long idOverlap) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(1000);
+        this.encryptionUtil = encryptionUtil;
+        for (String reason : List.of(REASON_FORMAT, REASON_LUHN, REASON_UNKNOWN)) {
+            rejections.put(reason, Counter.builder("transactions.ingress.rejected").tag("reason", reason)
+                    .register(meterRegistry));
+        }
+        this.enabled = enabled;
+        this.expectedCards = expectedCards;
+        this.falsePositiveRate = falsePositiveRate;
+        this.idOverlap = idOverlap;
+        this.filter = new BloomFilter(expectedCards, falsePositiveRate);
+    }
+
+    /**
+     * Returns null if the number may belong to an issued card, otherwise the rejection reason.
+     * Issued numbers always pass, including legacy ones without a valid check digit; for the rest
+     * the Luhn check only tells typos apart from guessed numbers in the metrics.
+     */
+    public String check(String cardNumber) {
+        if (!enabled) {
+            return null;
+        }
+        String reason = null;
+        if (!isWellFormed(cardNumber)) {
+            reason = REASON_FORMAT;
+        } else if (loaded && !filter.mightContain(cardNumber)) {
+            reason = hasValidCheckDigit(cardNumber) ? REASON_UNKNOWN : REASON_LUHN;
+        }
+        if (reason != null) {
+            rejections.get(reason).increment();
+        }
+        return reason;
+    }
+
+    /**
+     * Registers a newly issued card. Call after the card row has been saved.
+     */
+    public void addIssuedCard(String cardNumber) {
+        synchronized (swapLock) {
+            filter.add(cardNumber);
+            if (rebuilding != null) {
+                rebuilding.add(cardNumber);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (enabled) {
+            refresh();
+            loaded = true;
+            log.info("Issued card filter loaded with {} cards ({} KB)", cardCount, filter.sizeInBytes() / 1024);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ingress.card-filter.refresh-ms:30000}", initialDelayString = "${ingress.card-filter.refresh-ms:30000}")
+    public synchronized void refresh() {
+        if (!enabled) {
+            return;
+        }
+        if (cardCount > filter.expectedEntries()) {
+            // Past its planned size the false-positive rate climbs; rebuild at twice the size
+            BloomFilter larger = new BloomFilter(cardCount * 2, falsePositiveRate);
+            synchronized (swapLock) {
+                rebuilding = larger;
+            }
+            long[] count = {0};
+            try {
+                jdbcTemplate.query("select card_number from cards", rs -> {
+                    larger.add(encryptionUtil.decrypt(rs.getString("card_number")));
+                    count[0]++;
+                });
+                synchronized (swapLock) {
+                    filter = larger;
+                }
+            } finally {
+                synchronized (swapLock) {
+                    rebuilding = null;
+                }
+            }
+            cardCount = count[0];
+            log.info("Issued card filter rebuilt for {} cards", cardCount);
+        }
+
+        BloomFilter current = filter;
+        long[] maxId = {lastCardId};
+        jdbcTemplate.query("select id, card_number from cards where id > ? order by id", rs -> {
+            long id = rs.getLong("id");
+            current.add(encryptionUtil.decrypt(rs.getString("card_number")));
+            if (id > lastCardId) {
+                cardCount++;
+            }
+            maxId[0] = Math.max(maxId[0], id);
+        }, Math.max(0, lastCardId - idOverlap));
+        lastCardId = maxId[0];
+    }
+
+    private static boolean isWellFormed(String cardNumber) {
+        if (cardNumber == null || cardNumber.length() < 12 || cardNumber.length() > 19) {
+            return false;
+        }
+        for (int i = 0; i < cardNumber.length(); i++) {
+            char c = cardNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasValidCheckDigit(String cardNumber) {
+        int sum = 0;
+        boolean alternate = false;
+        for (int i = cardNumber.length() - 1; i >= 0; i--) {
+            int digit = cardNumber.charAt(i) - '0';
+            if (alternate) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            alternate = !alternate;
+        }
+        return sum % 10 == 0;
+    }
+}
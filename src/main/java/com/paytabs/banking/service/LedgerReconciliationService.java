@@ -0,0 +1,233 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.crypto.EncryptionUtil;
+import com.paytabs.banking.dto.LedgerDiscrepancy;
+import com.paytabs.banking.dto.ReconciliationReport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies that every card's balance agrees with the balanceBefore/balanceAfter chain of its
+ * successful transactions.
+ *
+ * The card id range is split fork-join style into slices; each slice streams only its own
+ * cards' transactions in id order and keeps one running balance per card, so memory stays
+ * bounded by the slice size. Reads are plain MVCC selects and never lock the live tables, and go
+ * to the read pool (a replica when datasource.read.url is set), like other read-only work. Each
+ * query sees the replica at least as far as the one before it, so a balance read after its chain
+ * is never older than the chain.
+ */
+@Service
+@Slf4j
+public class LedgerReconciliationService {
+
+    private static final int MAX_REPORTED_DISCREPANCIES = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final int parallelism;
+    private final int cardsPerSlice;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile ReconciliationReport lastReport;
+
+    public LedgerReconciliationService(@Qualifier("readDataSource") DataSource dataSource,
+                                       EncryptionUtil encryptionUtil,
+                                       @Value("${reconciliation.parallelism:4}") int parallelism,
+                                       @Value("${reconciliation.cards-per-slice:500}") int cardsPerSlice,
+                                       @Value("${reconciliation.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.encryptionUtil = encryptionUtil;
+        this.parallelism = parallelism;
+        this.cardsPerSlice = cardsPerSlice;
+    }
+
+    /**
+     * Starts a reconciliation in the background. Returns false if one is already running.
+     */
+    public boolean startReconciliation() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                lastReport = reconcile();
+            } catch (Exception e) {
+                log.error("Ledger reconciliation failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public ReconciliationReport getLastReport() {
+        return lastReport;
+    }
+
+    public ReconciliationReport reconcile() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        log.info("Ledger reconciliation started with parallelism {}", parallelism);
+
+        Run run = new Run();
+        Map<String, Object> range = jdbcTemplate.queryForMap("select min(id) as min_id, max(id) as max_id from cards");
+        Number minId = (Number) range.get("min_id");
+        Number maxId = (Number) range.get("max_id");
+
+        if (minId != null) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new SliceTask(run, minId.longValue(), maxId.longValue()));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        ReconciliationReport report = new ReconciliationReport(startedAt, LocalDateTime.now(),
+                run.cardsChecked.get(), run.transactionsScanned.get(), run.discrepancyCount.get(),
+                new ArrayList<>(run.discrepancies));
+        log.info("Ledger reconciliation finished: {} cards, {} transactions, {} discrepancies",
+                report.getCardsChecked(), report.getTransactionsScanned(), report.getDiscrepancyCount());
+        return report;
+    }
+
+    private final class SliceTask extends RecursiveAction {
+        private final Run run;
+        private final long fromId;
+        private final long toId;
+
+        SliceTask(Run run, long fromId, long toId) {
+            this.run = run;
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected void compute() {
+            if (toId - fromId < cardsPerSlice) {
+                reconcileSlice(run, fromId, toId);
+                return;
+            }
+            long mid = fromId + (toId - fromId) / 2;
+            invokeAll(new SliceTask(run, fromId, mid), new SliceTask(run, mid + 1, toId));
+        }
+    }
+
+    private void reconcileSlice(Run run, long fromId, long toId) {
+        Map<String, CardLedger> ledgers = new HashMap<>();
+        Map<Long, CardLedger> ledgersById = new HashMap<>();
+        jdbcTemplate.query("select id, card_number from cards where id between ? and ?",
+                rs -> {
+                    String cardNumber = encryptionUtil.decrypt(rs.getString("card_number"));
+                    CardLedger ledger = new CardLedger(rs.getLong("id"), cardNumber);
+                    ledgers.put(cardNumber, ledger);
+                    ledgersById.put(ledger.cardId, ledger);
+                },
+                fromId, toId);
+        if (ledgers.isEmpty()) {
+            return;
+        }
+
+        // Successful rows are the only ones that move money; stream them in commit order per card
+        namedJdbcTemplate.query("select id, card_number, amount, balance_before, balance_after from transactions " +
+                        "where status = 'success' and card_number in (:cardNumbers) order by card_number, id",
+                new MapSqlParameterSource("cardNumbers", ledgers.keySet()),
+                rs -> {
+                    CardLedger ledger = ledgers.get(rs.getString("card_number"));
+                    ledger.apply(run, rs.getLong("id"), rs.getBigDecimal("amount"),
+                            rs.getBigDecimal("balance_before"), rs.getBigDecimal("balance_after"));
+                    run.transactionsScanned.incrementAndGet();
+                });
+
+        // Card balances are read after the chains so a transaction committed in between shows up as a
+        // mismatch; such cards are re-checked once against their latest transaction before reporting
+        jdbcTemplate.query("select id, balance from cards where id between ? and ?",
+                rs -> {
+                    CardLedger ledger = ledgersById.get(rs.getLong("id"));
+                    if (ledger != null) {
+                        verifyBalance(run, ledger, rs.getBigDecimal("balance"));
+                    }
+                },
+                fromId, toId);
+        run.cardsChecked.addAndGet(ledgers.size());
+    }
+
+    private void verifyBalance(Run run, CardLedger ledger, BigDecimal cardBalance) {
+        if (ledger.lastBalance == null || ledger.lastBalance.compareTo(cardBalance) == 0) {
+            return;
+        }
+        Long latestId = jdbcTemplate.queryForObject(
+                "select max(id) from transactions where card_number = ? and status = 'success'",
+                Long.class, ledger.cardNumber);
+        if (latestId != null && latestId > ledger.lastTransactionId) {
+            return; // Card moved on while the slice was being read; the next run covers it
+        }
+        run.report(new LedgerDiscrepancy("BALANCE_MISMATCH", ledger.cardId, ledger.last4(),
+                ledger.lastTransactionId, ledger.lastBalance, cardBalance));
+    }
+
+    private static final class CardLedger {
+        private final long cardId;
+        private final String cardNumber;
+        private BigDecimal lastBalance;
+        private long lastTransactionId;
+
+        CardLedger(long cardId, String cardNumber) {
+            this.cardId = cardId;
+            this.cardNumber = cardNumber;
+        }
+
+        void apply(Run run, long transactionId, BigDecimal amount, BigDecimal before, BigDecimal after) {
+            if (lastBalance != null && lastBalance.compareTo(before) != 0) {
+                run.report(new LedgerDiscrepancy("CHAIN_GAP", cardId, last4(), transactionId, lastBalance, before));
+            }
+            if (amount != null && after.subtract(before).abs().compareTo(amount.abs()) != 0) {
+                run.report(new LedgerDiscrepancy("ARITHMETIC", cardId, last4(), transactionId, amount, after.subtract(before)));
+            }
+            lastBalance = after;
+            lastTransactionId = transactionId;
+        }
+
+        String last4() {
+            return cardNumber.substring(Math.max(0, cardNumber.length() - 4));
+        }
+    }
+
+    private static final class Run {
+        private final AtomicLong cardsChecked = new AtomicLong();
+        private final AtomicLong transactionsScanned = new AtomicLong();
+        private final AtomicLong discrepancyCount = new AtomicLong();
+        private final List<LedgerDiscrepancy> discrepancies = Collections.synchronizedList(new ArrayList<>());
+
+        void report(LedgerDiscrepancy discrepancy) {
+            if (discrepancyCount.incrementAndGet() <= MAX_REPORTED_DISCREPANCIES) {
+                discrepancies.add(discrepancy);
+            }
+        }
+    }
+}
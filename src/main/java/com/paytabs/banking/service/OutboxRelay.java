@@ -0,0 +1,212 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.entity.OutboxEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the outbox to the configured sink in id-ordered batches.
+ *
+ * The consumer offset only moves after the sink accepted a batch, so delivery is at-least-once.
+ * Events younger than the settle window are left for the next run: identity ids are assigned
+ * before commit, and a slower transaction could otherwise commit a lower id behind the offset.
+ * A transaction can still commit after the window, so ids the offset skips are recorded as gaps
+ * in the same database transaction as the offset. Every run delivers gaps whose event has since
+ * appeared, out of id order, and drops gaps older than the gap timeout as rolled back.
+ * The offset update is conditional on the old value, so two instances never both advance it.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private static final RowMapper<OutboxEvent> EVENT_MAPPER = (rs, rowNum) -> new OutboxEvent(
+            rs.getLong("id"), rs.getString("event_type"), rs.getLong("transaction_id"),
+            rs.getString("payload"), rs.getTimestamp("created_at").toLocalDateTime());
+
+    // A restart can make H2 skip a block of identity values; gaps beyond this per batch are not tracked
+    private static final int MAX_GAPS_PER_BATCH = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxSink sink;
+    private final int batchSize;
+    private final long settleMillis;
+    private final long retentionHours;
+    private final long gapTimeoutMillis;
+    private final Counter published;
+    private final Counter failures;
+    private final Counter gapsExpired;
+    private final Timer batchTimer;
+    private final AtomicLong lag = new AtomicLong();
+
+    public OutboxRelay(DataSource dataSource, PlatformTransactionManager transactionManager, OutboxSink sink,
+                       MeterRegistry meterRegistry,
+                       @Value("${outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${outbox.relay.settle-ms:1000}") long settleMillis,
+                       @Value("${outbox.relay.gap-timeout-ms:300000}") long gapTimeoutMillis,
+                       @Value("${outbox.retention-hours:24}") long retentionHours) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.settleMillis = settleMillis;
+        this.retentionHours = retentionHours;
+        this.gapTimeoutMillis = gapTimeoutMillis;
+        this.published = Counter.builder("outbox.events.published").tag("sink", sink.name()).register(meterRegistry);
+        this.failures = Counter.builder("outbox.batches.failed").tag("sink", sink.name()).register(meterRegistry);
+        this.gapsExpired = Counter.builder("outbox.gaps.expired").tag("sink", sink.name()).register(meterRegistry);
+        this.batchTimer = Timer.builder("outbox.relay.batch").tag("sink", sink.name()).register(meterRegistry);
+        Gauge.builder("outbox.lag.events", lag, AtomicLong::get).tag("sink", sink.name()).register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:500}")
+    public void relay() {
+        long offset = currentOffset();
+        relayFilledGaps();
+        while (true) {
+            List<OutboxEvent> batch = jdbcTemplate.query(
+                    "select id, event_type, transaction_id, payload, created_at from outbox_events " +
+                            "where id > ? and created_at <= ? order by id limit ?",
+                    EVENT_MAPPER, offset, Timestamp.valueOf(LocalDateTime.now().minus(settleMillis, ChronoUnit.MILLIS)),
+                    batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            long start = System.nanoTime();
+            try {
+                sink.publish(batch);
+            } catch (Exception e) {
+                failures.increment();
+                log.warn("Outbox sink {} rejected a batch after offset {}; retrying next run", sink.name(), offset, e);
+                break;
+            }
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            long lastId = batch.get(batch.size() - 1).getId();
+            long previous = offset;
+            List<Long> gaps = missingIds(previous, batch);
+            boolean advanced = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                int updated = jdbcTemplate.update("update outbox_offsets set last_event_id = ?, updated_at = ? " +
+                                "where consumer = ? and last_event_id = ?",
+                        lastId, Timestamp.valueOf(LocalDateTime.now()), sink.name(), previous);
+                if (updated == 0) {
+                    return false;
+                }
+                recordGaps(gaps);
+                return true;
+            }));
+            if (!advanced) {
+                log.info("Outbox offset for {} was advanced by another relay", sink.name());
+                break;
+            }
+            published.increment(batch.size());
+            offset = lastId;
+            if (batch.size() < batchSize) {
+                break;
+            }
+        }
+
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from outbox_events", Long.class);
+        lag.set(maxId != null ? Math.max(0, maxId - offset) : 0);
+        purgeDelivered(offset);
+    }
+
+    /**
+     * Delivers events that committed after the offset had already passed their id, and drops gaps
+     * whose transaction evidently rolled back.
+     */
+    private void relayFilledGaps() {
+        List<OutboxEvent> filled = jdbcTemplate.query(
+                "select e.id, e.event_type, e.transaction_id, e.payload, e.created_at from outbox_events e " +
+                        "join outbox_gaps g on g.event_id = e.id where g.consumer = ? order by e.id limit ?",
+                EVENT_MAPPER, sink.name(), batchSize);
+        if (!filled.isEmpty()) {
+            try {
+                sink.publish(filled);
+            } catch (Exception e) {
+                failures.increment();
+                log.warn("Outbox sink {} rejected {} late events; retrying next run", sink.name(), filled.size(), e);
+                return;
+            }
+            jdbcTemplate.batchUpdate("delete from outbox_gaps where consumer = ? and event_id = ?",
+                    filled.stream().map(event -> new Object[]{sink.name(), event.getId()}).toList());
+            published.increment(filled.size());
+            log.info("Outbox delivered {} events that committed behind the offset of {}", filled.size(), sink.name());
+        }
+
+        int expired = jdbcTemplate.update("delete from outbox_gaps where consumer = ? and recorded_at < ?",
+                sink.name(), Timestamp.valueOf(LocalDateTime.now().minus(gapTimeoutMillis, ChronoUnit.MILLIS)));
+        if (expired > 0) {
+            gapsExpired.increment(expired);
+        }
+    }
+
+    // Ids between the old offset and the end of the batch that had no committed event yet
+    private static List<Long> missingIds(long offset, List<OutboxEvent> batch) {
+        List<Long> missing = new ArrayList<>();
+        long expected = offset + 1;
+        for (OutboxEvent event : batch) {
+            for (long id = expected; id < event.getId() && missing.size() < MAX_GAPS_PER_BATCH; id++) {
+                missing.add(id);
+            }
+            expected = event.getId() + 1;
+        }
+        return missing;
+    }
+
+    private void recordGaps(List<Long> gaps) {
+        if (gaps.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate("insert into outbox_gaps (consumer, event_id, recorded_at) values (?, ?, ?)",
+                gaps.stream().map(id -> new Object[]{sink.name(), id, now}).toList());
+    }
+
+    private long currentOffset() {
+        List<Long> offsets = jdbcTemplate.queryForList(
+                "select last_event_id from outbox_offsets where consumer = ?", Long.class, sink.name());
+        if (!offsets.isEmpty()) {
+            return offsets.get(0);
+        }
+        try {
+            jdbcTemplate.update("insert into outbox_offsets (consumer, last_event_id, updated_at) values (?, 0, ?)",
+                    sink.name(), Timestamp.valueOf(LocalDateTime.now()));
+            return 0;
+        } catch (DuplicateKeyException e) {
+            return jdbcTemplate.queryForObject(
+                    "select last_event_id from outbox_offsets where consumer = ?", Long.class, sink.name());
+        }
+    }
+
+    // Delivered events are kept for a while for replay, then removed so the table stays small.
+    // With a consumer per instance, only events every consumer has passed are removed.
+    private void purgeDelivered(long offset) {
+        if (retentionHours > 0) {
+            jdbcTemplate.update("delete from outbox_events where id <= ? and id <= (select min(last_event_id) " +
+                            "from outbox_offsets) and created_at < ?",
+                    offset, Timestamp.valueOf(LocalDateTime.now().minusHours(retentionHours)));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.paytabs.banking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paytabs.banking.dto.TransactionEvent;
+import com.paytabs.banking.entity.OutboxEvent;
+import com.paytabs.banking.entity.Transaction;
+import com.paytabs.banking.repository.OutboxEventRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper, DataSource dataSource) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Adds an outbox event for a successful balance change. Runs in the caller's transaction, so the
+     * event commits or rolls back together with the change.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBalanceChange(Transaction transaction) {
+        outboxEventRepository.save(new OutboxEvent(null, "transaction." + transaction.getTransactionType(),
+                transaction.getId(), payload(transaction), LocalDateTime.now()));
+    }
+
+    /**
+     * Adds the events of many balance changes with one JDBC batch, for bulk jobs that write their
+     * transactions with JDBC. Same transactional contract as {@link #recordBalanceChange(Transaction)}.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBalanceChanges(List<Transaction> transactions) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            rows.add(new Object[]{"transaction." + transaction.getTransactionType(), transaction.getId(),
+                    payload(transaction), now});
+        }
+        jdbcTemplate.batchUpdate("insert into outbox_events (event_type, transaction_id, payload, created_at) " +
+                "values (?, ?, ?, ?)", rows);
+    }
+
+    private String payload(Transaction transaction) {
+        String cardNumber = transaction.getCardNumber();
+        TransactionEvent event = new TransactionEvent(
+                transaction.getId(),
+                transaction.getLinkedTransactionId(),
+                cardNumber.substring(Math.max(0, cardNumber.length() - 4)),
+                transaction.getTransactionType(),
+                transaction.getAmount(),
+                transaction.getBalanceBefore(),
+                transaction.getBalanceAfter(),
+                transaction.getCustomerId(),
+                transaction.getTimestamp());
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error serializing outbox event", e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.entity.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Destination the outbox relay delivers events to.
+ */
+public interface OutboxSink {
+
+    /**
+     * Consumer name under which the relay stores this sink's offset.
+     */
+    String name();
+
+    /**
+     * Delivers a batch in id order. Throwing leaves the offset where it was, so the whole batch is
+     * delivered again on the next run (at-least-once); consumers de-duplicate by event id.
+     */
+    void publish(List<OutboxEvent> events) throws Exception;
+}
@@ -0,0 +1,407 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.crypto.EncryptionUtil;
+import com.paytabs.banking.dto.PostingRunStatus;
+import com.paytabs.banking.entity.PostingCheckpoint;
+import com.paytabs.banking.entity.Transaction;
+import com.paytabs.banking.repository.PostingCheckpointRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Posts the monthly fee or interest to every active card without going through System 2 card by card.
+ *
+ * Cards are split into id partitions processed in parallel, each in chunks with one short database
+ * transaction per chunk: claim the chunk by advancing the partition checkpoint, lock the chunk's cards
+ * in id order (the order transfers lock in), apply the change with one set-based UPDATE, and write the
+ * transaction rows and outbox events with JDBC batches. A chunk and its checkpoint commit together,
+ * so a card is posted at most once per period and type, an interrupted run resumes where it stopped,
+ * and two instances running the same period split the chunks between them. Chunks pause while the
+ * transaction concurrency limiter is saturated so live traffic goes first.
+ */
+@Service
+@Slf4j
+public class PostingService {
+
+    public static final String FEE = "fee";
+    public static final String INTEREST = "interest";
+    public static final List<String> TYPES = List.of(FEE, INTEREST);
+
+    private static final String INSERT_TRANSACTION = "insert into transactions (card_number, transaction_type, amount, " +
+            "balance_before, balance_after, status, reason, customer_id, customer_name, timestamp) " +
+            "values (?, ?, ?, ?, ?, 'success', ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PostingCheckpointRepository checkpointRepository;
+    private final EncryptionUtil encryptionUtil;
+    private final OutboxService outboxService;
+    private final CustomerVersionTracker customerVersions;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final int partitions;
+    private final int chunkSize;
+    private final BigDecimal monthlyFee;
+    private final BigDecimal feeWaiverBalance;
+    private final BigDecimal monthlyRate;
+    private final long saturationPauseMillis;
+    private final AtomicReference<String> runningRun = new AtomicReference<>();
+    private final ExecutorService runExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Timer chunkTimer;
+
+    public PostingService(DataSource dataSource, PlatformTransactionManager transactionManager,
+                          PostingCheckpointRepository checkpointRepository, EncryptionUtil encryptionUtil,
+                          OutboxService outboxService, CustomerVersionTracker customerVersions,
+                          AdaptiveConcurrencyLimiter concurrencyLimiter, MeterRegistry meterRegistry,
+                          @Value("${postings.partitions:4}") int partitions,
+                          @Value("${postings.chunk-size:500}") int chunkSize,
+                          @Value("${postings.monthly-fee:2.50}") BigDecimal monthlyFee,
+                          @Value("${postings.fee-waiver-balance:0}") BigDecimal feeWaiverBalance,
+                          @Value("${postings.annual-interest-rate:0.02}") BigDecimal annualInterestRate,
+                          @Value("${postings.saturation-pause-ms:200}") long saturationPauseMillis) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.checkpointRepository = checkpointRepository;
+        this.encryptionUtil = encryptionUtil;
+        this.outboxService = outboxService;
+        this.customerVersions = customerVersions;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.partitions = Math.max(1, partitions);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.monthlyFee = monthlyFee;
+        this.feeWaiverBalance = feeWaiverBalance;
+        this.monthlyRate = annualInterestRate.divide(BigDecimal.valueOf(12), MathContext.DECIMAL64);
+        this.saturationPauseMillis = saturationPauseMillis;
+        this.meterRegistry = meterRegistry;
+        this.chunkTimer = Timer.builder("postings.chunk").register(meterRegistry);
+        Gauge.builder("postings.running", runningRun, run -> run.get() != null ? 1 : 0).register(meterRegistry);
+        // Runs the coordinating run() calls only; partitions go to a pool sized by postings.partitions
+        this.runExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "posting-run");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runExecutor.shutdownNow();
+    }
+
+    /**
+     * Posts last month's fees and then its interest when postings.cron is set; disabled by default.
+     */
+    @Scheduled(cron = "${postings.cron:-}")
+    public void postPreviousMonth() {
+        if (!startRun(YearMonth.now().minusMonths(1), TYPES)) {
+            log.warn("Skipping scheduled posting run: a run is already in progress");
+        }
+    }
+
+    /**
+     * Starts or resumes posting one type for a period in the background. Returns false if a run is
+     * already in progress.
+     */
+    public boolean startRun(YearMonth period, String type) {
+        return startRun(period, List.of(type));
+    }
+
+    private boolean startRun(YearMonth period, List<String> types) {
+        for (String type : types) {
+            if (!TYPES.contains(type)) {
+                throw new IllegalArgumentException("Unknown posting type " + type);
+            }
+        }
+        if (!runningRun.compareAndSet(null, period + " " + String.join(",", types))) {
+            return false;
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                for (String type : types) {
+                    run(period, type);
+                }
+            } catch (Exception e) {
+                log.error("Posting run for {} failed; it resumes from its checkpoints when restarted", period, e);
+            } finally {
+                runningRun.set(null);
+            }
+        }, runExecutor);
+        return true;
+    }
+
+    public PostingRunStatus getStatus(YearMonth period, String type) {
+        List<PostingCheckpoint> checkpoints =
+                checkpointRepository.findByPostingPeriodAndPostingTypeOrderByPartitionIndex(period.toString(), type);
+        int completed = (int) checkpoints.stream().filter(PostingCheckpoint::isCompleted).count();
+        long posted = checkpoints.stream().mapToLong(PostingCheckpoint::getCardsPosted).sum();
+        BigDecimal amount = checkpoints.stream().map(PostingCheckpoint::getAmountPosted)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        String running = runningRun.get();
+        return new PostingRunStatus(period.toString(), type,
+                running != null && running.startsWith(period + " ") && running.contains(type),
+                checkpoints.size(), completed, posted, amount);
+    }
+
+    public void run(YearMonth period, String type) {
+        List<PostingCheckpoint> pending = loadOrCreateCheckpoints(period, type).stream()
+                .filter(checkpoint -> !checkpoint.isCompleted())
+                .toList();
+        if (pending.isEmpty()) {
+            log.info("{} postings for {} are already complete", type, period);
+            return;
+        }
+        log.info("Posting {} for {} in {} partitions", type, period, pending.size());
+        Counter cardsCounter = Counter.builder("postings.cards").tag("type", type).register(meterRegistry);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(partitions, pending.size()));
+        try {
+            CompletableFuture.allOf(pending.stream()
+                            .map(checkpoint -> CompletableFuture.runAsync(
+                                    () -> runPartition(period, type, checkpoint.getId(), cardsCounter), executor))
+                            .toArray(CompletableFuture[]::new))
+                    .join();
+        } finally {
+            executor.shutdown();
+        }
+        log.info("{} postings for {} complete: {}", type, period, getStatus(period, type));
+    }
+
+    private List<PostingCheckpoint> loadOrCreateCheckpoints(YearMonth period, String type) {
+        List<PostingCheckpoint> existing =
+                checkpointRepository.findByPostingPeriodAndPostingTypeOrderByPartitionIndex(period.toString(), type);
+        if (!existing.isEmpty()) {
+            return existing;
+        }
+        Map<String, Object> range = jdbcTemplate.queryForMap("select min(id) as min_id, max(id) as max_id from cards");
+        if (range.get("min_id") == null) {
+            return List.of();
+        }
+        long minId = ((Number) range.get("min_id")).longValue();
+        long maxId = ((Number) range.get("max_id")).longValue();
+        long span = (maxId - minId) / partitions + 1;
+
+        // Ranges are fixed when the run is first created; cards issued later are left for the next period
+        List<PostingCheckpoint> checkpoints = new ArrayList<>();
+        for (int i = 0; i < partitions && minId + i * span <= maxId; i++) {
+            long start = minId + i * span;
+            long end = Math.min(maxId, start + span - 1);
+            checkpoints.add(new PostingCheckpoint(null, period.toString(), type, i, start, end, start - 1, 0,
+                    BigDecimal.ZERO, false, LocalDateTime.now()));
+        }
+        return checkpointRepository.saveAll(checkpoints);
+    }
+
+    private void runPartition(YearMonth period, String type, long checkpointId, Counter cardsCounter) {
+        while (true) {
+            waitWhileSaturated();
+            long start = System.nanoTime();
+            Integer posted = transactionTemplate.execute(status -> postChunk(period, type, checkpointId));
+            chunkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (posted == null) {
+                return;
+            }
+            cardsCounter.increment(posted);
+        }
+    }
+
+    /**
+     * Posts the next chunk of a partition in the current transaction. Returns the number of cards
+     * posted, or null once the partition is complete.
+     */
+    private Integer postChunk(YearMonth period, String type, long checkpointId) {
+        Map<String, Object> checkpoint = jdbcTemplate.queryForMap(
+                "select last_card_id, range_end, completed from posting_checkpoints where id = ?", checkpointId);
+        if ((Boolean) checkpoint.get("completed")) {
+            return null;
+        }
+        long fromId = ((Number) checkpoint.get("last_card_id")).longValue();
+        long rangeEnd = ((Number) checkpoint.get("range_end")).longValue();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        Long toId = jdbcTemplate.queryForObject("select max(id) from (select id from cards where id > ? and id <= ? " +
+                "order by id limit ?) chunk", Long.class, fromId, rangeEnd, chunkSize);
+        if (toId == null) {
+            jdbcTemplate.update("update posting_checkpoints set completed = true, updated_at = ? where id = ?",
+                    now, checkpointId);
+            return null;
+        }
+
+        // Claim the chunk first: another instance that read the same checkpoint waits on this row and
+        // then finds it moved on, and re-reads it instead of posting the same cards again
+        int claimed = jdbcTemplate.update("update posting_checkpoints set last_card_id = ?, updated_at = ? " +
+                "where id = ? and last_card_id = ?", toId, now, checkpointId, fromId);
+        if (claimed == 0) {
+            return 0;
+        }
+
+        List<Posting> postings = new ArrayList<>();
+        jdbcTemplate.query("select id, card_number, balance, held_amount, customer_id, customer_name from cards " +
+                        "where id > ? and id <= ? and active = true order by id for update",
+                rs -> {
+                    BigDecimal balance = rs.getBigDecimal("balance");
+                    BigDecimal held = rs.getBigDecimal("held_amount");
+                    BigDecimal amount = FEE.equals(type)
+                            ? feeFor(balance, held != null ? held : BigDecimal.ZERO)
+                            : interestFor(balance);
+                    if (amount != null) {
+                        postings.add(new Posting(rs.getString("card_number"), rs.getString("customer_id"),
+                                rs.getString("customer_name"), balance, amount,
+                                FEE.equals(type) ? balance.subtract(amount) : balance.add(amount)));
+                    }
+                }, fromId, toId);
+
+        int updated = FEE.equals(type) ? applyFees(fromId, toId) : applyInterest(fromId, toId);
+        if (updated != postings.size()) {
+            // The rows are locked, so this only happens if the SQL and Java rules disagree
+            throw new IllegalStateException("Posting " + type + " to cards " + (fromId + 1) + "-" + toId
+                    + " updated " + updated + " cards, expected " + postings.size());
+        }
+        if (postings.isEmpty()) {
+            return 0;
+        }
+
+        String reason = (FEE.equals(type) ? "Monthly fee " : "Interest ") + period;
+        List<Transaction> transactions = insertTransactions(type, reason, postings, now.toLocalDateTime());
+        outboxService.recordBalanceChanges(transactions);
+
+        BigDecimal total = postings.stream().map(Posting::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        jdbcTemplate.update("update posting_checkpoints set cards_posted = cards_posted + ?, " +
+                "amount_posted = amount_posted + ? where id = ?", postings.size(), total, checkpointId);
+        for (Posting posting : postings) {
+            customerVersions.bumpAfterCommit(posting.customerId());
+        }
+        return postings.size();
+    }
+
+    // The rules below and the WHERE clauses of applyFees/applyInterest must select the same cards
+
+    private BigDecimal feeFor(BigDecimal balance, BigDecimal held) {
+        if (feeWaiverBalance.signum() > 0 && balance.compareTo(feeWaiverBalance) >= 0) {
+            return null;
+        }
+        // Never overdraw a card or eat into its holds
+        return balance.subtract(held).compareTo(monthlyFee) >= 0 ? monthlyFee : null;
+    }
+
+    private BigDecimal interestFor(BigDecimal balance) {
+        if (balance.signum() <= 0) {
+            return null;
+        }
+        BigDecimal interest = balance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP);
+        return interest.signum() > 0 ? interest : null;
+    }
+
+    private int applyFees(long fromId, long toId) {
+        if (feeWaiverBalance.signum() > 0) {
+            return jdbcTemplate.update("update cards set balance = balance - ? where id > ? and id <= ? " +
+                            "and active = true and balance - coalesce(held_amount, 0) >= ? and balance < ?",
+                    monthlyFee, fromId, toId, monthlyFee, feeWaiverBalance);
+        }
+        return jdbcTemplate.update("update cards set balance = balance - ? where id > ? and id <= ? " +
+                        "and active = true and balance - coalesce(held_amount, 0) >= ?",
+                monthlyFee, fromId, toId, monthlyFee);
+    }
+
+    private int applyInterest(long fromId, long toId) {
+        return jdbcTemplate.update("update cards set balance = balance + round(balance * ?, 2) " +
+                        "where id > ? and id <= ? and active = true and balance > 0 and round(balance * ?, 2) > 0",
+                monthlyRate, fromId, toId, monthlyRate);
+    }
+
+    private List<Transaction> insertTransactions(String type, String reason, List<Posting> postings,
+                                                 LocalDateTime timestamp) {
+        List<Transaction> transactions = new ArrayList<>(postings.size());
+        for (Posting posting : postings) {
+            transactions.add(Transaction.builder()
+                    .cardNumber(encryptionUtil.decrypt(posting.encryptedCardNumber()))
+                    .transactionType(type)
+                    .amount(posting.amount())
+                    .balanceBefore(posting.balanceBefore())
+                    .balanceAfter(posting.balanceAfter())
+                    .status("success")
+                    .reason(reason)
+                    .customerId(posting.customerId())
+                    .customerName(posting.customerName())
+                    .timestamp(timestamp)
+                    .build());
+        }
+
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_TRANSACTION, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Transaction transaction = transactions.get(i);
+                        ps.setString(1, transaction.getCardNumber());
+                        ps.setString(2, transaction.getTransactionType());
+                        ps.setBigDecimal(3, transaction.getAmount());
+                        ps.setBigDecimal(4, transaction.getBalanceBefore());
+                        ps.setBigDecimal(5, transaction.getBalanceAfter());
+                        ps.setString(6, transaction.getReason());
+                        ps.setString(7, transaction.getCustomerId());
+                        ps.setString(8, transaction.getCustomerName());
+                        ps.setTimestamp(9, Timestamp.valueOf(transaction.getTimestamp()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return transactions.size();
+                    }
+                }, keys);
+
+        List<Map<String, Object>> ids = keys.getKeyList();
+        if (ids.size() != transactions.size()) {
+            throw new IllegalStateException("Expected " + transactions.size() + " generated transaction ids, got " + ids.size());
+        }
+        for (int i = 0; i < transactions.size(); i++) {
+            transactions.get(i).setId(((Number) ids.get(i).values().iterator().next()).longValue());
+        }
+        return transactions;
+    }
+
+    private void waitWhileSaturated() {
+        while (concurrencyLimiter.isSaturated()) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(saturationPauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Posting run interrupted", e);
+            }
+        }
+    }
+
+    private record Posting(String encryptedCardNumber, String customerId, String customerName,
+                           BigDecimal balanceBefore, BigDecimal amount, BigDecimal balanceAfter) {
+    }
+}
@@ -0,0 +1,47 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.entity.OutboxEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded in-process queue for consumers running inside the application (outbox.sink=queue).
+ * A full queue fails the batch, which the relay retries later.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.sink", havingValue = "queue")
+public class QueueOutboxSink implements OutboxSink {
+
+    private final BlockingQueue<OutboxEvent> queue;
+
+    public QueueOutboxSink(@Value("${outbox.queue.capacity:100000}") int capacity) {
+        this.queue = new LinkedBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public String name() {
+        return "local-queue";
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) throws InterruptedException {
+        for (OutboxEvent event : events) {
+            if (!queue.offer(event, 1, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Outbox queue is full");
+            }
+        }
+    }
+
+    /**
+     * Next event for an embedded consumer, waiting up to the given time.
+     */
+    public OutboxEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+}
@@ -0,0 +1,395 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.crypto.EncryptionUtil;
+import com.paytabs.banking.dto.StatementRunStatus;
+import com.paytabs.banking.entity.StatementCheckpoint;
+import com.paytabs.banking.repository.StatementCheckpointRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Nightly batch that writes a monthly statement per customer as text and HTML files.
+ *
+ * Customers are split into user id partitions processed in parallel. Each partition works in
+ * chunks: one query for the chunk's customers, one for their cards and one for all their
+ * transactions in the month, and records a checkpoint after every chunk so an interrupted run
+ * resumes where it stopped. Files are replaced atomically, so re-writing a chunk is harmless.
+ * Statement queries use the read pool; only the checkpoints are written to the primary.
+ */
+@Service
+@Slf4j
+public class StatementService {
+
+    private static final DateTimeFormatter LINE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final StatementCheckpointRepository checkpointRepository;
+    private final EncryptionUtil encryptionUtil;
+    private final Path outputDir;
+    private final int partitions;
+    private final int chunkSize;
+    private final AtomicReference<String> runningPeriod = new AtomicReference<>();
+
+    public StatementService(@Qualifier("readDataSource") DataSource dataSource,
+                            StatementCheckpointRepository checkpointRepository,
+                            EncryptionUtil encryptionUtil,
+                            @Value("${statements.output-dir:statements}") String outputDir,
+                            @Value("${statements.partitions:4}") int partitions,
+                            @Value("${statements.chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.checkpointRepository = checkpointRepository;
+        this.encryptionUtil = encryptionUtil;
+        this.outputDir = Path.of(outputDir);
+        this.partitions = Math.max(1, partitions);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Generates last month's statements when statements.cron is set; disabled by default.
+     */
+    @Scheduled(cron = "${statements.cron:-}")
+    public void generatePreviousMonth() {
+        if (!startRun(YearMonth.now().minusMonths(1))) {
+            log.warn("Skipping scheduled statement run: a run is already in progress");
+        }
+    }
+
+    /**
+     * Starts or resumes the statement run for a month in the background. Returns false if a run
+     * is already in progress.
+     */
+    public boolean startRun(YearMonth period) {
+        if (!runningPeriod.compareAndSet(null, period.toString())) {
+            return false;
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                run(period);
+            } catch (Exception e) {
+                log.error("Statement run for {} failed; it resumes from its checkpoints when restarted", period, e);
+            } finally {
+                runningPeriod.set(null);
+            }
+        });
+        return true;
+    }
+
+    public StatementRunStatus getStatus(YearMonth period) {
+        List<StatementCheckpoint> checkpoints = checkpointRepository.findByStatementMonthOrderByPartitionIndex(period.toString());
+        int completed = (int) checkpoints.stream().filter(StatementCheckpoint::isCompleted).count();
+        long written = checkpoints.stream().mapToLong(StatementCheckpoint::getStatementsWritten).sum();
+        return new StatementRunStatus(period.toString(), period.toString().equals(runningPeriod.get()),
+                checkpoints.size(), completed, written);
+    }
+
+    public void run(YearMonth period) {
+        List<StatementCheckpoint> pending = loadOrCreateCheckpoints(period).stream()
+                .filter(checkpoint -> !checkpoint.isCompleted())
+                .toList();
+        if (pending.isEmpty()) {
+            log.info("Statements for {} are already complete", period);
+            return;
+        }
+        log.info("Generating statements for {} in {} partitions", period, pending.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(partitions, pending.size()));
+        try {
+            CompletableFuture.allOf(pending.stream()
+                            .map(checkpoint -> CompletableFuture.runAsync(() -> runPartition(period, checkpoint), executor))
+                            .toArray(CompletableFuture[]::new))
+                    .join();
+        } finally {
+            executor.shutdown();
+        }
+        log.info("Statements for {} complete: {}", period, getStatus(period));
+    }
+
+    private List<StatementCheckpoint> loadOrCreateCheckpoints(YearMonth period) {
+        List<StatementCheckpoint> existing = checkpointRepository.findByStatementMonthOrderByPartitionIndex(period.toString());
+        if (!existing.isEmpty()) {
+            return existing;
+        }
+        Map<String, Object> range = jdbcTemplate.queryForMap("select min(id) as min_id, max(id) as max_id from users");
+        if (range.get("min_id") == null) {
+            return List.of();
+        }
+        long minId = ((Number) range.get("min_id")).longValue();
+        long maxId = ((Number) range.get("max_id")).longValue();
+        long span = (maxId - minId) / partitions + 1;
+
+        // Ranges are fixed when the run is first created so a resumed run sees the same partitions
+        List<StatementCheckpoint> checkpoints = new ArrayList<>();
+        for (int i = 0; i < partitions && minId + i * span <= maxId; i++) {
+            long start = minId + i * span;
+            long end = Math.min(maxId, start + span - 1);
+            checkpoints.add(new StatementCheckpoint(null, period.toString(), i, start, end, start - 1, 0,
+                    false, LocalDateTime.now()));
+        }
+        return checkpointRepository.saveAll(checkpoints);
+    }
+
+    private void runPartition(YearMonth period, StatementCheckpoint checkpoint) {
+        Path dir = outputDir.resolve(period.toString());
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating statement directory " + dir, e);
+        }
+
+        while (!checkpoint.isCompleted()) {
+            List<Map<String, Object>> customers = jdbcTemplate.queryForList(
+                    "select id, customer_id from users where id > ? and id <= ? order by id limit ?",
+                    checkpoint.getLastUserId(), checkpoint.getRangeEnd(), chunkSize);
+            if (customers.isEmpty()) {
+                checkpoint.setCompleted(true);
+            } else {
+                List<String> customerIds = customers.stream()
+                        .map(row -> (String) row.get("customer_id"))
+                        .filter(customerId -> customerId != null)
+                        .toList();
+                int written = customerIds.isEmpty() ? 0 : writeChunk(period, dir, customerIds);
+                checkpoint.setLastUserId(((Number) customers.get(customers.size() - 1).get("id")).longValue());
+                checkpoint.setStatementsWritten(checkpoint.getStatementsWritten() + written);
+            }
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpoint = checkpointRepository.save(checkpoint);
+        }
+    }
+
+    private int writeChunk(YearMonth period, Path dir, List<String> customerIds) {
+        Timestamp from = Timestamp.valueOf(period.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(period.plusMonths(1).atDay(1).atStartOfDay());
+        MapSqlParameterSource params = new MapSqlParameterSource("customerIds", customerIds)
+                .addValue("from", from)
+                .addValue("to", to);
+
+        Map<String, CustomerStatement> statements = new LinkedHashMap<>();
+        Map<String, CardStatement> cards = new HashMap<>();
+        namedJdbcTemplate.query("select customer_id, customer_name, card_number, balance from cards " +
+                        "where customer_id in (:customerIds) order by id",
+                params,
+                rs -> {
+                    String customerId = rs.getString("customer_id");
+                    String customerName = rs.getString("customer_name");
+                    CustomerStatement statement = statements.computeIfAbsent(customerId,
+                            id -> new CustomerStatement(id, customerName));
+                    CardStatement card = new CardStatement(encryptionUtil.decrypt(rs.getString("card_number")),
+                            rs.getBigDecimal("balance"));
+                    statement.cards.add(card);
+                    cards.put(card.cardNumber, card);
+                });
+        if (statements.isEmpty()) {
+            return 0;
+        }
+
+        namedJdbcTemplate.query("select card_number, transaction_type, amount, balance_before, balance_after, " +
+                        "status, reason, timestamp from transactions " +
+                        "where customer_id in (:customerIds) and timestamp >= :from and timestamp < :to order by id",
+                params,
+                rs -> {
+                    CardStatement card = cards.get(rs.getString("card_number"));
+                    if (card != null) {
+                        card.add(new StatementLine(rs.getTimestamp("timestamp").toLocalDateTime(),
+                                rs.getString("transaction_type"), rs.getBigDecimal("amount"),
+                                rs.getBigDecimal("balance_before"), rs.getBigDecimal("balance_after"),
+                                rs.getString("status"), rs.getString("reason")));
+                    }
+                });
+
+        // Opening balance: the last successful balance before the month, else the balance before the
+        // first successful transaction after it, else the current balance of a card that never moved
+        namedJdbcTemplate.query("select card_number, balance_after from transactions where id in (" +
+                        "select max(id) from transactions where status = 'success' and customer_id in (:customerIds) " +
+                        "and timestamp < :from group by card_number)",
+                params,
+                rs -> {
+                    CardStatement card = cards.get(rs.getString("card_number"));
+                    if (card != null) {
+                        card.opening = rs.getBigDecimal("balance_after");
+                    }
+                });
+        namedJdbcTemplate.query("select card_number, balance_before from transactions where id in (" +
+                        "select min(id) from transactions where status = 'success' and customer_id in (:customerIds) " +
+                        "and timestamp >= :from group by card_number)",
+                params,
+                rs -> {
+                    CardStatement card = cards.get(rs.getString("card_number"));
+                    if (card != null && card.opening == null) {
+                        card.opening = rs.getBigDecimal("balance_before");
+                    }
+                });
+
+        for (CustomerStatement statement : statements.values()) {
+            write(dir.resolve(statement.customerId + ".txt"), renderText(period, statement));
+            write(dir.resolve(statement.customerId + ".html"), renderHtml(period, statement));
+        }
+        return statements.size();
+    }
+
+    private static void write(Path file, String content) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.writeString(tmp, content, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing statement " + file, e);
+        }
+    }
+
+    private static String renderText(YearMonth period, CustomerStatement statement) {
+        StringBuilder out = new StringBuilder(1024);
+        out.append("PayTabs Bank - Monthly Statement ").append(period).append('\n')
+                .append("Customer: ").append(statement.customerName).append(" (").append(statement.customerId).append(")\n");
+        for (CardStatement card : statement.cards) {
+            out.append('\n').append("Card ").append(mask(card.cardNumber)).append('\n')
+                    .append(String.format("  Opening balance: %12s%n", card.opening()))
+                    .append(String.format("  Credits:         %12s%n", card.credits))
+                    .append(String.format("  Debits:          %12s%n", card.debits))
+                    .append(String.format("  Closing balance: %12s%n", card.closing()));
+            if (card.lines.isEmpty()) {
+                out.append("  No transactions this month\n");
+            }
+            for (StatementLine line : card.lines) {
+                out.append(String.format("  %s  %-10s %10s %12s  %s%s%n", LINE_TIME.format(line.timestamp),
+                        line.type, line.amount, line.balanceAfter, line.status,
+                        line.reason != null ? " - " + line.reason : ""));
+            }
+        }
+        return out.toString();
+    }
+
+    private static String renderHtml(YearMonth period, CustomerStatement statement) {
+        StringBuilder out = new StringBuilder(2048);
+        out.append("<!DOCTYPE html>\n<html><head><meta charset=\"UTF-8\"><title>Statement ").append(period)
+                .append("</title></head><body>\n<h1>PayTabs Bank - Monthly Statement ").append(period).append("</h1>\n")
+                .append("<p>").append(escape(statement.customerName)).append(" (").append(escape(statement.customerId))
+                .append(")</p>\n");
+        for (CardStatement card : statement.cards) {
+            out.append("<h2>Card ").append(mask(card.cardNumber)).append("</h2>\n<table>\n")
+                    .append("<tr><th>Opening balance</th><td>").append(card.opening()).append("</td></tr>\n")
+                    .append("<tr><th>Credits</th><td>").append(card.credits).append("</td></tr>\n")
+                    .append("<tr><th>Debits</th><td>").append(card.debits).append("</td></tr>\n")
+                    .append("<tr><th>Closing balance</th><td>").append(card.closing()).append("</td></tr>\n")
+                    .append("</table>\n<table>\n<tr><th>Date</th><th>Type</th><th>Amount</th><th>Balance</th>")
+                    .append("<th>Status</th><th>Reason</th></tr>\n");
+            for (StatementLine line : card.lines) {
+                out.append("<tr><td>").append(LINE_TIME.format(line.timestamp))
+                        .append("</td><td>").append(escape(line.type))
+                        .append("</td><td>").append(line.amount)
+                        .append("</td><td>").append(line.balanceAfter)
+                        .append("</td><td>").append(escape(line.status))
+                        .append("</td><td>").append(escape(line.reason))
+                        .append("</td></tr>\n");
+            }
+            out.append("</table>\n");
+        }
+        return out.append("</body></html>\n").toString();
+    }
+
+    private static String escape(String value) {
+        return value != null ? HtmlUtils.htmlEscape(value) : "";
+    }
+
+    private static String mask(String cardNumber) {
+        return "**** **** **** " + cardNumber.substring(Math.max(0, cardNumber.length() - 4));
+    }
+
+    private static final class CustomerStatement {
+        private final String customerId;
+        private final String customerName;
+        private final List<CardStatement> cards = new ArrayList<>();
+
+        CustomerStatement(String customerId, String customerName) {
+            this.customerId = customerId;
+            this.customerName = customerName;
+        }
+    }
+
+    private static final class CardStatement {
+        private final String cardNumber;
+        private final BigDecimal currentBalance;
+        private final List<StatementLine> lines = new ArrayList<>();
+        private BigDecimal opening;
+        private BigDecimal lastBalance;
+        private BigDecimal credits = BigDecimal.ZERO;
+        private BigDecimal debits = BigDecimal.ZERO;
+
+        CardStatement(String cardNumber, BigDecimal currentBalance) {
+            this.cardNumber = cardNumber;
+            this.currentBalance = currentBalance;
+        }
+
+        void add(StatementLine line) {
+            lines.add(line);
+            if (!"success".equals(line.status) || line.balanceBefore == null || line.balanceAfter == null) {
+                return;
+            }
+            BigDecimal change = line.balanceAfter.subtract(line.balanceBefore);
+            if (change.signum() > 0) {
+                credits = credits.add(change);
+            } else {
+                debits = debits.add(change.negate());
+            }
+            lastBalance = line.balanceAfter;
+        }
+
+        BigDecimal opening() {
+            return opening != null ? opening : currentBalance;
+        }
+
+        BigDecimal closing() {
+            return lastBalance != null ? lastBalance : opening();
+        }
+    }
+
+    private static final class StatementLine {
+        private final LocalDateTime timestamp;
+        private final String type;
+        private final BigDecimal amount;
+        private final BigDecimal balanceBefore;
+        private final BigDecimal balanceAfter;
+        private final String status;
+        private final String reason;
+
+        StatementLine(LocalDateTime timestamp, String type, BigDecimal amount, BigDecimal balanceBefore,
+                      BigDecimal balanceAfter, String status, String reason) {
+            this.timestamp = timestamp;
+            this.type = type;
+            this.amount = amount;
+            this.balanceBefore = balanceBefore;
+            this.balanceAfter = balanceAfter;
+            this.status = status;
+            this.reason = reason;
+        }
+    }
+}
@@ -1,21 +1,26 @@
 package com.paytabs.banking.service;
 
 import com.paytabs.banking.crypto.EncryptionUtil;
+import com.paytabs.banking.dto.ProcessTransactionRequest;
 import com.paytabs.banking.dto.TransactionRequest;
 import com.paytabs.banking.dto.TransactionResponse;
 import com.paytabs.banking.entity.Card;
 import com.paytabs.banking.entity.Transaction;
+import com.paytabs.banking.profiling.StageEvent;
 import com.paytabs.banking.repository.CardRepository;
 import com.paytabs.banking.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.time.LocalDateTime;
+import java.util.Locale;
 import java.util.Optional;
 
 @Service
@@ -23,72 +28,226 @@ import java.util.Optional;
 @Slf4j
 public class System2Service {
 
+    private static final String TRANSFER = "transfer";
+
     private final CardRepository cardRepository;
     private final TransactionRepository transactionRepository;
     private final EncryptionUtil encryptionUtil;
+    private final OutboxService outboxService;
+    private final TransactionSearchIndex searchIndex;
+    private final CustomerVersionTracker customerVersions;
+    private final VelocityRuleEngine velocityRuleEngine;
+    private final IssuedCardFilter issuedCardFilter;
 
+    /**
+     * System 1 path. The gateway has already dropped card numbers the issued card filter rejects.
+     * Must run on the card's shard (see CardShardExecutor), like every caller of System 2.
+     */
     @Transactional
     public TransactionResponse processTransaction(TransactionRequest request) {
+        return process(request.getCardNumber(), hashPin(request.getPin()),
+                BigDecimal.valueOf(request.getAmount()), request.getType(), request.getTargetCardNumber());
+    }
+
+    /**
+     * Direct API path: the caller supplies the SHA-256 hex digest of the PIN,
+     * which is compared against the stored hash without re-hashing. Must run on the card's shard.
+     */
+    @Transactional
+    public TransactionResponse processPreHashedTransaction(ProcessTransactionRequest request) {
+        // Same ingress filter as the gateway: never-issued numbers are dropped without a row
+        if (issuedCardFilter.check(request.getCardNumber()) != null) {
+            return new TransactionResponse(false, "Invalid card number", "failed", request.getAmount(),
+                    null, LocalDateTime.now(), null);
+        }
+        if (request.getTargetCardNumber() != null && issuedCardFilter.check(request.getTargetCardNumber()) != null) {
+            return new TransactionResponse(false, "Invalid target card", "failed", request.getAmount(),
+                    null, LocalDateTime.now(), null);
+        }
+        String pinHash = request.getPinHash() != null ? request.getPinHash().toLowerCase(Locale.ROOT) : null;
+        return process(request.getCardNumber(), pinHash, request.getAmount(), request.getType(),
+                request.getTargetCardNumber());
+    }
+
+    private TransactionResponse process(String cardNumber, String pinHash, BigDecimal amount, String type,
+                                        String targetCardNumber) {
         log.info("System 2: Processing transaction for card ending in {}",
-                request.getCardNumber().substring(request.getCardNumber().length() - 4));
-        
+                cardNumber.substring(cardNumber.length() - 4));
+        timeCommit();
+
+        // Velocity windows are per card and only touched from the card's shard, which runs this
+        // method and its after-commit callbacks
+        long now = System.currentTimeMillis();
+        StageEvent velocity = StageEvent.begin("velocity");
+        String declineReason = velocityRuleEngine.evaluate(cardNumber, type, amount, now);
+        velocity.finish(declineReason != null ? "declined" : "passed");
+        if (declineReason != null) {
+            log.info("Declining transaction for card ending in {}: {}",
+                    cardNumber.substring(cardNumber.length() - 4), declineReason);
+            recordDeclinedTransaction(cardNumber, type, amount, declineReason);
+            return new TransactionResponse(false, declineReason, "declined", amount, null, LocalDateTime.now(), null);
+        }
+
+        TransactionResponse response = TRANSFER.equals(type)
+                ? processTransfer(cardNumber, pinHash, amount, targetCardNumber)
+                : processSingleCard(cardNumber, pinHash, amount, type);
+        if (response.isSuccess()) {
+            recordVelocityAfterCommit(cardNumber, type, amount, now);
+        }
+        return response;
+    }
+
+    private TransactionResponse processSingleCard(String cardNumber, String pinHash, BigDecimal amount, String type) {
         // Pass the plain-text card number. The AttributeConverter will handle encryption for the query.
-        Optional<Card> cardOptional = cardRepository.findByCardNumber(request.getCardNumber());
+        // The row stays locked until commit, so concurrent updates from other nodes are serialized.
+        StageEvent lookup = StageEvent.begin("card.lookup");
+        Optional<Card> cardOptional = cardRepository.findLockedByCardNumber(cardNumber);
+        lookup.finish(cardOptional.isPresent() ? "found" : "missing");
 
         if (cardOptional.isEmpty()) {
-            log.warn("Invalid card number provided: {}", request.getCardNumber());
-            return createFailedResponse(request, "Invalid card number", null);
+            log.warn("Invalid card number provided: {}", cardNumber);
+            return createFailedResponse(cardNumber, type, amount, "Invalid card number", null);
         }
 
         Card card = cardOptional.get();
-        String hashedPin = hashPin(request.getPin());
 
-        if (!hashedPin.equals(card.getPinHash())) {
-            log.warn("Invalid PIN for card: {}", request.getCardNumber());
-            return createFailedResponse(request, "Invalid PIN", card);
+        if (!pinMatches(pinHash, card.getPinHash())) {
+            log.warn("Invalid PIN for card: {}", cardNumber);
+            return createFailedResponse(cardNumber, type, amount, "Invalid PIN", card);
         }
 
         if (!card.isActive()) {
-            log.warn("Card is inactive: {}", request.getCardNumber());
-            return createFailedResponse(request, "Card is inactive", card);
+            log.warn("Card is inactive: {}", cardNumber);
+            return createFailedResponse(cardNumber, type, amount, "Card is inactive", card);
         }
 
-        BigDecimal transactionAmount = BigDecimal.valueOf(request.getAmount());
-
-        if ("withdraw".equals(request.getType())) {
-            if (card.getBalance().compareTo(transactionAmount) < 0) {
-                log.warn("Insufficient balance for withdrawal: {}", request.getCardNumber());
-                return createFailedResponse(request, "Insufficient balance", card);
+        if ("withdraw".equals(type)) {
+            if (availableBalance(card).compareTo(amount) < 0) {
+                log.warn("Insufficient balance for withdrawal: {}", cardNumber);
+                return createFailedResponse(cardNumber, type, amount, "Insufficient balance", card);
             }
-            return performWithdrawal(request, card, transactionAmount);
-        } else if ("topup".equals(request.getType())) {
-            return performTopup(request, card, transactionAmount);
+            return performWithdrawal(cardNumber, type, card, amount);
+        } else if ("topup".equals(type)) {
+            return performTopup(cardNumber, type, card, amount);
         } else {
-            return createFailedResponse(request, "Invalid transaction type", card);
+            return createFailedResponse(cardNumber, type, amount, "Invalid transaction type", card);
         }
     }
-    
+
+    /**
+     * Moves money between two cards in one database transaction. Both rows are locked in ascending
+     * card id order, so concurrent transfers in opposite directions cannot deadlock each other.
+     * These row locks, not the card shards, order a transfer against other updates of either card:
+     * the gateway runs it on the source card's shard only, and the target card may be changed from
+     * its own shard at the same time.
+     */
+    private TransactionResponse processTransfer(String cardNumber, String pinHash, BigDecimal amount,
+                                                String targetCardNumber) {
+        if (targetCardNumber == null || targetCardNumber.equals(cardNumber)) {
+            return createFailedResponse(cardNumber, TRANSFER, amount, "Invalid target card", null);
+        }
+
+        Optional<Long> sourceId = cardRepository.findIdByCardNumber(cardNumber);
+        if (sourceId.isEmpty()) {
+            log.warn("Invalid card number provided: {}", cardNumber);
+            return createFailedResponse(cardNumber, TRANSFER, amount, "Invalid card number", null);
+        }
+        Optional<Long> targetId = cardRepository.findIdByCardNumber(targetCardNumber);
+        if (targetId.isEmpty()) {
+            return createFailedResponse(cardNumber, TRANSFER, amount, "Invalid target card", null);
+        }
+
+        long firstId = Math.min(sourceId.get(), targetId.get());
+        long secondId = Math.max(sourceId.get(), targetId.get());
+        StageEvent lookup = StageEvent.begin("card.lookup");
+        Card first = cardRepository.findLockedById(firstId).orElseThrow();
+        Card second = cardRepository.findLockedById(secondId).orElseThrow();
+        lookup.finish("transfer");
+        Card source = first.getId().equals(sourceId.get()) ? first : second;
+        Card target = source == first ? second : first;
+
+        if (!pinMatches(pinHash, source.getPinHash())) {
+            log.warn("Invalid PIN for card: {}", cardNumber);
+            return createFailedResponse(cardNumber, TRANSFER, amount, "Invalid PIN", source);
+        }
+        if (!source.isActive()) {
+            return createFailedResponse(cardNumber, TRANSFER, amount, "Card is inactive", source);
+        }
+        if (!target.isActive()) {
+            return createFailedResponse(cardNumber, TRANSFER, amount, "Target card is inactive", source);
+        }
+        if (availableBalance(source).compareTo(amount) < 0) {
+            log.warn("Insufficient balance for transfer: {}", cardNumber);
+            return createFailedResponse(cardNumber, TRANSFER, amount, "Insufficient balance", source);
+        }
+
+        BigDecimal sourceBefore = source.getBalance();
+        BigDecimal targetBefore = target.getBalance();
+        source.setBalance(sourceBefore.subtract(amount));
+        target.setBalance(targetBefore.add(amount));
+        cardRepository.save(source);
+        cardRepository.save(target);
+
+        Transaction debit = saveTransaction(Transaction.builder()
+                .cardNumber(cardNumber)
+                .transactionType("transfer_out")
+                .amount(amount)
+                .balanceBefore(sourceBefore)
+                .balanceAfter(source.getBalance())
+                .status("success")
+                .customerId(source.getCustomerId())
+                .customerName(source.getCustomerName())
+                .build());
+        Transaction credit = saveTransaction(Transaction.builder()
+                .cardNumber(targetCardNumber)
+                .transactionType("transfer_in")
+                .amount(amount)
+                .balanceBefore(targetBefore)
+                .balanceAfter(target.getBalance())
+                .status("success")
+                .customerId(target.getCustomerId())
+                .customerName(target.getCustomerName())
+                .linkedTransactionId(debit.getId())
+                .build());
+        debit.setLinkedTransactionId(credit.getId());
+        outboxService.recordBalanceChange(debit);
+        outboxService.recordBalanceChange(credit);
+
+        log.info("Transfer successful from card {} to card ending in {}. New balance: {}", cardNumber,
+                targetCardNumber.substring(targetCardNumber.length() - 4), source.getBalance());
+
+        return new TransactionResponse(true, "Transfer successful", "success", amount,
+                source.getBalance(), debit.getTimestamp(), debit.getId().toString());
+    }
+
+    /**
+     * Records a transaction declined before reaching the card. The row carries the card owner, when
+     * the card exists, so it shows in their history and invalidates their cached views.
+     */
     @Transactional
     public void recordDeclinedTransaction(String cardNumber, String type, BigDecimal amount, String reason) {
+        Optional<Card> card = cardRepository.findByCardNumber(cardNumber);
         Transaction transaction = Transaction.builder()
             .cardNumber(cardNumber)
             .transactionType(type)
             .amount(amount)
             .status("declined")
             .reason(reason)
+            .customerId(card.map(Card::getCustomerId).orElse(null))
+            .customerName(card.map(Card::getCustomerName).orElse(null))
             .timestamp(LocalDateTime.now())
             .build();
-        transactionRepository.save(transaction);
+        saveTransaction(transaction);
     }
 
-    private TransactionResponse performWithdrawal(TransactionRequest request, Card card, BigDecimal amount) {
+    private TransactionResponse performWithdrawal(String cardNumber, String type, Card card, BigDecimal amount) {
         BigDecimal balanceBefore = card.getBalance();
         card.setBalance(balanceBefore.subtract(amount));
         cardRepository.save(card);
 
         Transaction transaction = Transaction.builder()
-                .cardNumber(request.getCardNumber())
-                .transactionType(request.getType())
+                .cardNumber(cardNumber)
+                .transactionType(type)
                 .amount(amount)
                 .balanceBefore(balanceBefore)
                 .balanceAfter(card.getBalance())
@@ -96,22 +255,23 @@ public class System2Service {
                 .customerId(card.getCustomerId())
                 .customerName(card.getCustomerName())
                 .build();
-        Transaction savedTransaction = transactionRepository.save(transaction);
-        
-        log.info("Withdrawal successful for card {}. New balance: {}", request.getCardNumber(), card.getBalance());
-        
-        return new TransactionResponse(true, "Withdrawal successful", "success", amount, 
+        Transaction savedTransaction = saveTransaction(transaction);
+        outboxService.recordBalanceChange(savedTransaction);
+
+        log.info("Withdrawal successful for card {}. New balance: {}", cardNumber, card.getBalance());
+
+        return new TransactionResponse(true, "Withdrawal successful", "success", amount,
                 card.getBalance(), savedTransaction.getTimestamp(), savedTransaction.getId().toString());
     }
 
-    private TransactionResponse performTopup(TransactionRequest request, Card card, BigDecimal amount) {
+    private TransactionResponse performTopup(String cardNumber, String type, Card card, BigDecimal amount) {
         BigDecimal balanceBefore = card.getBalance();
         card.setBalance(balanceBefore.add(amount));
         cardRepository.save(card);
 
         Transaction transaction = Transaction.builder()
-                .cardNumber(request.getCardNumber())
-                .transactionType(request.getType())
+                .cardNumber(cardNumber)
+                .transactionType(type)
                 .amount(amount)
                 .balanceBefore(balanceBefore)
                 .balanceAfter(card.getBalance())
@@ -119,21 +279,22 @@ public class System2Service {
                 .customerId(card.getCustomerId())
                 .customerName(card.getCustomerName())
                 .build();
-        Transaction savedTransaction = transactionRepository.save(transaction);
+        Transaction savedTransaction = saveTransaction(transaction);
+        outboxService.recordBalanceChange(savedTransaction);
 
-        log.info("Top-up successful for card {}. New balance: {}", request.getCardNumber(), card.getBalance());
+        log.info("Top-up successful for card {}. New balance: {}", cardNumber, card.getBalance());
 
-        return new TransactionResponse(true, "Top-up successful", "success", amount, 
+        return new TransactionResponse(true, "Top-up successful", "success", amount,
                 card.getBalance(), savedTransaction.getTimestamp(), savedTransaction.getId().toString());
     }
 
-    private TransactionResponse createFailedResponse(TransactionRequest request, String reason, Card card) {
+    private TransactionResponse createFailedResponse(String cardNumber, String type, BigDecimal amount, String reason, Card card) {
         BigDecimal balanceBefore = (card != null) ? card.getBalance() : BigDecimal.ZERO;
-        
+
         Transaction transaction = Transaction.builder()
-                .cardNumber(request.getCardNumber())
-                .transactionType(request.getType())
-                .amount(BigDecimal.valueOf(request.getAmount()))
+                .cardNumber(cardNumber)
+                .transactionType(type)
+                .amount(amount)
                 .balanceBefore(balanceBefore)
                 .balanceAfter(balanceBefore)
                 .status("failed")
@@ -141,13 +302,77 @@ public class System2Service {
                 .customerId(card != null ? card.getCustomerId() : null)
                 .customerName(card != null ? card.getCustomerName() : null)
                 .build();
-        transactionRepository.save(transaction);
+        saveTransaction(transaction);
 
-        return new TransactionResponse(false, reason, "failed", BigDecimal.valueOf(request.getAmount()), 
+        return new TransactionResponse(false, reason, "failed", amount,
                 balanceBefore, LocalDateTime.now(), transaction.getId().toString());
     }
 
+    private void recordVelocityAfterCommit(String cardNumber, String type, BigDecimal amount, long now) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            velocityRuleEngine.record(cardNumber, type, amount, now);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                velocityRuleEngine.record(cardNumber, type, amount, now);
+            }
+        });
+    }
+
+    /**
+     * Records the flush and commit of the surrounding transaction as a "commit" stage event, from
+     * the before-commit callback until the transaction has completed.
+     */
+    private static void timeCommit() {
+        if (!StageEvent.isStageRecorded() || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private StageEvent event;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                event = StageEvent.begin("commit");
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (event != null) {
+                    event.finish(status == STATUS_COMMITTED ? "committed" : "rolled-back");
+                }
+            }
+        });
+    }
+
+    // Every row written here is also searchable from the admin dashboard, and invalidates cached
+    // dashboards and histories, once it commits
+    private Transaction saveTransaction(Transaction transaction) {
+        Transaction saved = transactionRepository.save(transaction);
+        searchIndex.indexAfterCommit(saved);
+        customerVersions.bumpAfterCommit(saved.getCustomerId());
+        return saved;
+    }
+
+    // Balance not reserved by pending authorization holds (see HoldService)
+    private static BigDecimal availableBalance(Card card) {
+        return card.getBalance().subtract(card.getHeldAmount());
+    }
+
+    /**
+     * Constant-time comparison so response timing does not leak how much of the hash matched.
+     */
+    private boolean pinMatches(String suppliedHash, String storedHash) {
+        if (suppliedHash == null || storedHash == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(suppliedHash.getBytes(StandardCharsets.US_ASCII),
+                storedHash.getBytes(StandardCharsets.US_ASCII));
+    }
+
     private String hashPin(String pin) {
+        StageEvent event = StageEvent.begin("pin.hash");
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] hash = digest.digest(pin.getBytes(StandardCharsets.UTF_8));
@@ -160,6 +385,8 @@ public class System2Service {
             return hexString.toString();
         } catch (Exception e) {
             throw new RuntimeException("Error hashing PIN", e);
+        } finally {
+            event.finish(null);
         }
     }
 }
@@ -0,0 +1,443 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.dto.TransactionView;
+import com.paytabs.banking.entity.Transaction;
+import com.paytabs.banking.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index behind the admin transaction search.
+ *
+ * Indexed terms are the customer name and reason words, customer id, card last 4, status and
+ * type, all lower-cased. Every query word is a prefix that must match one of a row's terms.
+ * Posting lists are kept sorted by transaction id, so results come out newest first by merging
+ * the lists of the rarest query word backwards and stop as soon as the page is full.
+ *
+ * The index is rebuilt from the transactions table on startup in parallel id slices. Rows saved
+ * on this instance are added once their transaction commits. A periodic incremental read by id
+ * picks up rows written elsewhere (other instances, bulk jobs); it overlaps the previous read
+ * because identity ids are assigned before commit.
+ *
+ * Each row keeps its full view in memory, so only the newest admin.search.max-documents ids are
+ * indexed: the rebuild starts at that window and every catch-up drops rows that fell out of it.
+ * With admin.search.enabled=false nothing is loaded and searches are refused.
+ */
+@Component
+@Slf4j
+public class TransactionSearchIndex {
+
+    private static final int CATCH_UP_PAGE = 1000;
+
+    private final TransactionRepository transactionRepository;
+    private final Timer searchTimer;
+    private final int rebuildThreads;
+    private final int sliceSize;
+    private final long idOverlap;
+    private final boolean enabled;
+    private final long maxDocuments;
+    private volatile Index index = new Index();
+    private volatile boolean ready;
+    private long lastIndexedId;
+
+    public TransactionSearchIndex(TransactionRepository transactionRepository, MeterRegistry meterRegistry,
+                                  @Value("${admin.search.rebuild-threads:4}") int rebuildThreads,
+                                  @Value("${admin.search.slice-size:20000}") int sliceSize,
+                                  @Value("${admin.search.id-overlap:1000}") long idOverlap,
+                                  @Value("${admin.search.enabled:true}") boolean enabled,
+                                  @Value("${admin.search.max-documents:200000}") long maxDocuments) {
+        this.transactionRepository = transactionRepository;
+        this.searchTimer = Timer.builder("transactions.search").register(meterRegistry);
+        this.rebuildThreads = rebuildThreads;
+        this.sliceSize = sliceSize;
+        this.idOverlap = idOverlap;
+        this.enabled = enabled;
+        this.maxDocuments = Math.max(1, maxDocuments);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns up to limit transactions matching every word of the query, newest first.
+     */
+    public List<TransactionView> search(String query, int limit) {
+        long start = System.nanoTime();
+        try {
+            return search(index, tokenize(query), limit);
+        } finally {
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Adds a transaction row once the surrounding database transaction has committed, so rolled
+     * back rows never show up in search.
+     */
+    public void indexAfterCommit(Transaction transaction) {
+        if (!enabled) {
+            return;
+        }
+        TransactionView view = new TransactionView(transaction.getId(), transaction.getCardNumber(),
+                transaction.getTransactionType(), transaction.getAmount(), transaction.getBalanceBefore(),
+                transaction.getBalanceAfter(), transaction.getStatus(), transaction.getReason(),
+                transaction.getCustomerId(), transaction.getCustomerName(), transaction.getTimestamp());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            index.add(view, true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                index.add(view, true);
+            }
+        });
+    }
+
+    public int size() {
+        return index.documents.size();
+    }
+
+    int termCount() {
+        return index.terms.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            log.info("Transaction search index disabled");
+            return;
+        }
+        long start = System.nanoTime();
+        Long minId = transactionRepository.findMinId();
+        Long maxId = transactionRepository.findMaxId();
+        Index fresh = new Index();
+
+        if (minId != null) {
+            minId = Math.max(minId, maxId - maxDocuments + 1);
+            ExecutorService pool = Executors.newFixedThreadPool(rebuildThreads);
+            try {
+                List<CompletableFuture<Void>> slices = new ArrayList<>();
+                for (long from = minId; from <= maxId; from += sliceSize) {
+                    long fromId = from;
+                    long toId = Math.min(maxId, from + sliceSize - 1);
+                    slices.add(CompletableFuture.runAsync(() -> transactionRepository.findViewsByIdBetween(fromId, toId)
+                            .forEach(view -> fresh.add(view, false)), pool));
+                }
+                CompletableFuture.allOf(slices.toArray(new CompletableFuture[0])).join();
+            } finally {
+                pool.shutdown();
+            }
+            fresh.terms.values().parallelStream().forEach(Postings::sort);
+        }
+
+        synchronized (this) {
+            index = fresh;
+            lastIndexedId = maxId != null ? maxId : 0;
+            ready = true;
+        }
+        // Rows committed on this instance while the rebuild ran went into the old index
+        catchUp();
+        log.info("Transaction search index built with {} rows and {} terms in {} ms", fresh.documents.size(),
+                fresh.terms.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Scheduled(fixedDelayString = "${admin.search.catch-up-ms:5000}")
+    public synchronized void catchUp() {
+        if (!ready) {
+            return;
+        }
+        Index current = index;
+        long afterId = Math.max(0, lastIndexedId - idOverlap);
+        while (true) {
+            List<TransactionView> page = transactionRepository.findViewsAfterId(afterId, PageRequest.of(0, CATCH_UP_PAGE));
+            for (TransactionView view : page) {
+                current.add(view, true);
+                afterId = view.getId();
+            }
+            lastIndexedId = Math.max(lastIndexedId, afterId);
+            if (page.size() < CATCH_UP_PAGE) {
+                break;
+            }
+        }
+        if (current.documents.size() > maxDocuments) {
+            current.evictBelow(lastIndexedId - maxDocuments + 1);
+        }
+    }
+
+    private static List<TransactionView> search(Index index, List<String> tokens, int limit) {
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        // Posting lists of every term each query word is a prefix of; drive the merge with the smallest
+        List<List<Postings>> matches = new ArrayList<>(tokens.size());
+        int driver = 0;
+        long driverSize = Long.MAX_VALUE;
+        for (String token : tokens) {
+            List<Postings> postings = new ArrayList<>(
+                    index.terms.subMap(token, true, token + Character.MAX_VALUE, false).values());
+            if (postings.isEmpty()) {
+                return List.of();
+            }
+            long size = postings.stream().mapToLong(Postings::size).sum();
+            if (size < driverSize) {
+                driverSize = size;
+                driver = matches.size();
+            }
+            matches.add(postings);
+        }
+
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparingLong(Cursor::current).reversed());
+        for (Postings postings : matches.get(driver)) {
+            Cursor cursor = postings.cursor();
+            if (cursor.hasCurrent()) {
+                cursors.add(cursor);
+            }
+        }
+
+        List<TransactionView> results = new ArrayList<>(Math.min(limit, 256));
+        long previous = Long.MIN_VALUE;
+        while (!cursors.isEmpty() && results.size() < limit) {
+            Cursor cursor = cursors.poll();
+            long id = cursor.current();
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+            if (id == previous) {
+                continue; // Same row under several terms of the driving word
+            }
+            previous = id;
+            Document document = index.documents.get(id);
+            if (document != null && matchesAll(document, tokens, driver)) {
+                results.add(document.view);
+            }
+        }
+        return results;
+    }
+
+    private static boolean matchesAll(Document document, List<String> tokens, int skip) {
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i != skip && !document.hasTermStartingWith(tokens.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        addTokens(tokens, text);
+        return new ArrayList<>(tokens);
+    }
+
+    private static void addTokens(Set<String> tokens, String text) {
+        if (text == null) {
+            return;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    private static String[] terms(TransactionView view) {
+        Set<String> terms = new LinkedHashSet<>();
+        addTokens(terms, view.getCustomerName());
+        addTokens(terms, view.getCustomerId());
+        addTokens(terms, view.getStatus());
+        addTokens(terms, view.getReason());
+        addTokens(terms, view.getTransactionType());
+        // Only the last 4 digits are searchable; the full card number stays out of the index
+        String cardNumber = view.getCardNumber();
+        if (cardNumber != null && cardNumber.length() >= 4) {
+            terms.add(cardNumber.substring(cardNumber.length() - 4));
+        }
+        return terms.toArray(new String[0]);
+    }
+
+    /**
+     * Adds take the shared side of termLock and eviction the exclusive side, so a term whose
+     * posting list eviction found empty cannot gain an id before its key is removed.
+     */
+    private static final class Index {
+        private final ConcurrentHashMap<Long, Document> documents = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListMap<String, Postings> terms = new ConcurrentSkipListMap<>();
+        private final ReadWriteLock termLock = new ReentrantReadWriteLock();
+
+        void add(TransactionView view, boolean sorted) {
+            Document document = new Document(view, terms(view));
+            if (documents.putIfAbsent(view.getId(), document) != null) {
+                return;
+            }
+            termLock.readLock().lock();
+            try {
+                for (String term : document.terms) {
+                    Postings postings = terms.computeIfAbsent(term, key -> new Postings());
+                    if (sorted) {
+                        postings.insert(view.getId());
+                    } else {
+                        postings.append(view.getId());
+                    }
+                }
+            } finally {
+                termLock.readLock().unlock();
+            }
+        }
+
+        void evictBelow(long floorId) {
+            documents.keySet().removeIf(id -> id < floorId);
+            termLock.writeLock().lock();
+            try {
+                terms.values().removeIf(postings -> {
+                    postings.removeBelow(floorId);
+                    return postings.size() == 0;
+                });
+            } finally {
+                termLock.writeLock().unlock();
+            }
+        }
+    }
+
+    private record Document(TransactionView view, String[] terms) {
+        boolean hasTermStartingWith(String prefix) {
+            for (String term : terms) {
+                if (term.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Ascending transaction ids for one term. Writers synchronize; readers take the volatile size
+     * and then the array without locking. Appends write past the published size and the array is
+     * only ever replaced, never shifted in place, so a reader always sees a sorted prefix.
+     */
+    private static final class Postings {
+        private volatile long[] ids = new long[2];
+        private volatile int size;
+
+        synchronized void insert(long id) {
+            int count = size;
+            long[] current = ids;
+            int position = count;
+            while (position > 0 && current[position - 1] > id) {
+                position--;
+            }
+            if (position > 0 && current[position - 1] == id) {
+                return;
+            }
+            if (position == count && count < current.length) {
+                current[count] = id;
+            } else {
+                long[] copy = new long[count < current.length ? current.length : count * 2];
+                System.arraycopy(current, 0, copy, 0, position);
+                copy[position] = id;
+                System.arraycopy(current, position, copy, position + 1, count - position);
+                ids = copy;
+            }
+            size = count + 1;
+        }
+
+        // Rebuild only: unordered appends, followed by sort() before the index is published
+        synchronized void append(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size] = id;
+            size = size + 1;
+        }
+
+        // Drops the oldest ids; a reader holding the old array still sees a sorted list
+        synchronized void removeBelow(long floorId) {
+            int count = size;
+            long[] current = ids;
+            if (count == 0 || current[0] >= floorId) {
+                return;
+            }
+            int from = Arrays.binarySearch(current, 0, count, floorId);
+            if (from < 0) {
+                from = -from - 1;
+            }
+            ids = Arrays.copyOfRange(current, from, Math.max(from + 2, count));
+            size = count - from;
+        }
+
+        synchronized void sort() {
+            long[] sorted = Arrays.copyOf(ids, size);
+            Arrays.sort(sorted);
+            ids = sorted;
+        }
+
+        int size() {
+            return size;
+        }
+
+        Cursor cursor() {
+            int count = size;
+            long[] current = ids;
+            return new Cursor(current, Math.min(count, current.length) - 1);
+        }
+    }
+
+    // Walks one posting list from the newest id backwards
+    private static final class Cursor {
+        private final long[] ids;
+        private int position;
+
+        Cursor(long[] ids, int position) {
+            this.ids = ids;
+            this.position = position;
+        }
+
+        boolean hasCurrent() {
+            return position >= 0;
+        }
+
+        long current() {
+            return ids[position];
+        }
+
+        boolean advance() {
+            return --position >= 0;
+        }
+    }
+}
@@ -2,15 +2,21 @@ package com.paytabs.banking.service;
 
 import com.paytabs.banking.dto.TransactionRequest;
 import com.paytabs.banking.dto.TransactionResponse;
-import com.paytabs.banking.entity.Transaction;
+import com.paytabs.banking.dto.TransactionView;
+import com.paytabs.banking.profiling.StageEvent;
 import com.paytabs.banking.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 @RequiredArgsConstructor
@@ -19,11 +25,26 @@ public class TransactionService {
 
     private final System2Service system2Service;
     private final TransactionRepository transactionRepository;
+    private final CardShardExecutor cardShardExecutor;
+    private final IssuedCardFilter issuedCardFilter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final TransactionSearchIndex searchIndex;
 
     /**
      * System 1: Routes transactions based on card number range
      */
     public TransactionResponse processTransaction(TransactionRequest request) {
+        StageEvent event = StageEvent.begin("gateway");
+        TransactionResponse response = null;
+        try {
+            response = route(request);
+            return response;
+        } finally {
+            event.finish(response != null ? response.getStatus() : "error");
+        }
+    }
+
+    private TransactionResponse route(TransactionRequest request) {
         log.info("System 1: Processing transaction for card ending in {}", 
                 request.getCardNumber().substring(request.getCardNumber().length() - 4));
 
@@ -33,6 +54,17 @@ public class TransactionService {
                     BigDecimal.valueOf(request.getAmount()), null, LocalDateTime.now(), null);
         }
 
+        // Malformed and never-issued numbers are dropped here, before any encryption or query,
+        // and only counted; card-testing bursts would otherwise leave one failure row each
+        if (issuedCardFilter.check(request.getCardNumber()) != null) {
+            return new TransactionResponse(false, "Invalid card number", "failed",
+                    BigDecimal.valueOf(request.getAmount()), null, LocalDateTime.now(), null);
+        }
+        if (request.getTargetCardNumber() != null && issuedCardFilter.check(request.getTargetCardNumber()) != null) {
+            return new TransactionResponse(false, "Invalid target card", "failed",
+                    BigDecimal.valueOf(request.getAmount()), null, LocalDateTime.now(), null);
+        }
+
         // Check if card number starts with '4' (Visa simulation)
         if (!request.getCardNumber().startsWith("4")) {
             log.info("Declining transaction for unsupported card range: {}", request.getCardNumber());
@@ -51,15 +83,71 @@ public class TransactionService {
 
         log.info("System 1: Routing transaction to System 2");
 
-        // Route to System 2 for processing
-        return system2Service.processTransaction(request);
+        // Route to System 2 on the card's shard, which owns the card's velocity windows. Balances are
+        // ordered by the row locks System 2 takes, which also cover the target card of a transfer.
+        StageEvent queued = StageEvent.begin("shard.wait");
+        long submitted = System.nanoTime();
+        return awaitResponse(request, cardShardExecutor.submit(request.getCardNumber(), () -> {
+            queued.finish(null);
+            TransactionResponse response = system2Service.processTransaction(request);
+            concurrencyLimiter.recordLatency(System.nanoTime() - submitted);
+            return response;
+        }));
+    }
+
+    private TransactionResponse awaitResponse(TransactionRequest request,
+                                              CompletableFuture<TransactionResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (AdaptiveConcurrencyLimiter.isOverload(e.getCause())) {
+                concurrencyLimiter.recordDrop();
+            }
+            if (e.getCause() instanceof RejectedExecutionException) {
+                log.warn("Card shard queue full, rejecting transaction for card ending in {}",
+                        request.getCardNumber().substring(request.getCardNumber().length() - 4));
+                return new TransactionResponse(false, "System busy, please retry", "failed",
+                        BigDecimal.valueOf(request.getAmount()), null, LocalDateTime.now(), null);
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<TransactionView> getAllTransactions() {
+        return transactionRepository.findAllViews();
+    }
+
+    /**
+     * Admin search over the in-memory index: every word is a prefix of a name, id, card last 4,
+     * status, type or reason word. Newest first.
+     */
+    public List<TransactionView> searchTransactions(String query, int limit) {
+        return searchIndex.search(query, limit);
     }
 
-    public List<Transaction> getAllTransactions() {
-        return transactionRepository.findAllByOrderByTimestampDesc();
+    public boolean isSearchEnabled() {
+        return searchIndex.isEnabled();
     }
 
-    public List<Transaction> getTransactionsByCustomerId(String customerId) {
-        return transactionRepository.findByCustomerIdOrderByTimestampDesc(customerId);
+    @Transactional(readOnly = true)
+    public List<TransactionView> getTransactionsByCustomerId(String customerId) {
+        return transactionRepository.findViewsByCustomerId(customerId);
+    }
+
+    /**
+     * Up to perCard of the most recent transactions of each given card, newest first, in two
+     * queries however many cards are given.
+     */
+    @Transactional(readOnly = true)
+    public List<TransactionView> getRecentTransactionsByCardNumbers(Collection<String> cardNumbers, int perCard) {
+        if (cardNumbers.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = transactionRepository.findRecentIdsByCardNumbers(cardNumbers, perCard);
+        return ids.isEmpty() ? List.of() : transactionRepository.findViewsByIdIn(ids);
     }
 }
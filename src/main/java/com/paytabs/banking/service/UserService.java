@@ -4,6 +4,7 @@ import com.paytabs.banking.entity.User;
 import com.paytabs.banking.entity.Card;
 import com.paytabs.banking.repository.UserRepository;
 import com.paytabs.banking.repository.CardRepository;
+import com.paytabs.banking.security.UnknownIdentifierCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -12,20 +13,43 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
+    private static final int MAX_CACHED_CUSTOMER_IDS = 100_000;
+
     private final UserRepository userRepository;
     private final CardRepository cardRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UnknownIdentifierCache unknownIdentifierCache;
+    private final IssuedCardFilter issuedCardFilter;
+    // A user's customer id never changes, so conditional requests can skip the user lookup
+    private final Map<String, String> customerIds = new ConcurrentHashMap<>();
 
     public User findByUsername(String username) {
         return userRepository.findByUsername(username).orElse(null);
     }
 
+    public String getCustomerId(String username) {
+        String customerId = customerIds.get(username);
+        if (customerId != null) {
+            return customerId;
+        }
+        User user = findByUsername(username);
+        if (user == null) {
+            return null;
+        }
+        if (customerIds.size() < MAX_CACHED_CUSTOMER_IDS) {
+            customerIds.put(username, user.getCustomerId());
+        }
+        return user.getCustomerId();
+    }
+
     public User findByCustomerId(String customerId) {
         return userRepository.findByCustomerId(customerId).orElse(null);
     }
@@ -64,6 +88,11 @@ public class UserService {
             card.setCustomerName(firstName + " " + lastName);
             
             cardRepository.save(card);
+            issuedCardFilter.addIssuedCard(cardNumber);
+
+            // The new identifiers may have been tried before signup; stop treating them as unknown
+            unknownIdentifierCache.forget(UnknownIdentifierCache.Kind.USERNAME, username);
+            unknownIdentifierCache.forget(UnknownIdentifierCache.Kind.CARD_NUMBER, cardNumber);
             
             return savedUser;
             
@@ -0,0 +1,197 @@
+package com.paytabs.banking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory per-card velocity and spending limits, checked by System 2 before it touches the card
+ * on every ingress path (gateway, POST /api/process, binary protocol) and by hold authorization.
+ *
+ * Each card keeps a ring of its most recent withdrawal timestamps (withdrawals per minute) and
+ * 24 hourly buckets of amounts in cents (rolling daily caps). Callers must run evaluate and
+ * record for a given card on that card's shard (see CardShardExecutor), so the per-card state
+ * is only ever touched by one thread and needs no locking.
+ *
+ * A periodic sweep drops windows of cards without activity for a day. Every minute and hour they
+ * hold has expired by then, so this loses nothing, and the map only holds cards active in the
+ * last day. Recording and sweeping go through the map's per-key compute, so they cannot race.
+ */
+@Component
+public class VelocityRuleEngine {
+
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int HOURS_PER_DAY = 24;
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final Map<String, CardWindow> windows = new ConcurrentHashMap<>();
+    private final int maxWithdrawalsPerMinute;
+    private final long dailyWithdrawalLimitCents;
+    private final long dailyTopupLimitCents;
+    private final long maxTopupAmountCents;
+
+    public VelocityRuleEngine(@Value("${velocity.withdrawals-per-minute:10}") int maxWithdrawalsPerMinute,
+                              @Value("${velocity.daily-withdrawal-limit:5000.00}") BigDecimal dailyWithdrawalLimit,
+                              @Value("${velocity.daily-topup-limit:5000.00}") BigDecimal dailyTopupLimit,
+                              @Value("${velocity.max-topup-amount:1000.00}") BigDecimal maxTopupAmount) {
+        this.maxWithdrawalsPerMinute = maxWithdrawalsPerMinute;
+        this.dailyWithdrawalLimitCents = toCents(dailyWithdrawalLimit);
+        this.dailyTopupLimitCents = toCents(dailyTopupLimit);
+        this.maxTopupAmountCents = toCents(maxTopupAmount);
+    }
+
+    /**
+     * Returns the decline reason if the transaction would break a rule, or null if it is allowed.
+     * A limit of zero or less disables the corresponding rule.
+     */
+    public String evaluate(String cardNumber, String type, BigDecimal amount, long nowMillis) {
+        long cents = toCents(amount);
+        CardWindow window = windows.get(cardNumber);
+
+        if (isDebit(type)) {
+            if (window != null && maxWithdrawalsPerMinute > 0
+                    && window.withdrawalsInLastMinute(nowMillis) >= maxWithdrawalsPerMinute) {
+                return "Withdrawal velocity limit exceeded (" + maxWithdrawalsPerMinute + " per minute)";
+            }
+            long withdrawnToday = window != null ? window.withdrawnLastDay(nowMillis) : 0;
+            if (dailyWithdrawalLimitCents > 0 && withdrawnToday + cents > dailyWithdrawalLimitCents) {
+                return "Daily withdrawal limit of $" + fromCents(dailyWithdrawalLimitCents) + " exceeded";
+            }
+        } else if ("topup".equals(type)) {
+            if (maxTopupAmountCents > 0 && cents > maxTopupAmountCents) {
+                return "Top-up amount exceeds limit of $" + fromCents(maxTopupAmountCents);
+            }
+            long toppedUpToday = window != null ? window.toppedUpLastDay(nowMillis) : 0;
+            if (dailyTopupLimitCents > 0 && toppedUpToday + cents > dailyTopupLimitCents) {
+                return "Daily top-up limit of $" + fromCents(dailyTopupLimitCents) + " exceeded";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts a successful transaction against the card's windows.
+     */
+    public void record(String cardNumber, String type, BigDecimal amount, long nowMillis) {
+        long cents = toCents(amount);
+        windows.compute(cardNumber, (key, window) -> {
+            if (window == null) {
+                window = new CardWindow(Math.max(1, maxWithdrawalsPerMinute));
+            }
+            if (isDebit(type)) {
+                window.recordWithdrawal(nowMillis, cents);
+            } else if ("topup".equals(type)) {
+                window.recordTopup(nowMillis, cents);
+            }
+            return window;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${velocity.sweep-ms:600000}")
+    public void evictIdleWindows() {
+        evictIdleWindows(System.currentTimeMillis());
+    }
+
+    void evictIdleWindows(long nowMillis) {
+        for (String cardNumber : windows.keySet()) {
+            windows.computeIfPresent(cardNumber,
+                    (key, window) -> nowMillis - window.lastActivityMillis >= DAY_MILLIS ? null : window);
+        }
+    }
+
+    int trackedCardCount() {
+        return windows.size();
+    }
+
+    // Transfers take money off the card, so they count against the withdrawal limits
+    private static boolean isDebit(String type) {
+        return "withdraw".equals(type) || "transfer".equals(type);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    static final class CardWindow {
+        // Timestamps of the most recent withdrawals; the oldest sits at withdrawalHead once the ring is full
+        private final long[] withdrawalTimes;
+        private int withdrawalHead;
+        private int withdrawalCount;
+
+        private final long[] bucketHour = new long[HOURS_PER_DAY];
+        private final long[] withdrawnCents = new long[HOURS_PER_DAY];
+        private final long[] toppedUpCents = new long[HOURS_PER_DAY];
+        private long lastActivityMillis;
+
+        CardWindow(int withdrawalRingSize) {
+            this.withdrawalTimes = new long[withdrawalRingSize];
+        }
+
+        int withdrawalsInLastMinute(long nowMillis) {
+            int count = 0;
+            for (int i = 0; i < withdrawalCount; i++) {
+                if (nowMillis - withdrawalTimes[i] < MINUTE_MILLIS) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        long withdrawnLastDay(long nowMillis) {
+            return sumLastDay(withdrawnCents, nowMillis);
+        }
+
+        long toppedUpLastDay(long nowMillis) {
+            return sumLastDay(toppedUpCents, nowMillis);
+        }
+
+        void recordWithdrawal(long nowMillis, long cents) {
+            withdrawalTimes[withdrawalHead] = nowMillis;
+            withdrawalHead = (withdrawalHead + 1) % withdrawalTimes.length;
+            if (withdrawalCount < withdrawalTimes.length) {
+                withdrawalCount++;
+            }
+            withdrawnCents[bucket(nowMillis)] += cents;
+            lastActivityMillis = Math.max(lastActivityMillis, nowMillis);
+        }
+
+        void recordTopup(long nowMillis, long cents) {
+            toppedUpCents[bucket(nowMillis)] += cents;
+            lastActivityMillis = Math.max(lastActivityMillis, nowMillis);
+        }
+
+        private long sumLastDay(long[] amounts, long nowMillis) {
+            long currentHour = nowMillis / HOUR_MILLIS;
+            long total = 0;
+            for (int i = 0; i < HOURS_PER_DAY; i++) {
+                if (currentHour - bucketHour[i] < HOURS_PER_DAY) {
+                    total += amounts[i];
+                }
+            }
+            return total;
+        }
+
+        // Returns the slot for the current hour, clearing it first if it still holds an older hour
+        private int bucket(long nowMillis) {
+            long hour = nowMillis / HOUR_MILLIS;
+            int index = (int) (hour % HOURS_PER_DAY);
+            if (bucketHour[index] != hour) {
+                bucketHour[index] = hour;
+                withdrawnCents[index] = 0;
+                toppedUpCents[index] = 0;
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+-- Application schema used by the prod profile, where Hibernate only validates (ddl-auto=validate).
+-- Keep in sync with the JPA entities.
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username VARCHAR(255) UNIQUE,
+    password_hash VARCHAR(255),
+    role VARCHAR(255),
+    customer_id VARCHAR(255),
+    active BOOLEAN NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS cards (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    card_number VARCHAR(255),
+    card_number_hash VARCHAR(255),
+    pin_hash VARCHAR(255),
+    balance NUMERIC(38, 2),
+    held_amount NUMERIC(38, 2) DEFAULT 0 NOT NULL,
+    active BOOLEAN NOT NULL,
+    customer_id VARCHAR(255),
+    customer_name VARCHAR(255)
+);
+
+-- Added with key versioning; databases created before it get the column here
+ALTER TABLE cards ADD COLUMN IF NOT EXISTS card_number_hash VARCHAR(255);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_cards_card_number_hash ON cards (card_number_hash);
+
+-- Added with authorization holds; rows from before it start with nothing on hold
+ALTER TABLE cards ADD COLUMN IF NOT EXISTS held_amount NUMERIC(38, 2) DEFAULT 0 NOT NULL;
+UPDATE cards SET held_amount = 0 WHERE held_amount IS NULL;
+ALTER TABLE cards ALTER COLUMN held_amount SET DEFAULT 0;
+ALTER TABLE cards ALTER COLUMN held_amount SET NOT NULL;
+
+CREATE TABLE IF NOT EXISTS transactions (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    card_number VARCHAR(255),
+    transaction_type VARCHAR(255),
+    amount NUMERIC(38, 2),
+    balance_before NUMERIC(38, 2),
+    balance_after NUMERIC(38, 2),
+    status VARCHAR(255),
+    reason VARCHAR(255),
+    customer_id VARCHAR(255),
+    customer_name VARCHAR(255),
+    linked_transaction_id BIGINT,
+    timestamp TIMESTAMP(6)
+);
+
+CREATE INDEX IF NOT EXISTS idx_transactions_card_number ON transactions (card_number, timestamp);
+
+CREATE TABLE IF NOT EXISTS statement_checkpoints (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    statement_month VARCHAR(255),
+    partition_index INTEGER NOT NULL,
+    range_start BIGINT NOT NULL,
+    range_end BIGINT NOT NULL,
+    last_user_id BIGINT NOT NULL,
+    statements_written BIGINT NOT NULL,
+    completed BOOLEAN NOT NULL,
+    updated_at TIMESTAMP(6),
+    UNIQUE (statement_month, partition_index)
+);
+
+CREATE TABLE IF NOT EXISTS posting_checkpoints (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    posting_period VARCHAR(255),
+    posting_type VARCHAR(255),
+    partition_index INTEGER NOT NULL,
+    range_start BIGINT NOT NULL,
+    range_end BIGINT NOT NULL,
+    last_card_id BIGINT NOT NULL,
+    cards_posted BIGINT NOT NULL,
+    amount_posted NUMERIC(38, 2),
+    completed BOOLEAN NOT NULL,
+    updated_at TIMESTAMP(6),
+    UNIQUE (posting_period, posting_type, partition_index)
+);
+
+CREATE TABLE IF NOT EXISTS authorization_holds (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    card_id BIGINT,
+    card_number VARCHAR(255),
+    authorized_by VARCHAR(255),
+    amount NUMERIC(38, 2),
+    status VARCHAR(255),
+    captured_amount NUMERIC(38, 2),
+    transaction_id BIGINT,
+    created_at TIMESTAMP(6),
+    expires_at TIMESTAMP(6),
+    closed_at TIMESTAMP(6)
+);
+
+CREATE INDEX IF NOT EXISTS idx_authorization_holds_status ON authorization_holds (status);
+
+-- Added with hold ownership checks; holds placed before it can only be closed by an admin
+ALTER TABLE authorization_holds ADD COLUMN IF NOT EXISTS authorized_by VARCHAR(255);
+
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    event_type VARCHAR(255),
+    transaction_id BIGINT,
+    payload VARCHAR(2000),
+    created_at TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS outbox_offsets (
+    consumer VARCHAR(255) PRIMARY KEY,
+    last_event_id BIGINT NOT NULL,
+    updated_at TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS outbox_gaps (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    consumer VARCHAR(255),
+    event_id BIGINT NOT NULL,
+    recorded_at TIMESTAMP(6),
+    UNIQUE (consumer, event_id)
+);
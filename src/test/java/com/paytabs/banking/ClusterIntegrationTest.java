@@ -0,0 +1,118 @@
+package com.paytabs.banking;
+
+import com.paytabs.banking.dto.TransactionRequest;
+import com.paytabs.banking.dto.TransactionResponse;
+import com.paytabs.banking.repository.CardRepository;
+import com.paytabs.banking.service.System2Service;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two application contexts in the cluster profile sharing one file-mode H2 database, standing in
+ * for two nodes behind a load balancer. Each node has its own connection pools, persistence
+ * context and in-memory state, so only the database is shared between them.
+ */
+class ClusterIntegrationTest {
+
+    private static final String CARD_NUMBER = "4900000000009990";
+    private static final String PIN = "2468";
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000.00");
+    private static final int OPERATIONS_PER_NODE = 200;
+
+    @TempDir
+    static Path dataDir;
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = startNode();
+        nodeB = startNode();
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(BankingSystemApplication.class)
+                .profiles("test", "cluster")
+                .properties(
+                        "spring.datasource.url=jdbc:h2:file:" + dataDir.resolve("bankdb").toAbsolutePath()
+                                + ";AUTO_SERVER=TRUE;LOCK_TIMEOUT=10000",
+                        "server.port=0")
+                .run();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sessionSavedOnOneNodeIsVisibleOnTheOther() {
+        SessionRepository<Session> sessionsA = nodeA.getBean(SessionRepository.class);
+        SessionRepository<Session> sessionsB = nodeB.getBean(SessionRepository.class);
+
+        Session session = sessionsA.createSession();
+        session.setAttribute("customerId", "CUST-CLUSTER");
+        sessionsA.save(session);
+
+        Session shared = sessionsB.findById(session.getId());
+        assertThat(shared).isNotNull();
+        assertThat((String) shared.getAttribute("customerId")).isEqualTo("CUST-CLUSTER");
+
+        sessionsB.deleteById(session.getId());
+        assertThat(sessionsA.findById(session.getId())).isNull();
+    }
+
+    @Test
+    void concurrentUpdatesFromBothNodesAreSerializedByRowLocks() throws Exception {
+        nodeA.getBean(CardRepository.class).save(
+                TestFixtures.card(CARD_NUMBER, PIN, OPENING_BALANCE, "CUST-CLUSTER", "Cluster Test"));
+
+        // Each node tops up 2.00 and withdraws 1.00 the same number of times, interleaved
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        List<Future<TransactionResponse>> results = new ArrayList<>();
+        for (ConfigurableApplicationContext node : List.of(nodeA, nodeB)) {
+            System2Service system2 = node.getBean(System2Service.class);
+            for (int i = 0; i < OPERATIONS_PER_NODE; i++) {
+                boolean topup = i % 2 == 0;
+                TransactionRequest request = new TransactionRequest(CARD_NUMBER, PIN, topup ? 2 : 1,
+                        topup ? "topup" : "withdraw", null);
+                results.add(clients.submit(() -> system2.processTransaction(request)));
+            }
+        }
+        clients.shutdown();
+        assertThat(clients.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        for (Future<TransactionResponse> result : results) {
+            assertThat(result.get().isSuccess()).isTrue();
+        }
+
+        BigDecimal expected = OPENING_BALANCE.add(BigDecimal.valueOf(OPERATIONS_PER_NODE));
+        for (ConfigurableApplicationContext node : List.of(nodeA, nodeB)) {
+            assertThat(node.getBean(CardRepository.class).findByCardNumber(CARD_NUMBER).orElseThrow().getBalance())
+                    .isEqualByComparingTo(expected);
+        }
+    }
+}
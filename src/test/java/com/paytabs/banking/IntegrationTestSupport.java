@@ -0,0 +1,16 @@
+package com.paytabs.banking;
+
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Base of the Spring integration tests. All of them run in the test profile with the same
+ * configuration, so they share one cached application context and one database; each test
+ * creates its own rows (see TestFixtures) with card numbers and customer ids no other test uses.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public abstract class IntegrationTestSupport {
+}
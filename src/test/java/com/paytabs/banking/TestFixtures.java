@@ -0,0 +1,58 @@
+package com.paytabs.banking;
+
+import com.paytabs.banking.entity.Card;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * Test data helpers shared by the test classes.
+ */
+public final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    /**
+     * An active card, not yet saved, with the PIN stored as the application stores it.
+     */
+    public static Card card(String cardNumber, String pin, BigDecimal balance, String customerId, String customerName) {
+        Card card = new Card();
+        card.setCardNumber(cardNumber);
+        card.setPinHash(pin != null ? sha256(pin) : "unused");
+        card.setBalance(balance);
+        card.setActive(true);
+        card.setCustomerId(customerId);
+        card.setCustomerName(customerName);
+        return card;
+    }
+
+    /**
+     * Appends the Luhn check digit, so the number passes the gateway's format check.
+     */
+    public static String withCheckDigit(String digits) {
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(digits.length() - 1 - i) - '0';
+            if (i % 2 == 0) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    public static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new RuntimeException("Error hashing PIN", e);
+        }
+    }
+}
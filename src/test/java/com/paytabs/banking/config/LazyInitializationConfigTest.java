@@ -0,0 +1,33 @@
+package com.paytabs.banking.config;
+
+import com.paytabs.banking.crypto.EncryptionUtil;
+import com.paytabs.banking.security.ApiTokenService;
+import com.paytabs.banking.service.CardShardExecutor;
+import com.paytabs.banking.service.HoldService;
+import com.paytabs.banking.service.IssuedCardFilter;
+import com.paytabs.banking.service.OutboxRelay;
+import com.paytabs.banking.service.TransactionService;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Which beans stay eager under the prod profile's lazy initialization.
+ */
+class LazyInitializationConfigTest {
+
+    @Test
+    void beansWithStartupOrScheduledWorkStayEager() {
+        assertThat(LazyInitializationConfig.doesStartupWork(HoldService.class)).isTrue();
+        assertThat(LazyInitializationConfig.doesStartupWork(EncryptionUtil.class)).isTrue();
+        assertThat(LazyInitializationConfig.doesStartupWork(ApiTokenService.class)).isTrue();
+        assertThat(LazyInitializationConfig.doesStartupWork(IssuedCardFilter.class)).isTrue();
+        assertThat(LazyInitializationConfig.doesStartupWork(OutboxRelay.class)).isTrue();
+    }
+
+    @Test
+    void otherBeansStayLazy() {
+        assertThat(LazyInitializationConfig.doesStartupWork(TransactionService.class)).isFalse();
+        assertThat(LazyInitializationConfig.doesStartupWork(CardShardExecutor.class)).isFalse();
+    }
+}
@@ -0,0 +1,68 @@
+package com.paytabs.banking.config;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.service.LedgerReconciliationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Read-only transactions reach the read pool and all other work the write pool, checked against
+ * two separate H2 databases that each hold a different marker row.
+ */
+class ReadWriteRoutingTest extends IntegrationTestSupport {
+
+    @Autowired
+    @Qualifier("readDataSource")
+    private DataSource readDataSource;
+
+    @Autowired
+    private LedgerReconciliationService reconciliationService;
+
+    @Test
+    void readOnlyTransactionsUseTheReadDatabase() {
+        DataSource primary = database("routing_primary", "primary");
+        DataSource replica = database("routing_replica", "replica");
+        DataSource routing = new DataSourceConfig().dataSource(primary, replica);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routing);
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        assertThat(readOnly.execute(status -> marker(jdbcTemplate))).isEqualTo("replica");
+        assertThat(readWrite.execute(status -> marker(jdbcTemplate))).isEqualTo("primary");
+        // Outside a transaction, e.g. schedulers and JdbcTemplate callers, work goes to the primary
+        assertThat(marker(jdbcTemplate)).isEqualTo("primary");
+    }
+
+    @Test
+    void reconciliationReadsThroughTheReadPool() {
+        JdbcTemplate jdbcTemplate = (JdbcTemplate) ReflectionTestUtils.getField(reconciliationService, "jdbcTemplate");
+
+        assertThat(jdbcTemplate.getDataSource()).isSameAs(readDataSource);
+    }
+
+    private static DataSource database(String name, String marker) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists routing_marker (name varchar(20))");
+        jdbcTemplate.update("delete from routing_marker");
+        jdbcTemplate.update("insert into routing_marker (name) values (?)", marker);
+        return dataSource;
+    }
+
+    private static String marker(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("select name from routing_marker", String.class);
+    }
+}
@@ -0,0 +1,106 @@
+package com.paytabs.banking.config;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.crypto.EncryptionUtil;
+import com.paytabs.banking.dto.ReconciliationReport;
+import com.paytabs.banking.service.IssuedCardFilter;
+import com.paytabs.banking.service.LedgerReconciliationService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A small perfdata-style run: the seeded chains reconcile against the card balances, and the
+ * manifest cards, their users and the acquirer are usable by the load generator.
+ */
+class SyntheticDataSeederTest extends IntegrationTestSupport {
+
+    private static final int TRANSACTIONS = 20_000;
+    private static final int MANIFEST_CARDS = 50;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private IssuedCardFilter issuedCardFilter;
+
+    @Autowired
+    private LedgerReconciliationService reconciliationService;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void seededLedgerReconcilesAndManifestCardsAreIssued() throws Exception {
+        Path manifest = directory.resolve("cards.csv");
+        SyntheticDataSeeder seeder = new SyntheticDataSeeder(dataSource, transactionManager, encryptionUtil,
+                passwordEncoder, issuedCardFilter);
+        ReflectionTestUtils.setField(seeder, "customerCount", 300);
+        ReflectionTestUtils.setField(seeder, "transactionCount", TRANSACTIONS);
+        ReflectionTestUtils.setField(seeder, "zipfExponent", 0.9);
+        ReflectionTestUtils.setField(seeder, "historyDays", 30);
+        ReflectionTestUtils.setField(seeder, "openingBalanceMin", new BigDecimal("100.00"));
+        ReflectionTestUtils.setField(seeder, "openingBalanceMax", new BigDecimal("5000.00"));
+        ReflectionTestUtils.setField(seeder, "threads", 2);
+        ReflectionTestUtils.setField(seeder, "batchSize", 500);
+        ReflectionTestUtils.setField(seeder, "seed", 46L);
+        ReflectionTestUtils.setField(seeder, "cardPrefix", "44");
+        ReflectionTestUtils.setField(seeder, "customerPrefix", "SEED");
+        ReflectionTestUtils.setField(seeder, "usernamePrefix", "seedtest_");
+        ReflectionTestUtils.setField(seeder, "password", "seedtest123");
+        ReflectionTestUtils.setField(seeder, "manifestPath", manifest.toString());
+        ReflectionTestUtils.setField(seeder, "manifestCards", MANIFEST_CARDS);
+
+        seeder.run();
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Map<String, Object> cardIds = jdbcTemplate.queryForMap(
+                "select min(id) as min_id, max(id) as max_id from cards where customer_id like 'SEED%'");
+        long minId = ((Number) cardIds.get("min_id")).longValue();
+        long maxId = ((Number) cardIds.get("max_id")).longValue();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from transactions where customer_id like 'SEED%'",
+                Integer.class)).isEqualTo(TRANSACTIONS);
+
+        ReconciliationReport report = reconciliationService.reconcile();
+        assertThat(report.getDiscrepancies())
+                .filteredOn(discrepancy -> discrepancy.getCardId() >= minId && discrepancy.getCardId() <= maxId)
+                .isEmpty();
+
+        List<String> lines = Files.readAllLines(manifest);
+        assertThat(lines).hasSize(MANIFEST_CARDS + 1);
+        String[] hottest = lines.get(1).split(",");
+        assertThat(issuedCardFilter.check(hottest[0])).isNull();
+        String passwordHash = jdbcTemplate.queryForObject("select password_hash from users where username = ?",
+                String.class, hottest[2]);
+        assertThat(passwordEncoder.matches(hottest[3], passwordHash)).isTrue();
+        assertThat(jdbcTemplate.queryForObject("select role from users where username = 'seedtest_acquirer'",
+                String.class)).isEqualTo("ACQUIRER");
+
+        // A second start finds the data and leaves it alone
+        seeder.run();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from transactions where customer_id like 'SEED%'",
+                Integer.class)).isEqualTo(TRANSACTIONS);
+    }
+}
@@ -0,0 +1,81 @@
+package com.paytabs.banking.controller;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.entity.User;
+import com.paytabs.banking.repository.CardRepository;
+import com.paytabs.banking.repository.UserRepository;
+import com.paytabs.banking.service.IssuedCardFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Customers only reach their own history, and only acquirers reach the System 2 direct API.
+ */
+class ApiAuthorizationTest extends IntegrationTestSupport {
+
+    private static final String CARD_NUMBER = TestFixtures.withCheckDigit("459000000000001");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private IssuedCardFilter issuedCardFilter;
+
+    @BeforeEach
+    void createCustomer() {
+        if (userRepository.findByUsername("authz_customer").isEmpty()) {
+            User user = new User();
+            user.setUsername("authz_customer");
+            user.setPasswordHash("unused");
+            user.setRole("CUSTOMER");
+            user.setCustomerId("CUSTAUTHZ");
+            user.setActive(true);
+            userRepository.save(user);
+            cardRepository.save(TestFixtures.card(CARD_NUMBER, "1234", new BigDecimal("100.00"), "CUSTAUTHZ", "Authz Test"));
+            issuedCardFilter.addIssuedCard(CARD_NUMBER);
+        }
+    }
+
+    @Test
+    void customerReadsOnlyOwnHistory() throws Exception {
+        mockMvc.perform(get("/api/transactions/customer/CUSTAUTHZ").with(user("authz_customer").roles("CUSTOMER")))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/transactions/customer/CUST001").with(user("authz_customer").roles("CUSTOMER")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/transactions/customer/CUSTAUTHZ").with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void directProcessingRequiresAcquirerRole() throws Exception {
+        String body = "{\"cardNumber\":\"" + CARD_NUMBER + "\",\"pinHash\":\"" + TestFixtures.sha256("1234")
+                + "\",\"amount\":1.00,\"type\":\"topup\"}";
+
+        mockMvc.perform(post("/api/process").with(user("authz_customer").roles("CUSTOMER"))
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/process").with(user("admin").roles("ADMIN"))
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/process").with(user("acquirer").roles("ACQUIRER"))
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,131 @@
+package com.paytabs.banking.controller;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.dto.TransactionView;
+import com.paytabs.banking.entity.Transaction;
+import com.paytabs.banking.entity.User;
+import com.paytabs.banking.repository.CardRepository;
+import com.paytabs.banking.repository.TransactionRepository;
+import com.paytabs.banking.repository.UserRepository;
+import com.paytabs.banking.service.TransactionService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The customer dashboard must load in a fixed number of queries, however many cards the customer
+ * has, and its history must hold the newest transactions of every card.
+ */
+class CustomerDashboardQueryCountTest extends IntegrationTestSupport {
+
+    private static final String USERNAME = "multi_card";
+    private static final String CUSTOMER_ID = "CUSTMULTI";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<String> cardNumbers = new ArrayList<>();
+
+    @BeforeEach
+    void createCustomer() {
+        if (userRepository.findByUsername(USERNAME).isEmpty()) {
+            User user = new User();
+            user.setUsername(USERNAME);
+            user.setPasswordHash("unused");
+            user.setRole("CUSTOMER");
+            user.setCustomerId(CUSTOMER_ID);
+            user.setActive(true);
+            userRepository.save(user);
+        }
+        cardRepository.findByCustomerIdOrderById(CUSTOMER_ID).forEach(card -> cardNumbers.add(card.getCardNumber()));
+    }
+
+    @Test
+    void dashboardQueryCountDoesNotGrowWithCards() throws Exception {
+        addCard(4);
+        long before = dashboardStatements();
+
+        for (int i = 0; i < 5; i++) {
+            addCard(4);
+        }
+        long after = dashboardStatements();
+
+        assertThat(after).isEqualTo(before);
+        assertThat(before).isLessThanOrEqualTo(5);
+    }
+
+    @Test
+    void historyIsLimitedPerCard() {
+        String busyCard = addCard(10);
+        String quietCard = addCard(2);
+
+        List<TransactionView> history = transactionService.getRecentTransactionsByCardNumbers(
+                List.of(busyCard, quietCard), 3);
+
+        assertThat(history).filteredOn(view -> view.getCardNumber().equals(busyCard)).hasSize(3)
+                .allSatisfy(view -> assertThat(view.getAmount()).isGreaterThanOrEqualTo(new BigDecimal("8")));
+        assertThat(history).filteredOn(view -> view.getCardNumber().equals(quietCard)).hasSize(2);
+        assertThat(history).isSortedAccordingTo((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()));
+    }
+
+    private long dashboardStatements() throws Exception {
+        // The first request warms caches that later requests do not need again
+        mockMvc.perform(get("/customer/dashboard").with(user(USERNAME).roles("CUSTOMER"))).andExpect(status().isOk());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/customer/dashboard").with(user(USERNAME).roles("CUSTOMER"))).andExpect(status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+
+    // Saves a card with transactions of amount 1, 2, ... n, each newer than the one before
+    private String addCard(int transactions) {
+        String cardNumber = String.format("48000000%08d", cardNumbers.size() + 1);
+        cardRepository.save(TestFixtures.card(cardNumber, null, new BigDecimal("100.00"), CUSTOMER_ID, "Multi Card"));
+        cardNumbers.add(cardNumber);
+
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        for (int i = 1; i <= transactions; i++) {
+            transactionRepository.save(Transaction.builder()
+                    .cardNumber(cardNumber)
+                    .transactionType("topup")
+                    .amount(BigDecimal.valueOf(i))
+                    .status("success")
+                    .customerId(CUSTOMER_ID)
+                    .customerName("Multi Card")
+                    .timestamp(start.plusMinutes(i))
+                    .build());
+        }
+        return cardNumber;
+    }
+}
@@ -0,0 +1,47 @@
+package com.paytabs.banking.profiling;
+
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cost of one begin/finish pair with no recording running and with a recording that collects
+ * every stage event. Not a JMH benchmark: a warmed-up timed loop, printed for comparison.
+ */
+@Tag("benchmark")
+class StageEventOverheadBenchmarkTest {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    @Test
+    void stageEventsAreCheapWithAndWithoutRecording() {
+        assertThat(StageEvent.isStageRecorded()).isFalse();
+        double idleNanos = measure();
+        double recordedNanos;
+        try (Recording recording = new Recording()) {
+            recording.enable(StageEvent.NAME);
+            recording.start();
+            assertThat(StageEvent.isStageRecorded()).isTrue();
+            recordedNanos = measure();
+            recording.stop();
+        }
+        System.out.printf("StageEvent begin/finish: %.0f ns without recording, %.0f ns while recorded%n",
+                idleNanos, recordedNanos);
+
+        assertThat(StageEvent.isStageRecorded()).isFalse();
+    }
+
+    private static double measure() {
+        for (int i = 0; i < WARMUP; i++) {
+            StageEvent.begin("benchmark").finish("ok");
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            StageEvent.begin("benchmark").finish("ok");
+        }
+        return (double) (System.nanoTime() - start) / ITERATIONS;
+    }
+}
@@ -0,0 +1,292 @@
+package com.paytabs.banking.protocol;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.dto.TransactionResponse;
+import com.paytabs.banking.entity.Card;
+import com.paytabs.banking.repository.CardRepository;
+import com.paytabs.banking.security.ApiTokenService;
+import com.paytabs.banking.service.AdaptiveConcurrencyLimiter;
+import com.paytabs.banking.service.CardShardExecutor;
+import com.paytabs.banking.service.IssuedCardFilter;
+import com.paytabs.banking.service.System2Service;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The binary protocol over a real socket: pipelined requests answered by request id, the
+ * acquirer-only handshake, and a connection that stops being read at its in-flight limit. Each
+ * test starts its own server on a free port, with the concurrency limiter off so it never answers
+ * busy.
+ */
+class BinaryProtocolServerTest extends IntegrationTestSupport {
+
+    private static final String PIN = "2468";
+    private static final byte TOPUP = 2;
+    private static final byte WITHDRAW = 1;
+
+    @Autowired
+    private System2Service system2Service;
+
+    @Autowired
+    private CardShardExecutor cardShardExecutor;
+
+    @Autowired
+    private ApiTokenService apiTokenService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private IssuedCardFilter issuedCardFilter;
+
+    private final List<BinaryProtocolServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(BinaryProtocolServer::stop);
+    }
+
+    @Test
+    void pipelinedRequestsAreAnsweredByRequestId() throws Exception {
+        List<String> cardNumbers = createCards(8);
+        byte[] pinDigest = HexFormat.of().parseHex(TestFixtures.sha256(PIN));
+        BinaryProtocolServer server = startServer(cardShardExecutor, 8);
+
+        try (Client client = new Client(server.localPort())) {
+            client.send(auth(1, token("ROLE_ACQUIRER")));
+            assertThat(client.read().status()).isEqualTo(BinaryProtocol.STATUS_OK);
+
+            // All requests in one write; the server holds back everything past its in-flight limit
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            for (int i = 0; i < 100; i++) {
+                frames.write(process(1000 + i, TOPUP, i + 1, cardNumbers.get(i % 8), pinDigest));
+            }
+            frames.write(process(2000, WITHDRAW, 1, cardNumbers.get(0), new byte[32]));
+            frames.write(process(3000, TOPUP, 0, cardNumbers.get(0), pinDigest));
+            client.send(frames.toByteArray());
+
+            Map<Integer, Response> responses = new HashMap<>();
+            for (int i = 0; i < 102; i++) {
+                Response response = client.read();
+                assertThat(response.opcode()).isEqualTo((byte) (BinaryProtocol.PROCESS | BinaryProtocol.RESPONSE_FLAG));
+                responses.put(response.requestId(), response);
+            }
+            for (int i = 0; i < 100; i++) {
+                Response response = responses.get(1000 + i);
+                assertThat(response.status()).as(response.message()).isEqualTo(BinaryProtocol.STATUS_OK);
+                assertThat(response.amount()).isEqualTo(i + 1);
+                assertThat(response.transactionId()).isNotEqualTo(BinaryProtocol.NONE);
+            }
+            assertThat(responses.get(2000).status()).isEqualTo(BinaryProtocol.STATUS_DECLINED);
+            assertThat(responses.get(3000).status()).isEqualTo(BinaryProtocol.STATUS_BAD_REQUEST);
+        }
+
+        for (int card = 0; card < 8; card++) {
+            long cents = 0;
+            for (int i = card; i < 100; i += 8) {
+                cents += i + 1;
+            }
+            assertThat(cardRepository.findByCardNumber(cardNumbers.get(card)).orElseThrow().getBalance())
+                    .isEqualByComparingTo(BigDecimal.valueOf(cents, 2));
+        }
+    }
+
+    @Test
+    void onlyAcquirerTokensMayProcess() throws Exception {
+        byte[] pinDigest = HexFormat.of().parseHex(TestFixtures.sha256(PIN));
+        String cardNumber = TestFixtures.withCheckDigit("450999999999999");
+        BinaryProtocolServer server = startServer(cardShardExecutor, 8);
+
+        String acquirer = token("ROLE_ACQUIRER");
+        List<byte[]> openings = List.of(
+                process(1, TOPUP, 100, cardNumber, pinDigest),
+                auth(1, token("ROLE_CUSTOMER")),
+                auth(1, acquirer.substring(0, acquirer.length() - 2) + "xx"));
+        for (byte[] opening : openings) {
+            try (Client client = new Client(server.localPort())) {
+                // One write, so the follow-up is read before the server closes and no reset is sent
+                ByteArrayOutputStream frames = new ByteArrayOutputStream();
+                frames.write(opening);
+                frames.write(process(2, TOPUP, 100, cardNumber, pinDigest));
+                client.send(frames.toByteArray());
+                assertThat(client.read().status()).isEqualTo(BinaryProtocol.STATUS_UNAUTHORIZED);
+                // The connection is closed after the rejection, without processing what followed
+                assertThat(client.in.read()).isEqualTo(-1);
+            }
+        }
+    }
+
+    @Test
+    void connectionStopsReadingAtItsInFlightLimit() throws Exception {
+        HeldShards shards = new HeldShards();
+        BinaryProtocolServer server = startServer(shards, 3);
+
+        try (Client client = new Client(server.localPort())) {
+            client.send(auth(1, token("ROLE_ACQUIRER")));
+            client.read();
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            for (int i = 0; i < 10; i++) {
+                frames.write(process(100 + i, TOPUP, 1, TestFixtures.withCheckDigit("450888888888888"), new byte[32]));
+            }
+            client.send(frames.toByteArray());
+
+            List<CompletableFuture<Object>> held = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                held.add(shards.pending.poll(10, TimeUnit.SECONDS));
+            }
+            assertThat(shards.pending.poll(300, TimeUnit.MILLISECONDS)).as("fourth request dispatched").isNull();
+
+            // Each completed request lets exactly one more in
+            for (int i = 0; i < 10; i++) {
+                held.get(i).complete(new TransactionResponse(true, "ok", "success", new BigDecimal("0.01"),
+                        new BigDecimal("0.01"), LocalDateTime.now(), String.valueOf(i + 1)));
+                assertThat(client.read().requestId()).isEqualTo(100 + i);
+                if (i + 3 < 10) {
+                    held.add(shards.pending.poll(10, TimeUnit.SECONDS));
+                    assertThat(held.get(i + 3)).isNotNull();
+                }
+                assertThat(shards.pending.poll(50, TimeUnit.MILLISECONDS)).isNull();
+            }
+        }
+    }
+
+    private BinaryProtocolServer startServer(CardShardExecutor shards, int maxInFlight) throws IOException {
+        AdaptiveConcurrencyLimiter unlimited = new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), false,
+                20, 4, 200, 0.8, 1.5, 0.2, 0.9, 600, 100, 10);
+        BinaryProtocolServer server = new BinaryProtocolServer(system2Service, shards, unlimited, apiTokenService,
+                new SimpleMeterRegistry(), true, "127.0.0.1", 0, 1, maxInFlight);
+        server.start();
+        servers.add(server);
+        return server;
+    }
+
+    private String token(String role) {
+        return apiTokenService.issueToken(new UsernamePasswordAuthenticationToken("binary_test", null,
+                List.of(new SimpleGrantedAuthority(role))));
+    }
+
+    private List<String> createCards(int count) {
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            cards.add(TestFixtures.card(TestFixtures.withCheckDigit(String.format("450%012d", i)), PIN, BigDecimal.ZERO,
+                    "CUSTBINARY", "Binary Test"));
+        }
+        List<String> cardNumbers = cardRepository.saveAll(cards).stream().map(Card::getCardNumber).toList();
+        cardNumbers.forEach(issuedCardFilter::addIssuedCard);
+        return cardNumbers;
+    }
+
+    private static byte[] auth(int requestId, String token) throws IOException {
+        byte[] ascii = token.getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream frame = new DataOutputStream(bytes);
+        frame.writeInt(1 + 4 + 2 + ascii.length);
+        frame.writeByte(BinaryProtocol.AUTH);
+        frame.writeInt(requestId);
+        frame.writeShort(ascii.length);
+        frame.write(ascii);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] process(int requestId, byte type, long cents, String cardNumber, byte[] pinDigest)
+            throws IOException {
+        byte[] card = cardNumber.getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream frame = new DataOutputStream(bytes);
+        frame.writeInt(1 + 4 + 1 + 8 + 1 + card.length + pinDigest.length + 1);
+        frame.writeByte(BinaryProtocol.PROCESS);
+        frame.writeInt(requestId);
+        frame.writeByte(type);
+        frame.writeLong(cents);
+        frame.writeByte(card.length);
+        frame.write(card);
+        frame.write(pinDigest);
+        frame.writeByte(0);
+        return bytes.toByteArray();
+    }
+
+    private record Response(byte opcode, int requestId, byte status, long amount, long balanceAfter,
+                            long transactionId, String message) {
+    }
+
+    private static final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final DataInputStream in;
+
+        Client(int port) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            socket.setSoTimeout(10_000);
+            in = new DataInputStream(socket.getInputStream());
+        }
+
+        void send(byte[] frames) throws IOException {
+            socket.getOutputStream().write(frames);
+            socket.getOutputStream().flush();
+        }
+
+        Response read() throws IOException {
+            in.readInt();
+            byte opcode = in.readByte();
+            int requestId = in.readInt();
+            byte status = in.readByte();
+            long amount = in.readLong();
+            long balanceAfter = in.readLong();
+            long transactionId = in.readLong();
+            in.readLong();
+            byte[] message = new byte[in.readUnsignedShort()];
+            in.readFully(message);
+            return new Response(opcode, requestId, status, amount, balanceAfter, transactionId,
+                    new String(message, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * Shards that never run anything: each submitted request waits until the test completes it.
+     */
+    private static final class HeldShards extends CardShardExecutor {
+        private final BlockingQueue<CompletableFuture<Object>> pending = new LinkedBlockingQueue<>();
+
+        HeldShards() {
+            super(1, 16);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> CompletableFuture<T> submit(String cardNumber, Supplier<T> task) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            pending.add((CompletableFuture<Object>) (CompletableFuture<?>) future);
+            return future;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.paytabs.banking.protocol;
+
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.entity.Card;
+import com.paytabs.banking.repository.CardRepository;
+import com.paytabs.banking.security.ApiTokenService;
+import com.paytabs.banking.service.IssuedCardFilter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The same pre-hashed top-up sent as POST /api/process over HTTP/JSON and as a PROCESS frame over
+ * the binary protocol, against a running server with the concurrency limiter off. REST uses one
+ * request per client thread at a time; the binary clients pipeline a window of requests on each
+ * connection. Not a JMH benchmark: a warm-up pass and one timed pass each, printed as messages
+ * per second. Runs in its own context and database, since it needs a real HTTP port.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"binary.enabled=true", "binary.port=0", "transaction.limiter.enabled=false",
+                "spring.datasource.url=jdbc:h2:mem:binarybench;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000"})
+@ActiveProfiles("test")
+class BinaryVsRestThroughputBenchmarkTest {
+
+    private static final int CARDS = 64;
+    private static final int REST_THREADS = 16;
+    private static final int CONNECTIONS = 4;
+    private static final int WINDOW = 16;
+    private static final int WARMUP = 2_000;
+    private static final int MEASURED = 20_000;
+    private static final String PIN = "1357";
+
+    @LocalServerPort
+    private int httpPort;
+
+    @Autowired
+    private BinaryProtocolServer binaryServer;
+
+    @Autowired
+    private ApiTokenService apiTokenService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private IssuedCardFilter issuedCardFilter;
+
+    @Test
+    void restAndBinaryProcessEveryTopUp() throws Exception {
+        List<String> cardNumbers = createCards();
+        String token = apiTokenService.issueToken(new UsernamePasswordAuthenticationToken("benchmark_acquirer", null,
+                List.of(new SimpleGrantedAuthority("ROLE_ACQUIRER"))));
+
+        runRest(cardNumbers, token, WARMUP);
+        runBinary(cardNumbers, token, WARMUP);
+        double restRate = runRest(cardNumbers, token, MEASURED);
+        double binaryRate = runBinary(cardNumbers, token, MEASURED);
+        System.out.printf("Pre-hashed top-ups: REST %.0f msgs/s (%d threads), binary %.0f msgs/s "
+                + "(%d connections, window %d)%n", restRate, REST_THREADS, binaryRate, CONNECTIONS, WINDOW);
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (String cardNumber : cardNumbers) {
+            total = total.add(cardRepository.findByCardNumber(cardNumber).orElseThrow().getBalance());
+        }
+        assertThat(total).isEqualByComparingTo(BigDecimal.valueOf(2L * (WARMUP + MEASURED), 2));
+    }
+
+    // Returns requests per second; fails on any request that is not approved
+    private double runRest(List<String> cardNumbers, String token, int requests) throws Exception {
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI uri = URI.create("http://127.0.0.1:" + httpPort + "/api/process");
+        String pinHash = TestFixtures.sha256(PIN);
+        ExecutorService clients = Executors.newFixedThreadPool(REST_THREADS);
+        List<Future<HttpResponse<String>>> futures = new ArrayList<>(requests);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            String body = "{\"cardNumber\":\"" + cardNumbers.get(i % CARDS) + "\",\"pinHash\":\"" + pinHash
+                    + "\",\"amount\":0.01,\"type\":\"topup\"}";
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Authorization", "Bearer " + token)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            futures.add(clients.submit(() -> http.send(request, HttpResponse.BodyHandlers.ofString())));
+        }
+        for (Future<HttpResponse<String>> future : futures) {
+            HttpResponse<String> response = future.get();
+            assertThat(response.statusCode()).as(response.body()).isEqualTo(200);
+            assertThat(response.body()).contains("\"success\":true");
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        assertThat(clients.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        return requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    private double runBinary(List<String> cardNumbers, String token, int requests) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CONNECTIONS);
+        List<Future<Integer>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < CONNECTIONS; c++) {
+            int first = c;
+            futures.add(clients.submit(() -> binaryConnection(cardNumbers, token, first, requests)));
+        }
+        int approved = 0;
+        for (Future<Integer> future : futures) {
+            approved += future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        assertThat(approved).isEqualTo(requests);
+        return requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    // Sends every CONNECTIONS-th request, WINDOW frames per write, and returns the number approved
+    private Integer binaryConnection(List<String> cardNumbers, String token, int first, int requests) throws Exception {
+        byte[] pinDigest = HexFormat.of().parseHex(TestFixtures.sha256(PIN));
+        try (Socket socket = new Socket("127.0.0.1", binaryServer.localPort())) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(30_000);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] ascii = token.getBytes(StandardCharsets.US_ASCII);
+            ByteArrayOutputStream auth = new ByteArrayOutputStream();
+            DataOutputStream frame = new DataOutputStream(auth);
+            frame.writeInt(1 + 4 + 2 + ascii.length);
+            frame.writeByte(BinaryProtocol.AUTH);
+            frame.writeInt(0);
+            frame.writeShort(ascii.length);
+            frame.write(ascii);
+            socket.getOutputStream().write(auth.toByteArray());
+            if (readStatus(in) != BinaryProtocol.STATUS_OK) {
+                return 0;
+            }
+
+            int approved = 0;
+            int next = first;
+            while (next < requests) {
+                ByteArrayOutputStream window = new ByteArrayOutputStream();
+                DataOutputStream frames = new DataOutputStream(window);
+                int sent = 0;
+                for (; sent < WINDOW && next < requests; sent++, next += CONNECTIONS) {
+                    byte[] card = cardNumbers.get(next % CARDS).getBytes(StandardCharsets.US_ASCII);
+                    frames.writeInt(1 + 4 + 1 + 8 + 1 + card.length + pinDigest.length + 1);
+                    frames.writeByte(BinaryProtocol.PROCESS);
+                    frames.writeInt(next);
+                    frames.writeByte(2);
+                    frames.writeLong(1);
+                    frames.writeByte(card.length);
+                    frames.write(card);
+                    frames.write(pinDigest);
+                    frames.writeByte(0);
+                }
+                socket.getOutputStream().write(window.toByteArray());
+                for (int i = 0; i < sent; i++) {
+                    if (readStatus(in) == BinaryProtocol.STATUS_OK) {
+                        approved++;
+                    }
+                }
+            }
+            return approved;
+        }
+    }
+
+    private static byte readStatus(DataInputStream in) throws Exception {
+        int length = in.readInt();
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame[5];
+    }
+
+    private List<String> createCards() {
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            cards.add(TestFixtures.card(TestFixtures.withCheckDigit(String.format("4501%011d", i)), PIN,
+                    BigDecimal.ZERO, "CUSTBINBENCH", "Binary Benchmark"));
+        }
+        List<String> cardNumbers = cardRepository.saveAll(cards).stream().map(Card::getCardNumber).toList();
+        cardNumbers.forEach(issuedCardFilter::addIssuedCard);
+        return cardNumbers;
+    }
+}
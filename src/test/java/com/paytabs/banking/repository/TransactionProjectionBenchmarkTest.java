@@ -0,0 +1,90 @@
+package com.paytabs.banking.repository;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency and allocation of a full transaction listing read as TransactionView rows versus
+ * managed entities. Not a JMH benchmark: one warm-up and one timed read each, printed for
+ * comparison. Run with -Dbenchmark.rows=1000000 for the full-size table.
+ */
+@Tag("benchmark")
+class TransactionProjectionBenchmarkTest extends IntegrationTestSupport {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 100_000);
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void seed() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Long existing = jdbcTemplate.queryForObject("select count(*) from transactions", Long.class);
+        if (existing != null && existing >= ROWS) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(10_000);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{String.format("4%015d", i % 5000), "topup", 10, 100, 110, "success",
+                    "CUST" + (i % 5000), "Customer " + (i % 5000), now});
+            if (rows.size() == 10_000 || i == ROWS - 1) {
+                jdbcTemplate.batchUpdate("insert into transactions (card_number, transaction_type, amount, " +
+                        "balance_before, balance_after, status, customer_id, customer_name, timestamp) " +
+                        "values (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+    }
+
+    @Test
+    void projectionReadsAllocateLessThanEntities() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        Measurement views = measure(() -> readOnly.execute(status -> transactionRepository.findAllViews()));
+        // Entities as the listings loaded them before: managed, snapshotted and dirty-checked on commit
+        Measurement entities = measure(() -> readWrite.execute(status -> transactionRepository.findAll()));
+
+        System.out.printf("%d rows: views %d ms, %d MB allocated; entities %d ms, %d MB allocated%n", ROWS,
+                views.millis, views.bytes >> 20, entities.millis, entities.bytes >> 20);
+        assertThat(views.rows).isEqualTo(entities.rows).isGreaterThanOrEqualTo(ROWS);
+        assertThat(views.bytes).isLessThan(entities.bytes);
+    }
+
+    private record Measurement(int rows, long millis, long bytes) {
+    }
+
+    private static Measurement measure(Supplier<List<?>> read) {
+        read.get();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        List<?> result = read.get();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return new Measurement(result.size(), millis, threads.getCurrentThreadAllocatedBytes() - allocatedBefore);
+    }
+}
@@ -0,0 +1,52 @@
+package com.paytabs.banking.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rough cost of verifying a bearer token, which every /api/** request pays instead of a session
+ * lookup. Not a JMH benchmark: a warm-up pass and one timed pass, printed for comparison.
+ */
+@Tag("benchmark")
+class ApiTokenVerificationBenchmarkTest {
+
+    private static final int WARMUP = 50_000;
+    private static final int MEASURED = 200_000;
+
+    @Test
+    void verificationNeedsNoLookup() {
+        ApiTokenService tokens = new ApiTokenService(new ObjectMapper());
+        ReflectionTestUtils.setField(tokens, "secret", "BenchmarkSigningKey-0123456789abcdef");
+        ReflectionTestUtils.setField(tokens, "ttlSeconds", 3600L);
+        tokens.setup();
+        String token = tokens.issueToken(new UsernamePasswordAuthenticationToken("john_doe", null,
+                List.of(new SimpleGrantedAuthority("ROLE_CUSTOMER"))));
+
+        long verified = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            verified += tokens.verifyToken(token) != null ? 1 : 0;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED; i++) {
+            Authentication authentication = tokens.verifyToken(token);
+            verified += authentication != null ? 1 : 0;
+        }
+        long nanosPerVerify = (System.nanoTime() - start) / MEASURED;
+        System.out.printf("Token verification: %d ns/op, %.0f ops/s per thread%n",
+                nanosPerVerify, TimeUnit.SECONDS.toNanos(1) / (double) nanosPerVerify);
+
+        assertThat(verified).isEqualTo(WARMUP + MEASURED);
+        // A changed payload no longer matches its signature
+        assertThat(tokens.verifyToken(token.replaceFirst("\\.", ".x"))).isNull();
+    }
+}
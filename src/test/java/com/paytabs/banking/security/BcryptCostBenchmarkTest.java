@@ -0,0 +1,50 @@
+package com.paytabs.banking.security;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time of one password check per BCrypt strength, for choosing auth.bcrypt.strength on the
+ * target hardware. Not a JMH benchmark: the median of a few checks after one warm-up.
+ */
+@Tag("benchmark")
+class BcryptCostBenchmarkTest {
+
+    private static final int RUNS = 5;
+
+    @Test
+    void costPerStrength() {
+        Map<Integer, Double> millisByStrength = new LinkedHashMap<>();
+        for (int strength = 8; strength <= 12; strength++) {
+            millisByStrength.put(strength, medianMatchMillis(strength));
+        }
+        millisByStrength.forEach((strength, millis) ->
+                System.out.printf("BCrypt strength %d: %.1f ms per password check%n", strength, millis));
+
+        assertThat(millisByStrength).hasSize(5);
+    }
+
+    private static double medianMatchMillis(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        String hash = encoder.encode("password123");
+        // The cost is stored in the hash, so existing hashes keep their strength after a config change
+        assertThat(hash).startsWith(String.format("$2a$%02d$", strength));
+        encoder.matches("password123", hash);
+        double[] millis = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            assertThat(encoder.matches("password123", hash)).isTrue();
+            millis[i] = (System.nanoTime() - start) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+        Arrays.sort(millis);
+        return millis[RUNS / 2];
+    }
+}
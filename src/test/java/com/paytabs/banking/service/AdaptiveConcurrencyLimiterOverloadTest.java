@@ -0,0 +1,118 @@
+package com.paytabs.banking.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Overload simulation: open-loop arrivals at up to four times the capacity of a backend with a
+ * fixed number of connections. With the limiter in front, goodput stays near capacity and the
+ * latency of admitted requests stays bounded, because the excess is rejected instead of queued.
+ * Runs in real time with sleeps, so it is a benchmark rather than part of the default test run.
+ */
+@Tag("benchmark")
+class AdaptiveConcurrencyLimiterOverloadTest {
+
+    private static final int CONNECTIONS = 4;
+    private static final long SERVICE_MILLIS = 5;
+    // Requests per second the backend can complete
+    private static final int CAPACITY = (int) (CONNECTIONS * 1000 / SERVICE_MILLIS);
+    private static final long STEP_MILLIS = 3000;
+
+    record StepResult(double offeredMultiple, double goodput, double rejectedShare, long p99Millis) {
+        @Override
+        public String toString() {
+            return String.format("offered %.1fx capacity: goodput %.0f/s (%.0f%% of capacity), rejected %.0f%%, p99 %d ms",
+                    offeredMultiple, goodput, 100 * goodput / CAPACITY, 100 * rejectedShare, p99Millis);
+        }
+    }
+
+    @Test
+    void goodputAndLatencyStayStableBeyondSaturation() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), true,
+                20, 4, 200, 0.8, 1.5, 0.2, 0.9, 600, 100, 10);
+        Semaphore connections = new Semaphore(CONNECTIONS, true);
+
+        List<StepResult> results = new ArrayList<>();
+        for (double multiple : new double[]{0.5, 1.0, 2.0, 4.0}) {
+            results.add(runStep(limiter, connections, multiple));
+        }
+        results.forEach(System.out::println);
+
+        // Goodput is compared with this machine's own run at capacity, and the excess must be shed
+        // rather than queued: at 4x at least half of the offered load is rejected
+        StepResult atCapacity = results.get(1);
+        for (StepResult overloaded : results.subList(2, results.size())) {
+            assertThat(overloaded.goodput()).isGreaterThan(0.7 * atCapacity.goodput());
+        }
+        assertThat(results.get(0).rejectedShare()).isZero();
+        assertThat(results.get(3).rejectedShare()).isGreaterThan(0.5);
+    }
+
+    private StepResult runStep(AdaptiveConcurrencyLimiter limiter, Semaphore connections, double multiple)
+            throws InterruptedException {
+        ExecutorService requests = Executors.newCachedThreadPool();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+
+        long intervalNanos = (long) (1e9 / (CAPACITY * multiple));
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(STEP_MILLIS);
+        int sent = 0;
+        for (long next = start; next < end; next += intervalNanos) {
+            long delay = next - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            sent++;
+            requests.execute(() -> {
+                AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.API);
+                if (permit == null) {
+                    rejected.incrementAndGet();
+                    return;
+                }
+                long submitted = System.nanoTime();
+                try {
+                    connections.acquireUninterruptibly();
+                    try {
+                        Thread.sleep(SERVICE_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        connections.release();
+                    }
+                    long finished = System.nanoTime();
+                    limiter.recordLatency(finished - submitted);
+                    latencies.add(finished - submitted);
+                    // Work still queued when the step ends is not goodput of this step
+                    if (finished <= end) {
+                        completed.incrementAndGet();
+                    }
+                } finally {
+                    permit.release();
+                }
+            });
+        }
+        requests.shutdown();
+        assertThat(requests.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99 = sorted.isEmpty() ? 0 : sorted.get((int) (sorted.size() * 0.99));
+        return new StepResult(multiple, completed.get() / (STEP_MILLIS / 1000.0), (double) rejected.get() / sent,
+                TimeUnit.NANOSECONDS.toMillis(p99));
+    }
+}
@@ -0,0 +1,65 @@
+package com.paytabs.banking.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    private static final int ENTRIES = 100_000;
+    private static final double TARGET_RATE = 0.001;
+
+    @Test
+    void addedKeysAreAlwaysFound() {
+        BloomFilter filter = filled(new BloomFilter(ENTRIES, TARGET_RATE), ENTRIES);
+
+        for (int i = 0; i < ENTRIES; i++) {
+            assertThat(filter.mightContain(member(i))).isTrue();
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTargetAtPlannedSize() {
+        BloomFilter filter = filled(new BloomFilter(ENTRIES, TARGET_RATE), ENTRIES);
+
+        assertThat(falsePositiveRate(filter)).isLessThan(TARGET_RATE * 2);
+    }
+
+    @Test
+    void overfillingRaisesTheFalsePositiveRate() {
+        BloomFilter filter = filled(new BloomFilter(ENTRIES, TARGET_RATE), ENTRIES * 4);
+
+        assertThat(falsePositiveRate(filter)).isGreaterThan(TARGET_RATE * 10);
+    }
+
+    @Test
+    void sizeFollowsEntriesAndRate() {
+        // -ln(0.001) / ln(2)^2 = 14.4 bits per entry
+        assertThat(new BloomFilter(1_000_000, 0.001).sizeInBytes()).isBetween(1_790_000L, 1_800_000L);
+        // -ln(0.01) / ln(2)^2 = 9.6 bits per entry
+        assertThat(new BloomFilter(1_000_000, 0.01).sizeInBytes()).isBetween(1_195_000L, 1_200_000L);
+        assertThat(new BloomFilter(1_000_000, 0.001).expectedEntries()).isEqualTo(1_000_000);
+    }
+
+    private static BloomFilter filled(BloomFilter filter, int entries) {
+        for (int i = 0; i < entries; i++) {
+            filter.add(member(i));
+        }
+        return filter;
+    }
+
+    private static double falsePositiveRate(BloomFilter filter) {
+        int probes = 200_000;
+        int hits = 0;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(String.format("5%015d", i))) {
+                hits++;
+            }
+        }
+        return (double) hits / probes;
+    }
+
+    private static String member(int i) {
+        return String.format("4%015d", i);
+    }
+}
@@ -0,0 +1,124 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.crypto.EncryptionUtil;
+import com.paytabs.banking.dto.KeyRotationStatus;
+import com.paytabs.banking.entity.Card;
+import com.paytabs.banking.repository.CardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A rotation to the test key over cards stored under a retired key, under legacy ECB and without
+ * lookup hashes: every row ends up under the active key with its hash, and the repository still
+ * finds each card by number.
+ */
+class CardKeyRotationServiceTest extends IntegrationTestSupport {
+
+    private static final String[] KINDS = {"retired", "legacy", "current-without-hash"};
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Value("${encryption.secret.key}")
+    private String legacySecret;
+
+    @Value("${encryption.keys}")
+    private String keyring;
+
+    @Value("${encryption.lookup.secret}")
+    private String lookupSecret;
+
+    @Test
+    void rotationRewritesMixedKeyRowsAndLookupsStillResolve() throws Exception {
+        byte[] retiredKey = new byte[32];
+        new SecureRandom().nextBytes(retiredKey);
+        String retiredEntry = "k0:" + Base64.getEncoder().encodeToString(retiredKey);
+        EncryptionUtil retired = encryptionUtil(retiredEntry + "," + keyring, "k0");
+        EncryptionUtil rotating = encryptionUtil(retiredEntry + "," + keyring, encryptionUtil.getActiveKeyId());
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        List<String> cardNumbers = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            String cardNumber = TestFixtures.withCheckDigit(String.format("452%012d", i));
+            String kind = KINDS[i % KINDS.length];
+            String stored = switch (kind) {
+                case "retired" -> retired.encrypt(cardNumber);
+                case "legacy" -> encryptLegacy(cardNumber);
+                default -> encryptionUtil.encrypt(cardNumber);
+            };
+            String hash = "retired".equals(kind) ? encryptionUtil.lookupHash(cardNumber) : null;
+            jdbcTemplate.update("insert into cards (card_number, card_number_hash, pin_hash, balance, held_amount, " +
+                    "active, customer_id, customer_name) values (?, ?, ?, 0, 0, true, 'CUSTROTATE', 'Rotation Test')",
+                    stored, hash, TestFixtures.sha256("1234"));
+            cardNumbers.add(cardNumber);
+        }
+
+        // Small chunks and no rate limit, so several workers share the rewrite
+        CardKeyRotationService rotation = new CardKeyRotationService(dataSource, rotating, concurrencyLimiter,
+                new SimpleMeterRegistry(), 2, 4, 0, 10, false);
+        assertThat(rotation.startRotation()).isTrue();
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (rotation.getStatus().isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        KeyRotationStatus status = rotation.getStatus();
+        assertThat(status.isRunning()).isFalse();
+        assertThat(status.getRowsFailed()).isZero();
+        assertThat(status.getRowsRewritten()).isGreaterThanOrEqualTo(cardNumbers.size());
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "select card_number, card_number_hash from cards where customer_id = 'CUSTROTATE'");
+        assertThat(rows).hasSize(cardNumbers.size()).allSatisfy(row -> {
+            assertThat(encryptionUtil.isCurrent((String) row.get("card_number"))).isTrue();
+            assertThat(EncryptionUtil.isLookupHash((String) row.get("card_number_hash"))).isTrue();
+        });
+        for (String cardNumber : cardNumbers) {
+            Card card = cardRepository.findByCardNumber(cardNumber).orElseThrow();
+            assertThat(card.getCardNumber()).isEqualTo(cardNumber);
+        }
+    }
+
+    private EncryptionUtil encryptionUtil(String keys, String activeKeyId) {
+        EncryptionUtil util = new EncryptionUtil();
+        ReflectionTestUtils.setField(util, "secretKey", legacySecret);
+        ReflectionTestUtils.setField(util, "keyring", keys);
+        ReflectionTestUtils.setField(util, "activeKeyId", activeKeyId);
+        ReflectionTestUtils.setField(util, "lookupSecret", lookupSecret);
+        util.setup();
+        return util;
+    }
+
+    // Card numbers written before versioned keys: AES/ECB under encryption.secret.key, no key id
+    private String encryptLegacy(String cardNumber) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(legacySecret.getBytes(StandardCharsets.UTF_8), "AES"));
+        return Base64.getEncoder().encodeToString(cipher.doFinal(cardNumber.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,109 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.repository.CardRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Catch-up of writes made by other instances, including a transaction whose id was allocated
+ * before one that committed first, and declined rows invalidating their card owner's views.
+ */
+class CustomerVersionTrackerTest extends IntegrationTestSupport {
+
+    private static final String INSERT = "insert into transactions (card_number, transaction_type, amount, " +
+            "status, customer_id, timestamp) values (?, 'topup', 1.00, 'failed', ?, ?)";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private System2Service system2Service;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CustomerVersionTracker customerVersions;
+
+    @Test
+    void catchUpBumpsCustomersOfTransactionsThatCommitLate() throws Exception {
+        CustomerVersionTracker tracker = new CustomerVersionTracker(dataSource, true, true, 0, 300_000);
+        tracker.catchUp();
+
+        try (Connection late = dataSource.getConnection()) {
+            late.setAutoCommit(false);
+            insert(late, "CUST-VT-LATE");
+            // A higher id commits and is caught up while the lower one is still open
+            try (Connection early = dataSource.getConnection()) {
+                insert(early, "CUST-VT-EARLY");
+            }
+            tracker.catchUp();
+            assertThat(tracker.current("CUST-VT-EARLY").counter()).isEqualTo(1);
+            assertThat(tracker.current("CUST-VT-LATE").counter()).isZero();
+            assertThat(tracker.pendingGaps()).isEqualTo(1);
+
+            late.commit();
+        }
+        tracker.catchUp();
+
+        assertThat(tracker.current("CUST-VT-LATE").counter()).isEqualTo(1);
+        assertThat(tracker.pendingGaps()).isZero();
+    }
+
+    @Test
+    void gapsAreDroppedAfterTheTimeout() throws Exception {
+        CustomerVersionTracker tracker = new CustomerVersionTracker(dataSource, true, true, 0, 0);
+        tracker.catchUp();
+
+        try (Connection rolledBack = dataSource.getConnection()) {
+            rolledBack.setAutoCommit(false);
+            insert(rolledBack, "CUST-VT-ROLLBACK");
+            try (Connection committed = dataSource.getConnection()) {
+                insert(committed, "CUST-VT-COMMIT");
+            }
+            tracker.catchUp();
+            rolledBack.rollback();
+        }
+        Thread.sleep(5);
+        tracker.catchUp();
+
+        assertThat(tracker.pendingGaps()).isZero();
+        assertThat(tracker.current("CUST-VT-ROLLBACK").counter()).isZero();
+    }
+
+    @Test
+    void declinedTransactionsCarryTheCardOwner() {
+        String cardNumber = TestFixtures.withCheckDigit("457000000000001");
+        cardRepository.save(TestFixtures.card(cardNumber, null, new BigDecimal("10.00"), "CUST-VT-DECLINE", "Declined Owner"));
+        long before = customerVersions.current("CUST-VT-DECLINE").counter();
+
+        system2Service.recordDeclinedTransaction(cardNumber, "withdraw", new BigDecimal("5.00"), "Velocity limit");
+
+        String owner = new JdbcTemplate(dataSource).queryForObject(
+                "select customer_id from transactions where card_number = ? and status = 'declined'",
+                String.class, cardNumber);
+        assertThat(owner).isEqualTo("CUST-VT-DECLINE");
+        assertThat(customerVersions.current("CUST-VT-DECLINE").counter()).isGreaterThan(before);
+    }
+
+    private static void insert(Connection connection, String customerId) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            statement.setString(1, "4570000000009999");
+            statement.setString(2, customerId);
+            statement.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now().minusSeconds(1)));
+            statement.executeUpdate();
+        }
+    }
+}
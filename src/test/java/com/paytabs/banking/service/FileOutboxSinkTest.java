@@ -0,0 +1,36 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.entity.OutboxEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two cluster nodes get separate files and separate offsets.
+ */
+class FileOutboxSinkTest {
+
+    @Test
+    void eachNodeAppendsToItsOwnFileUnderItsOwnConsumer() throws Exception {
+        Path directory = Files.createTempDirectory("outbox");
+        FileOutboxSink first = new FileOutboxSink(directory.resolve("events-8080.log").toString(), "file-log-8080");
+        FileOutboxSink second = new FileOutboxSink(directory.resolve("events-8081.log").toString(), "file-log-8081");
+        OutboxEvent event = new OutboxEvent(7L, "balance_changed", 42L, "{\"transactionId\":42}", LocalDateTime.now());
+
+        first.publish(List.of(event));
+        second.publish(List.of(event));
+        first.close();
+        second.close();
+
+        assertThat(first.name()).isNotEqualTo(second.name());
+        assertThat(Files.readAllLines(directory.resolve("events-8080.log")))
+                .containsExactly("7\tbalance_changed\t{\"transactionId\":42}");
+        assertThat(Files.readAllLines(directory.resolve("events-8081.log")))
+                .containsExactly("7\tbalance_changed\t{\"transactionId\":42}");
+    }
+}
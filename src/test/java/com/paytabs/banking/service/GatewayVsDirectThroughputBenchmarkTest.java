@@ -0,0 +1,116 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.dto.ProcessTransactionRequest;
+import com.paytabs.banking.dto.TransactionRequest;
+import com.paytabs.banking.dto.TransactionResponse;
+import com.paytabs.banking.entity.Card;
+import com.paytabs.banking.repository.CardRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Top-up throughput through the System 1 gateway (PIN hashed by the server) and through the
+ * pre-hashed System 2 path used by POST /api/process and the binary protocol, with the same client
+ * threads and cards. Both run the ingress filter and velocity limits. Not a JMH benchmark: a
+ * warm-up pass and one timed pass each, printed for comparison.
+ */
+@Tag("benchmark")
+class GatewayVsDirectThroughputBenchmarkTest extends IntegrationTestSupport {
+
+    private static final int CARDS = 64;
+    private static final int THREADS = 16;
+    private static final int WARMUP = 2_000;
+    private static final int MEASURED = 10_000;
+    private static final String PIN = "8642";
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private System2Service system2Service;
+
+    @Autowired
+    private CardShardExecutor cardShardExecutor;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private IssuedCardFilter issuedCardFilter;
+
+    @Test
+    void gatewayAndDirectPathsProcessEveryTopUp() throws Exception {
+        List<String> cardNumbers = createCards();
+        String pinHash = TestFixtures.sha256(PIN);
+
+        IntFunction<TransactionResponse> gateway = i -> transactionService.processTransaction(
+                new TransactionRequest(cardNumbers.get(i % CARDS), PIN, 0.01, "topup", null));
+        IntFunction<TransactionResponse> direct = i -> {
+            ProcessTransactionRequest request = new ProcessTransactionRequest(cardNumbers.get(i % CARDS), pinHash,
+                    new BigDecimal("0.01"), "topup", null);
+            // As System2Controller does: on the card's shard
+            return cardShardExecutor.submit(request.getCardNumber(),
+                    () -> system2Service.processPreHashedTransaction(request)).join();
+        };
+
+        run(gateway, WARMUP);
+        run(direct, WARMUP);
+        double gatewayRate = run(gateway, MEASURED);
+        double directRate = run(direct, MEASURED);
+        System.out.printf("Top-ups with %d client threads: gateway %.0f/s, pre-hashed System 2 %.0f/s%n",
+                THREADS, gatewayRate, directRate);
+
+        BigDecimal expected = new BigDecimal("0.01").multiply(BigDecimal.valueOf(2L * (WARMUP + MEASURED)));
+        BigDecimal total = BigDecimal.ZERO;
+        for (String cardNumber : cardNumbers) {
+            total = total.add(cardRepository.findByCardNumber(cardNumber).orElseThrow().getBalance());
+        }
+        assertThat(total).isEqualByComparingTo(expected);
+    }
+
+    // Returns requests per second; fails on any declined or failed request
+    private static double run(IntFunction<TransactionResponse> call, int requests) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+        List<Future<TransactionResponse>> futures = new ArrayList<>(requests);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            int index = i;
+            futures.add(clients.submit(() -> call.apply(index)));
+        }
+        for (Future<TransactionResponse> future : futures) {
+            TransactionResponse response = future.get();
+            assertThat(response.isSuccess()).as(response.getMessage()).isTrue();
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        assertThat(clients.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        return requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    private List<String> createCards() {
+        List<String> cardNumbers = new ArrayList<>();
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            String cardNumber = TestFixtures.withCheckDigit(String.format("455%012d", i));
+            cardNumbers.add(cardNumber);
+            cards.add(TestFixtures.card(cardNumber, PIN, BigDecimal.ZERO, "CUSTTPUT", "Throughput Test"));
+        }
+        cardRepository.saveAll(cards);
+        cardNumbers.forEach(issuedCardFilter::addIssuedCard);
+        return cardNumbers;
+    }
+}
@@ -0,0 +1,119 @@
+package com.paytabs.banking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HierarchicalTimingWheelTest {
+
+    @Test
+    void taskRunsOnTheTickCoveringItsDeadline() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("test-wheel", 10, 8, 0);
+        List<String> ran = new ArrayList<>();
+        wheel.schedule(25, () -> ran.add("25"));
+        wheel.schedule(30, () -> ran.add("30"));
+
+        wheel.advanceTo(29);
+        assertThat(ran).isEmpty();
+
+        wheel.advanceTo(30);
+        assertThat(ran).containsExactlyInAnyOrder("25", "30");
+        assertThat(wheel.pendingCount()).isZero();
+    }
+
+    @Test
+    void pastDeadlineRunsOnTheNextTick() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("test-wheel", 10, 8, 1000);
+        List<String> ran = new ArrayList<>();
+        wheel.schedule(500, () -> ran.add("late"));
+
+        wheel.advanceTo(1009);
+        assertThat(ran).isEmpty();
+        wheel.advanceTo(1010);
+        assertThat(ran).containsExactly("late");
+    }
+
+    @Test
+    void timeoutsCascadeDownTheLevelsAndRunExactlyOnTime() {
+        // 8 slots per level: deadlines up to 5000 ticks span four levels
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("test-wheel", 1, 8, 0);
+        Random random = new Random(7);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        Map<Integer, Long> ranAt = new HashMap<>();
+        long[] now = {0};
+        for (int i = 0; i < 2000; i++) {
+            int id = i;
+            long deadline = 1 + random.nextInt(5000);
+            deadlines.put(id, deadline);
+            wheel.schedule(deadline, () -> ranAt.put(id, now[0]));
+        }
+
+        for (now[0] = 1; now[0] <= 5000; now[0]++) {
+            wheel.advanceTo(now[0]);
+        }
+
+        assertThat(ranAt).isEqualTo(deadlines);
+        assertThat(wheel.pendingCount()).isZero();
+    }
+
+    @Test
+    void timeoutScheduledMidWayIsMeasuredFromTheCurrentTick() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("test-wheel", 1, 8, 0);
+        List<Long> ran = new ArrayList<>();
+        wheel.advanceTo(61);
+        wheel.schedule(61 + 70, () -> ran.add(131L));
+
+        wheel.advanceTo(130);
+        assertThat(ran).isEmpty();
+        wheel.advanceTo(131);
+        assertThat(ran).containsExactly(131L);
+    }
+
+    @Test
+    void cancelledTimeoutsNeverRun() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("test-wheel", 1, 8, 0);
+        List<String> ran = new ArrayList<>();
+        HierarchicalTimingWheel.Timeout near = wheel.schedule(5, () -> ran.add("near"));
+        HierarchicalTimingWheel.Timeout far = wheel.schedule(300, () -> ran.add("far"));
+        wheel.schedule(6, () -> ran.add("kept"));
+
+        assertThat(near.cancel()).isTrue();
+        assertThat(near.cancel()).isFalse();
+        // Cancelled while still on a coarse level, before it would have cascaded
+        assertThat(far.cancel()).isTrue();
+        assertThat(wheel.pendingCount()).isEqualTo(1);
+
+        wheel.advanceTo(400);
+        assertThat(ran).containsExactly("kept");
+        assertThat(wheel.pendingCount()).isZero();
+    }
+
+    @Test
+    void cancelAfterRunningReturnsFalse() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("test-wheel", 1, 8, 0);
+        HierarchicalTimingWheel.Timeout timeout = wheel.schedule(3, () -> { });
+        wheel.advanceTo(3);
+
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(wheel.pendingCount()).isZero();
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheOthers() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("test-wheel", 1, 8, 0);
+        List<String> ran = new ArrayList<>();
+        wheel.schedule(2, () -> {
+            throw new IllegalStateException("boom");
+        });
+        wheel.schedule(2, () -> ran.add("other"));
+
+        wheel.advanceTo(2);
+        assertThat(ran).containsExactly("other");
+    }
+}
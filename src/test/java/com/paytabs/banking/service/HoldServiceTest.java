@@ -0,0 +1,140 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.dto.HoldRequest;
+import com.paytabs.banking.dto.HoldResponse;
+import com.paytabs.banking.entity.Card;
+import com.paytabs.banking.repository.AuthorizationHoldRepository;
+import com.paytabs.banking.repository.CardRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Holds against the database: expiry and the overdue sweep release held_amount, and capture and
+ * void respect the hold's owner and the card's state.
+ */
+class HoldServiceTest extends IntegrationTestSupport {
+
+    private static final String PIN = "1357";
+    private static final AtomicInteger NEXT_CARD = new AtomicInteger();
+
+    @Autowired
+    private HoldService holdService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private AuthorizationHoldRepository holdRepository;
+
+    @Autowired
+    private IssuedCardFilter issuedCardFilter;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void expiryReleasesTheHeldAmount() {
+        String cardNumber = newCard();
+        HoldResponse hold = holdService.authorize(new HoldRequest(cardNumber, PIN, new BigDecimal("75.00")), "acquirer");
+        assertThat(hold.isSuccess()).isTrue();
+        assertThat(heldAmount(cardNumber)).isEqualByComparingTo("75.00");
+
+        holdService.expire(hold.getHoldId());
+
+        assertThat(heldAmount(cardNumber)).isEqualByComparingTo("0");
+        assertThat(holdRepository.findById(hold.getHoldId()).orElseThrow().getStatus()).isEqualTo("EXPIRED");
+        // A second expiry, e.g. from the sweep of another instance, changes nothing
+        holdService.expire(hold.getHoldId());
+        assertThat(heldAmount(cardNumber)).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void sweepReleasesOverdueHoldsMissedByTheWheel() {
+        String cardNumber = newCard();
+        HoldResponse overdue = holdService.authorize(new HoldRequest(cardNumber, PIN, new BigDecimal("40.00")), "acquirer");
+        HoldResponse current = holdService.authorize(new HoldRequest(cardNumber, PIN, new BigDecimal("10.00")), "acquirer");
+        new JdbcTemplate(dataSource).update("update authorization_holds set expires_at = ? where id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(1)), overdue.getHoldId());
+
+        holdService.sweepOverdueHolds();
+
+        assertThat(holdRepository.findById(overdue.getHoldId()).orElseThrow().getStatus()).isEqualTo("EXPIRED");
+        assertThat(holdRepository.findById(current.getHoldId()).orElseThrow().getStatus()).isEqualTo("PENDING");
+        assertThat(heldAmount(cardNumber)).isEqualByComparingTo("10.00");
+    }
+
+    @Test
+    void partialCaptureChargesTheAmountAndReleasesTheRest() {
+        String cardNumber = newCard();
+        HoldResponse hold = holdService.authorize(new HoldRequest(cardNumber, PIN, new BigDecimal("75.00")), "acquirer");
+
+        HoldResponse capture = holdService.capture(hold.getHoldId(), new BigDecimal("60.00"), "acquirer", false);
+
+        assertThat(capture.isSuccess()).isTrue();
+        Card card = cardRepository.findByCardNumber(cardNumber).orElseThrow();
+        assertThat(card.getBalance()).isEqualByComparingTo("440.00");
+        assertThat(card.getHeldAmount()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void onlyTheAuthorizerOrAnAdminClosesAHold() {
+        String cardNumber = newCard();
+        HoldResponse hold = holdService.authorize(new HoldRequest(cardNumber, PIN, new BigDecimal("20.00")), "acquirer");
+
+        assertThat(holdService.capture(hold.getHoldId(), null, "other", false).getMessage()).isEqualTo("Hold not found");
+        assertThat(holdService.voidHold(hold.getHoldId(), "other", false).getMessage()).isEqualTo("Hold not found");
+        assertThat(heldAmount(cardNumber)).isEqualByComparingTo("20.00");
+
+        assertThat(holdService.voidHold(hold.getHoldId(), "admin", true).isSuccess()).isTrue();
+        assertThat(heldAmount(cardNumber)).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void holdOnADeactivatedCardCannotBeCaptured() {
+        String cardNumber = newCard();
+        HoldResponse hold = holdService.authorize(new HoldRequest(cardNumber, PIN, new BigDecimal("30.00")), "acquirer");
+        Card card = cardRepository.findByCardNumber(cardNumber).orElseThrow();
+        card.setActive(false);
+        cardRepository.save(card);
+
+        HoldResponse capture = holdService.capture(hold.getHoldId(), null, "acquirer", false);
+
+        assertThat(capture.isSuccess()).isFalse();
+        assertThat(capture.getMessage()).isEqualTo("Card is inactive");
+        Card after = cardRepository.findByCardNumber(cardNumber).orElseThrow();
+        assertThat(after.getBalance()).isEqualByComparingTo("500.00");
+        assertThat(after.getHeldAmount()).isEqualByComparingTo("30.00");
+    }
+
+    @Test
+    void authorizationDropsNeverIssuedCards() {
+        String cardNumber = TestFixtures.withCheckDigit("458999999999999");
+
+        HoldResponse hold = holdService.authorize(new HoldRequest(cardNumber, PIN, new BigDecimal("5.00")), "acquirer");
+
+        assertThat(hold.isSuccess()).isFalse();
+        assertThat(hold.getMessage()).isEqualTo("Invalid card number");
+    }
+
+    private String newCard() {
+        String cardNumber = TestFixtures.withCheckDigit(String.format("458%012d", NEXT_CARD.incrementAndGet()));
+        cardRepository.save(TestFixtures.card(cardNumber, PIN, new BigDecimal("500.00"), "CUSTHOLD", "Hold Test"));
+        issuedCardFilter.addIssuedCard(cardNumber);
+        return cardNumber;
+    }
+
+    private BigDecimal heldAmount(String cardNumber) {
+        return cardRepository.findByCardNumber(cardNumber).orElseThrow().getHeldAmount();
+    }
+}
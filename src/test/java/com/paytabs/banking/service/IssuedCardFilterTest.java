@@ -0,0 +1,84 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.crypto.EncryptionUtil;
+import com.paytabs.banking.repository.CardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Loading, rebuilding past the planned size, and cards issued on this instance while a rebuild
+ * reads the cards table.
+ */
+class IssuedCardFilterTest extends IntegrationTestSupport {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    private Runnable duringScan;
+
+    @Test
+    void loadedCardsPassAndUnknownNumbersAreRejected() {
+        String issued = saveCard("454000000000001");
+        IssuedCardFilter filter = newFilter(1000);
+        filter.load();
+
+        assertThat(filter.check(issued)).isNull();
+        assertThat(filter.check(TestFixtures.withCheckDigit("454999999999999"))).isEqualTo(IssuedCardFilter.REASON_UNKNOWN);
+        assertThat(filter.check("45400")).isEqualTo(IssuedCardFilter.REASON_FORMAT);
+    }
+
+    @Test
+    void cardsAddedDuringARebuildSurviveTheSwap() {
+        List<String> issued = List.of(saveCard("454000000000002"), saveCard("454000000000003"));
+        // Planned for one card, so the next refresh rebuilds into a larger filter
+        IssuedCardFilter filter = newFilter(1);
+        filter.load();
+        String addedDuringRebuild = TestFixtures.withCheckDigit("454000000000009");
+        duringScan = () -> filter.addIssuedCard(addedDuringRebuild);
+
+        filter.refresh();
+
+        assertThat(duringScan).as("rebuild read the cards table").isNull();
+        assertThat(filter.check(addedDuringRebuild)).isNull();
+        issued.forEach(cardNumber -> assertThat(filter.check(cardNumber)).isNull());
+    }
+
+    private IssuedCardFilter newFilter(long expectedCards) {
+        // Runs the hook on the first card read, i.e. while the filter is being built
+        EncryptionUtil decrypting = new EncryptionUtil() {
+            @Override
+            public String decrypt(String encryptedData) {
+                Runnable hook = duringScan;
+                if (hook != null) {
+                    duringScan = null;
+                    hook.run();
+                }
+                return encryptionUtil.decrypt(encryptedData);
+            }
+        };
+        return new IssuedCardFilter(dataSource, decrypting, new SimpleMeterRegistry(), true, expectedCards, 0.001, 1000);
+    }
+
+    private String saveCard(String digits) {
+        String cardNumber = TestFixtures.withCheckDigit(digits);
+        if (cardRepository.findByCardNumber(cardNumber).isEmpty()) {
+            cardRepository.save(TestFixtures.card(cardNumber, null, BigDecimal.ZERO, "CUSTFILTER", "Filter Test"));
+        }
+        return cardNumber;
+    }
+}
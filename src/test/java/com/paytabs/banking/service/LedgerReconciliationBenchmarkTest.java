@@ -0,0 +1,87 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.dto.ReconciliationReport;
+import com.paytabs.banking.entity.Card;
+import com.paytabs.banking.repository.CardRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reconciliation throughput over a generated ledger with one planted mismatch. Not a JMH
+ * benchmark: one timed run, printed. Run with -Dbenchmark.rows=10000000 for the full-size ledger.
+ */
+@Tag("benchmark")
+class LedgerReconciliationBenchmarkTest extends IntegrationTestSupport {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 200_000);
+    private static final int CARDS = 2000;
+
+    @Autowired
+    private LedgerReconciliationService reconciliationService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void reconcilesGeneratedLedgerAndFindsThePlantedMismatch() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        List<Card> unsaved = new ArrayList<>(CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            unsaved.add(TestFixtures.card(String.format("47%014d", i), null, BigDecimal.ZERO, "RECON" + i,
+                    "Reconciliation " + i));
+        }
+        List<Card> cards = cardRepository.saveAll(unsaved);
+
+        // Every card gets an unbroken chain of 1.00 top-ups, written in batches across all cards
+        long[] balances = new long[CARDS];
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(10_000);
+        for (int i = 0; i < ROWS; i++) {
+            int card = i % CARDS;
+            rows.add(new Object[]{cards.get(card).getCardNumber(), "topup", BigDecimal.ONE,
+                    BigDecimal.valueOf(balances[card]), BigDecimal.valueOf(balances[card] + 1), "success", now});
+            balances[card]++;
+            if (rows.size() == 10_000 || i == ROWS - 1) {
+                jdbcTemplate.batchUpdate("insert into transactions (card_number, transaction_type, amount, " +
+                        "balance_before, balance_after, status, timestamp) values (?, ?, ?, ?, ?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+        List<Object[]> cardBalances = new ArrayList<>(CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            // The first card's stored balance is off by one cent
+            BigDecimal balance = BigDecimal.valueOf(balances[i]).add(i == 0 ? new BigDecimal("0.01") : BigDecimal.ZERO);
+            cardBalances.add(new Object[]{balance, cards.get(i).getId()});
+        }
+        jdbcTemplate.batchUpdate("update cards set balance = ? where id = ?", cardBalances);
+
+        long start = System.nanoTime();
+        ReconciliationReport report = reconciliationService.reconcile();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("Reconciled %d transactions of %d cards in %d ms (%.0f transactions/s)%n",
+                report.getTransactionsScanned(), report.getCardsChecked(), millis,
+                report.getTransactionsScanned() * 1000.0 / Math.max(1, millis));
+
+        assertThat(report.getTransactionsScanned()).isGreaterThanOrEqualTo(ROWS);
+        assertThat(report.getDiscrepancies())
+                .filteredOn(discrepancy -> cards.get(0).getId().equals(discrepancy.getCardId()))
+                .singleElement()
+                .satisfies(discrepancy -> assertThat(discrepancy.getKind()).isEqualTo("BALANCE_MISMATCH"));
+    }
+}
@@ -0,0 +1,152 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.entity.OutboxEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Relay delivery with events committing out of id order: an id the offset passes while its
+ * transaction is still open is delivered once it commits, and dropped after the gap timeout if
+ * it never does. A rejected batch is delivered again.
+ */
+class OutboxRelayTest extends IntegrationTestSupport {
+
+    private static final AtomicInteger NEXT_CONSUMER = new AtomicInteger();
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void eventCommittedBehindTheOffsetIsDeliveredLate() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        OutboxRelay relay = newRelay(sink, 300_000);
+
+        try (Connection late = dataSource.getConnection()) {
+            late.setAutoCommit(false);
+            long lateId = insertEvent(late);
+            long earlyId;
+            try (Connection early = dataSource.getConnection()) {
+                earlyId = insertEvent(early);
+            }
+            relay.relay();
+            assertThat(sink.ids()).contains(earlyId).doesNotContain(lateId);
+            assertThat(gaps(sink.name())).contains(lateId);
+
+            late.commit();
+            relay.relay();
+            assertThat(sink.ids()).contains(lateId);
+            assertThat(gaps(sink.name())).doesNotContain(lateId);
+        }
+    }
+
+    @Test
+    void gapOfARolledBackEventExpires() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        OutboxRelay relay = newRelay(sink, 0);
+
+        long rolledBackId;
+        try (Connection rolledBack = dataSource.getConnection()) {
+            rolledBack.setAutoCommit(false);
+            rolledBackId = insertEvent(rolledBack);
+            try (Connection committed = dataSource.getConnection()) {
+                insertEvent(committed);
+            }
+            relay.relay();
+            rolledBack.rollback();
+        }
+        Thread.sleep(5);
+        relay.relay();
+
+        assertThat(gaps(sink.name())).doesNotContain(rolledBackId);
+        assertThat(sink.ids()).doesNotContain(rolledBackId);
+    }
+
+    @Test
+    void rejectedBatchIsDeliveredAgain() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        OutboxRelay relay = newRelay(sink, 300_000);
+        long id;
+        try (Connection connection = dataSource.getConnection()) {
+            id = insertEvent(connection);
+        }
+
+        sink.failNext = true;
+        relay.relay();
+        assertThat(sink.ids()).doesNotContain(id);
+        relay.relay();
+
+        assertThat(sink.ids()).containsOnlyOnce(id);
+    }
+
+    // Starts the consumer at the newest event, so events and gaps left by other tests are not replayed
+    private OutboxRelay newRelay(OutboxSink sink, long gapTimeoutMillis) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from outbox_events", Long.class);
+        jdbcTemplate.update("insert into outbox_offsets (consumer, last_event_id, updated_at) values (?, ?, ?)",
+                sink.name(), maxId, Timestamp.valueOf(LocalDateTime.now()));
+        return new OutboxRelay(dataSource, transactionManager, sink, new SimpleMeterRegistry(), 500, 0,
+                gapTimeoutMillis, 0);
+    }
+
+    private long insertEvent(Connection connection) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement("insert into outbox_events " +
+                "(event_type, transaction_id, payload, created_at) values ('balance_changed', 0, '{}', ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            statement.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now().minusSeconds(1)));
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                keys.next();
+                return keys.getLong(1);
+            }
+        }
+    }
+
+    private List<Long> gaps(String consumer) {
+        return new JdbcTemplate(dataSource).queryForList("select event_id from outbox_gaps where consumer = ?",
+                Long.class, consumer);
+    }
+
+    private static final class RecordingSink implements OutboxSink {
+        private final String name = "test-" + NEXT_CONSUMER.incrementAndGet();
+        private final List<Long> delivered = new ArrayList<>();
+        private boolean failNext;
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public void publish(List<OutboxEvent> events) throws Exception {
+            if (failNext) {
+                failNext = false;
+                throw new IllegalStateException("sink unavailable");
+            }
+            events.forEach(event -> delivered.add(event.getId()));
+        }
+
+        List<Long> ids() {
+            return delivered;
+        }
+    }
+}
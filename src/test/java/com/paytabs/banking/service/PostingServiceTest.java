@@ -0,0 +1,138 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.crypto.EncryptionUtil;
+import com.paytabs.banking.entity.Card;
+import com.paytabs.banking.repository.CardRepository;
+import com.paytabs.banking.repository.PostingCheckpointRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Balances and transaction rows after a posting run, against the fee and interest rules worked out
+ * card by card: cards at the fee boundaries, with holds, above the waiver, inactive, and with
+ * interest that rounds to zero. A second run of the same period posts nothing.
+ */
+class PostingServiceTest extends IntegrationTestSupport {
+
+    private static final BigDecimal FEE = new BigDecimal("2.50");
+    private static final BigDecimal WAIVER = new BigDecimal("1000.00");
+    private static final BigDecimal MONTHLY_RATE = new BigDecimal("0.02").divide(BigDecimal.valueOf(12), MathContext.DECIMAL64);
+    private static final String[] EDGE_BALANCES = {"0.00", "0.01", "0.29", "0.30", "2.49", "2.50", "2.51",
+            "999.99", "1000.00", "1000.01"};
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PostingCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private CustomerVersionTracker customerVersions;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Test
+    void feeAndInterestRunsMatchTheRulesCardByCard() {
+        List<Card> cards = createCards();
+        Map<String, BigDecimal> expected = new HashMap<>();
+        Map<String, Integer> expectedRows = new HashMap<>();
+        for (Card card : cards) {
+            BigDecimal balance = card.getBalance();
+            int rows = 0;
+            if (card.isActive() && balance.compareTo(WAIVER) < 0 && balance.subtract(card.getHeldAmount()).compareTo(FEE) >= 0) {
+                balance = balance.subtract(FEE);
+                rows++;
+            }
+            BigDecimal interest = balance.multiply(MONTHLY_RATE).setScale(2, RoundingMode.HALF_UP);
+            if (card.isActive() && interest.signum() > 0) {
+                balance = balance.add(interest);
+                rows++;
+            }
+            expected.put(card.getCardNumber(), balance);
+            expectedRows.put(card.getCardNumber(), rows);
+        }
+
+        // Small partitions and chunks, so chunk boundaries fall between the edge cases
+        PostingService postings = newPostingService();
+        YearMonth period = YearMonth.of(2001, 1);
+        postings.run(period, PostingService.FEE);
+        postings.run(period, PostingService.INTEREST);
+        postings.run(period, PostingService.FEE);
+        postings.run(period, PostingService.INTEREST);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (Card card : cards) {
+            Card posted = cardRepository.findByCardNumber(card.getCardNumber()).orElseThrow();
+            assertThat(posted.getBalance()).as(card.getBalance() + " held " + card.getHeldAmount())
+                    .isEqualByComparingTo(expected.get(card.getCardNumber()));
+            Integer rows = jdbcTemplate.queryForObject("select count(*) from transactions where card_number = ? " +
+                    "and reason like '% 2001-01'", Integer.class, card.getCardNumber());
+            assertThat(rows).as(card.getCardNumber()).isEqualTo(expectedRows.get(card.getCardNumber()));
+        }
+        assertThat(postings.getStatus(period, PostingService.FEE).getCompletedPartitions())
+                .isEqualTo(postings.getStatus(period, PostingService.FEE).getPartitions());
+    }
+
+    private PostingService newPostingService() {
+        return new PostingService(dataSource, transactionManager, checkpointRepository, encryptionUtil, outboxService,
+                customerVersions, concurrencyLimiter, new SimpleMeterRegistry(), 3, 7, FEE, WAIVER,
+                new BigDecimal("0.02"), 10);
+    }
+
+    private List<Card> createCards() {
+        Random random = new Random(49);
+        List<Card> cards = new ArrayList<>();
+        int index = 0;
+        for (String edge : EDGE_BALANCES) {
+            for (String held : new String[]{"0.00", "0.01", "2.50"}) {
+                cards.add(card(index++, new BigDecimal(edge), new BigDecimal(held), true));
+            }
+            cards.add(card(index++, new BigDecimal(edge), BigDecimal.ZERO, false));
+        }
+        for (int i = 0; i < 60; i++) {
+            BigDecimal balance = BigDecimal.valueOf(random.nextInt(200_000), 2);
+            BigDecimal held = random.nextBoolean() ? BigDecimal.ZERO : BigDecimal.valueOf(random.nextInt(1000), 2);
+            cards.add(card(index++, balance, held.min(balance), random.nextInt(10) > 0));
+        }
+        return cardRepository.saveAll(cards);
+    }
+
+    private static Card card(int index, BigDecimal balance, BigDecimal held, boolean active) {
+        Card card = TestFixtures.card(TestFixtures.withCheckDigit(String.format("451%012d", index)), null, balance,
+                "CUSTPOST" + index, "Posting Test");
+        card.setHeldAmount(held);
+        card.setActive(active);
+        return card;
+    }
+}
@@ -0,0 +1,78 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.dto.ProcessTransactionRequest;
+import com.paytabs.banking.dto.TransactionResponse;
+import com.paytabs.banking.repository.CardRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The direct path (POST /api/process and the binary protocol) applies the same ingress filter and
+ * velocity limits as the gateway.
+ */
+class System2ServiceTest extends IntegrationTestSupport {
+
+    private static final String PIN = "2468";
+
+    @Autowired
+    private System2Service system2Service;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private IssuedCardFilter issuedCardFilter;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void neverIssuedCardsAreDroppedWithoutARow() {
+        String cardNumber = TestFixtures.withCheckDigit("456999999999999");
+
+        TransactionResponse response = system2Service.processPreHashedTransaction(request(cardNumber, "10.00"));
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getMessage()).isEqualTo("Invalid card number");
+        assertThat(rows(cardNumber)).isZero();
+    }
+
+    @Test
+    void velocityLimitsApplyToDirectRequests() {
+        String cardNumber = TestFixtures.withCheckDigit("456000000000001");
+        cardRepository.save(TestFixtures.card(cardNumber, PIN, new BigDecimal("10.00"), "CUSTS2", "System2 Test"));
+        issuedCardFilter.addIssuedCard(cardNumber);
+
+        // Above velocity.max-topup-amount
+        TransactionResponse declined = system2Service.processPreHashedTransaction(request(cardNumber, "1500.00"));
+        TransactionResponse approved = system2Service.processPreHashedTransaction(request(cardNumber, "900.00"));
+
+        assertThat(declined.getStatus()).isEqualTo("declined");
+        assertThat(declined.getMessage()).startsWith("Top-up amount exceeds limit");
+        assertThat(approved.isSuccess()).isTrue();
+        // The approved top-up counts against the daily top-up limit
+        for (int i = 0; i < 4; i++) {
+            assertThat(system2Service.processPreHashedTransaction(request(cardNumber, "1000.00")).isSuccess()).isTrue();
+        }
+        assertThat(system2Service.processPreHashedTransaction(request(cardNumber, "200.00")).getMessage())
+                .startsWith("Daily top-up limit");
+        assertThat(cardRepository.findByCardNumber(cardNumber).orElseThrow().getBalance()).isEqualByComparingTo("4910.00");
+    }
+
+    private static ProcessTransactionRequest request(String cardNumber, String amount) {
+        return new ProcessTransactionRequest(cardNumber, TestFixtures.sha256(PIN), new BigDecimal(amount), "topup", null);
+    }
+
+    private int rows(String cardNumber) {
+        return new JdbcTemplate(dataSource).queryForObject(
+                "select count(*) from transactions where card_number = ?", Integer.class, cardNumber);
+    }
+}
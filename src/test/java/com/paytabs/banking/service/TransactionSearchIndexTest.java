@@ -0,0 +1,135 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.dto.TransactionView;
+import com.paytabs.banking.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Index results against a linear scan of the same rows: prefix matching on every query word,
+ * newest first, only the newest max-documents rows, and rows written after the rebuild once the
+ * catch-up has read them.
+ */
+class TransactionSearchIndexTest extends IntegrationTestSupport {
+
+    private static final int MAX_DOCUMENTS = 2000;
+    private static final int LIMIT = 50;
+    private static final String[] FIRST_NAMES = {"Alice", "Alicia", "Alan", "Bob", "Bobby", "Carla"};
+    private static final String[] LAST_NAMES = {"Smith", "Smythe", "Stone", "Zhang"};
+    private static final String[] STATUSES = {"success", "failed", "declined"};
+    private static final String[] TYPES = {"withdraw", "topup", "transfer_out", "transfer_in"};
+    private static final String[] REASONS = {null, "Invalid PIN", "Insufficient balance", "Card is inactive"};
+    private static final List<String> QUERIES = List.of("ali", "alic smi", "SMY", "bob stone", "declined",
+            "insufficient", "pin", "in", "transfer", "searchcust1", "4321", "43", "zhang topup failed", "nobody");
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final Random random = new Random(45);
+
+    @Test
+    void searchMatchesALinearScan() {
+        insertRows(1500);
+        TransactionSearchIndex index = newIndex();
+        index.rebuild();
+
+        assertMatchesLinearScan(index);
+    }
+
+    @Test
+    void catchUpAddsNewRowsAndEvictsBelowTheWindow() {
+        insertRows(MAX_DOCUMENTS + 500);
+        TransactionSearchIndex index = newIndex();
+        index.rebuild();
+        assertMatchesLinearScan(index);
+
+        // Rows written elsewhere; the catch-up reads them in and drops rows that left the window
+        insertRows(1500);
+        index.catchUp();
+
+        assertThat(index.size()).isLessThanOrEqualTo(MAX_DOCUMENTS);
+        assertMatchesLinearScan(index);
+    }
+
+    private TransactionSearchIndex newIndex() {
+        return new TransactionSearchIndex(transactionRepository, new SimpleMeterRegistry(), 2, 500, 1000, true,
+                MAX_DOCUMENTS);
+    }
+
+    private void assertMatchesLinearScan(TransactionSearchIndex index) {
+        List<TransactionView> window = window();
+        for (String query : QUERIES) {
+            List<Long> expected = window.stream()
+                    .filter(view -> matches(view, TransactionSearchIndex.tokenize(query)))
+                    .sorted(Comparator.comparing(TransactionView::getId).reversed())
+                    .limit(LIMIT)
+                    .map(TransactionView::getId)
+                    .toList();
+            assertThat(index.search(query, LIMIT)).as(query)
+                    .extracting(TransactionView::getId).containsExactlyElementsOf(expected);
+        }
+        // Evicted rows leave no empty posting lists behind
+        Set<String> terms = new HashSet<>();
+        window.forEach(view -> terms.addAll(terms(view)));
+        assertThat(index.termCount()).isEqualTo(terms.size());
+    }
+
+    // The newest MAX_DOCUMENTS ids, as the index keeps them
+    private List<TransactionView> window() {
+        List<TransactionView> all = transactionRepository.findAllViews();
+        long maxId = all.stream().mapToLong(TransactionView::getId).max().orElse(0);
+        return all.stream().filter(view -> view.getId() > maxId - MAX_DOCUMENTS).toList();
+    }
+
+    private static boolean matches(TransactionView view, List<String> tokens) {
+        Set<String> terms = terms(view);
+        return !tokens.isEmpty() && tokens.stream().allMatch(token -> terms.stream().anyMatch(term -> term.startsWith(token)));
+    }
+
+    private static Set<String> terms(TransactionView view) {
+        Set<String> terms = new HashSet<>();
+        for (String field : new String[]{view.getCustomerName(), view.getCustomerId(), view.getStatus(),
+                view.getReason(), view.getTransactionType()}) {
+            terms.addAll(TransactionSearchIndex.tokenize(field));
+        }
+        if (view.getCardNumber() != null && view.getCardNumber().length() >= 4) {
+            terms.add(view.getCardNumber().substring(view.getCardNumber().length() - 4));
+        }
+        return terms;
+    }
+
+    private void insertRows(int count) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String status = STATUSES[random.nextInt(STATUSES.length)];
+            rows.add(new Object[]{String.format("45300000000%05d", random.nextInt(20) * 4321 % 100_000),
+                    TYPES[random.nextInt(TYPES.length)], 10, 100, 90, status,
+                    "success".equals(status) ? null : REASONS[1 + random.nextInt(REASONS.length - 1)],
+                    "SEARCHCUST" + random.nextInt(30),
+                    FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+                    now});
+        }
+        new JdbcTemplate(dataSource).batchUpdate("insert into transactions (card_number, transaction_type, amount, " +
+                "balance_before, balance_after, status, reason, customer_id, customer_name, timestamp) " +
+                "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+}
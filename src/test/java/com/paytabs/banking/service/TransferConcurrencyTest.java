@@ -0,0 +1,105 @@
+package com.paytabs.banking.service;
+
+import com.paytabs.banking.IntegrationTestSupport;
+import com.paytabs.banking.TestFixtures;
+import com.paytabs.banking.dto.TransactionRequest;
+import com.paytabs.banking.dto.TransactionResponse;
+import com.paytabs.banking.repository.CardRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Many concurrent transfers in both directions between a handful of cards, through the gateway
+ * and its card shards. Money must neither appear nor vanish, and every request must finish: a
+ * lock-order deadlock would show up as a timeout or as lock timeout errors.
+ */
+class TransferConcurrencyTest extends IntegrationTestSupport {
+
+    private static final int CARDS = 6;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS = 2000;
+    private static final String PIN = "4321";
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000.00");
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private IssuedCardFilter issuedCardFilter;
+
+    @Test
+    void concurrentTransfersKeepTotalBalance() throws Exception {
+        List<String> cardNumbers = createCards();
+        BigDecimal totalBefore = totalBalance(cardNumbers);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger declined = new AtomicInteger();
+        List<Throwable> errors = new ArrayList<>();
+        ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < TRANSFERS; i++) {
+            futures.add(clients.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int from = random.nextInt(CARDS);
+                int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                TransactionRequest request = new TransactionRequest(cardNumbers.get(from), PIN,
+                        1 + random.nextInt(200), "transfer", cardNumbers.get(to));
+                try {
+                    TransactionResponse response = transactionService.processTransaction(request);
+                    (response.isSuccess() ? succeeded : declined).incrementAndGet();
+                } catch (RuntimeException e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            }));
+        }
+        clients.shutdown();
+        assertThat(clients.awaitTermination(60, TimeUnit.SECONDS))
+                .as("transfers finished without deadlock").isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertThat(errors).isEmpty();
+        assertThat(succeeded.get() + declined.get()).isEqualTo(TRANSFERS);
+        assertThat(succeeded.get()).isPositive();
+        assertThat(totalBalance(cardNumbers)).isEqualByComparingTo(totalBefore);
+        for (String cardNumber : cardNumbers) {
+            assertThat(cardRepository.findByCardNumber(cardNumber).orElseThrow().getBalance())
+                    .isGreaterThanOrEqualTo(BigDecimal.ZERO);
+        }
+    }
+
+    private List<String> createCards() {
+        List<String> cardNumbers = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            String cardNumber = TestFixtures.withCheckDigit("49000000000" + String.format("%04d", i));
+            cardRepository.save(TestFixtures.card(cardNumber, PIN, OPENING_BALANCE, "STRESS" + i, "Stress Test " + i));
+            issuedCardFilter.addIssuedCard(cardNumber);
+            cardNumbers.add(cardNumber);
+        }
+        return cardNumbers;
+    }
+
+    private BigDecimal totalBalance(List<String> cardNumbers) {
+        return cardNumbers.stream()
+                .map(number -> cardRepository.findByCardNumber(number).orElseThrow().getBalance())
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -0,0 +1,58 @@
+package com.paytabs.banking.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cost of one velocity check (evaluate, then record when allowed) on a warm map of active cards,
+ * which every transaction pays on its card's shard. Not a JMH benchmark: a warm-up pass and one
+ * timed pass, printed for comparison.
+ */
+@Tag("benchmark")
+class VelocityRuleEngineBenchmarkTest {
+
+    private static final int CARDS = 100_000;
+    private static final int WARMUP = 1_000_000;
+    private static final int MEASURED = 5_000_000;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Test
+    void checkCostPerTransaction() {
+        VelocityRuleEngine engine = new VelocityRuleEngine(10, new BigDecimal("5000.00"),
+                new BigDecimal("5000.00"), new BigDecimal("1000.00"));
+        String[] cardNumbers = new String[CARDS];
+        for (int i = 0; i < CARDS; i++) {
+            cardNumbers[i] = String.format("4%015d", i);
+        }
+
+        long start = TimeUnit.DAYS.toMillis(1000);
+        long declined = check(engine, cardNumbers, WARMUP, start);
+        long began = System.nanoTime();
+        declined += check(engine, cardNumbers, MEASURED, start + TimeUnit.HOURS.toMillis(1));
+        long nanosPerCheck = (System.nanoTime() - began) / MEASURED;
+        System.out.printf("Velocity check: %d ns/check over %d active cards, %d declined%n",
+                nanosPerCheck, CARDS, declined);
+
+        // Each card sees 60 withdrawals spread over two separate minutes: 10 pass per minute
+        assertThat(engine.trackedCardCount()).isEqualTo(CARDS);
+        assertThat(declined).isEqualTo(WARMUP + MEASURED - 2L * 10 * CARDS);
+    }
+
+    private static long check(VelocityRuleEngine engine, String[] cardNumbers, int checks, long nowMillis) {
+        long declined = 0;
+        for (int i = 0; i < checks; i++) {
+            String cardNumber = cardNumbers[i % cardNumbers.length];
+            if (engine.evaluate(cardNumber, "withdraw", AMOUNT, nowMillis) != null) {
+                declined++;
+            } else {
+                engine.record(cardNumber, "withdraw", AMOUNT, nowMillis);
+            }
+        }
+        return declined;
+    }
+}
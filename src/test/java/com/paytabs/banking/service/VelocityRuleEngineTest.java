@@ -0,0 +1,40 @@
+package com.paytabs.banking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VelocityRuleEngineTest {
+
+    private final VelocityRuleEngine engine = new VelocityRuleEngine(2, new BigDecimal("100.00"),
+            new BigDecimal("100.00"), new BigDecimal("50.00"));
+
+    @Test
+    void idleWindowsAreEvictedAfterADay() {
+        long start = TimeUnit.DAYS.toMillis(1000);
+        engine.record("4111111111111111", "withdraw", new BigDecimal("10.00"), start);
+        engine.record("4222222222222222", "topup", new BigDecimal("10.00"), start + TimeUnit.HOURS.toMillis(12));
+
+        engine.evictIdleWindows(start + TimeUnit.DAYS.toMillis(1));
+
+        assertThat(engine.trackedCardCount()).isEqualTo(1);
+    }
+
+    @Test
+    void evictionDoesNotLoosenLimits() {
+        long start = TimeUnit.DAYS.toMillis(1000);
+        engine.record("4111111111111111", "withdraw", new BigDecimal("60.00"), start);
+        engine.record("4111111111111111", "withdraw", new BigDecimal("30.00"), start + 1);
+
+        long later = start + TimeUnit.HOURS.toMillis(23);
+        engine.evictIdleWindows(later);
+
+        assertThat(engine.evaluate("4111111111111111", "withdraw", new BigDecimal("20.00"), later))
+                .startsWith("Daily withdrawal limit");
+        assertThat(engine.evaluate("4111111111111111", "withdraw", new BigDecimal("20.00"), start + 2))
+                .startsWith("Withdrawal velocity limit");
+    }
+}
@@ -0,0 +1,106 @@
+#!/bin/bash
+
+# Banking System POC - Startup Time Benchmark
+# Measures the time from JVM launch to the first successful POST /api/transaction.
+#
+# Build first with:  mvn -Pfast-startup package
+# Usage:             ./startup-benchmark.sh [runs]
+
+RUNS=${1:-5}
+PORT=18080
+BASE_URL="http://localhost:$PORT"
+# Absolute paths: the CDS archive is only used when the classpath matches the one it was built with
+TARGET="$(pwd)/target"
+BENCH_DIR="$TARGET/startup-bench"
+DB_URL="jdbc:h2:file:$BENCH_DIR/bankdb"
+THIN_JAR="$TARGET/banking-system-1.0.0.jar"
+EXEC_JAR="$TARGET/banking-system-1.0.0-exec.jar"
+
+if [ ! -f "$THIN_JAR" ] || [ ! -f "$TARGET/app.jsa" ]; then
+    echo "❌ Missing build output. Run: mvn -Pfast-startup package"
+    exit 1
+fi
+
+echo "⏱️  Startup Benchmark ($RUNS runs per mode)"
+echo "================================="
+echo ""
+
+# Seed a file database once with the dev sample data; the measured runs use the prod profile against it.
+# Scheduled jobs keep the seeding JVM alive, so it is stopped once the sample data is in.
+rm -rf "$BENCH_DIR"
+mkdir -p "$BENCH_DIR"
+echo "⏳ Seeding benchmark database..."
+java -jar "$EXEC_JAR" --spring.profiles.active=dev --spring.main.web-application-type=none \
+    --spring.datasource.url="$DB_URL" > "$BENCH_DIR/seed.log" 2>&1 &
+SEED_PID=$!
+until grep -q "Sample data initialization completed" "$BENCH_DIR/seed.log" 2>/dev/null; do
+    if ! kill -0 $SEED_PID 2>/dev/null; then
+        echo "❌ Seeding failed, see $BENCH_DIR/seed.log"
+        exit 1
+    fi
+    sleep 0.2
+done
+kill $SEED_PID
+wait $SEED_PID 2>/dev/null
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+# Launches the app with the given java options and prints ms until the first successful transaction
+measure() {
+    local start
+    start=$(now_ms)
+    # prod with the local throwaway keys, so it can read the cards the dev seeding run encrypted
+    java "$@" --server.port=$PORT --spring.profiles.active=prod,local-keys --spring.datasource.url="$DB_URL" \
+        > "$BENCH_DIR/run.log" 2>&1 &
+    local pid=$!
+
+    local token=""
+    while true; do
+        if [ -z "$token" ]; then
+            token=$(curl -s -X POST "$BASE_URL/api/auth/token" \
+                -H "Content-Type: application/json" \
+                -d '{"username": "john_doe", "password": "password123"}' | sed -n 's/.*"accessToken":"\([^"]*\)".*/\1/p')
+        fi
+        if [ -n "$token" ]; then
+            status=$(curl -s -o /dev/null -w "%{http_code}" -X POST "$BASE_URL/api/transaction" \
+                -H "Content-Type: application/json" \
+                -H "Authorization: Bearer $token" \
+                -d '{"cardNumber": "4111111111111111", "pin": "1234", "amount": 1.00, "type": "topup"}')
+            if [ "$status" = "200" ]; then
+                break
+            fi
+        fi
+        if ! kill -0 $pid 2>/dev/null; then
+            echo "❌ Application exited, see $BENCH_DIR/run.log" >&2
+            exit 1
+        fi
+        sleep 0.02
+    done
+
+    local elapsed=$(( $(now_ms) - start ))
+    kill $pid
+    wait $pid 2>/dev/null
+    echo $elapsed
+}
+
+run_series() {
+    local label="$1"
+    shift
+    local total=0
+    for i in $(seq 1 "$RUNS"); do
+        ms=$(measure "$@")
+        echo "  $label run $i: ${ms} ms"
+        total=$((total + ms))
+    done
+    echo "  $label average: $((total / RUNS)) ms"
+    echo ""
+}
+
+echo "📋 Baseline: executable jar, no AOT, no CDS"
+run_series "baseline" -jar "$EXEC_JAR"
+
+echo "📋 Fast startup: AOT + AppCDS"
+run_series "fast" -XX:SharedArchiveFile="$TARGET/app.jsa" -Dspring.aot.enabled=true \
+    -cp "$THIN_JAR:$TARGET/lib/*" com.paytabs.banking.BankingSystemApplication
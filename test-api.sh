@@ -32,9 +32,11 @@ run_test() {
     if [ -n "$data" ]; then
         response=$(curl -s -w "\n%{http_code}" -X POST "$BASE_URL$endpoint" \
             -H "Content-Type: application/json" \
+            -H "Authorization: Bearer $API_TOKEN" \
             -d "$data")
     else
-        response=$(curl -s -w "\n%{http_code}" "$BASE_URL$endpoint")
+        response=$(curl -s -w "\n%{http_code}" "$BASE_URL$endpoint" \
+            -H "Authorization: Bearer $API_TOKEN")
     fi
     
     # Extract response body and status code
@@ -61,6 +63,15 @@ done
 echo -e "${GREEN}✅ Application is running!${NC}"
 echo ""
 
+# Obtain a bearer token for the /api/** endpoints
+API_TOKEN=$(curl -s -X POST "$BASE_URL/api/auth/token" \
+    -H "Content-Type: application/json" \
+    -d '{"username": "admin", "password": "admin123"}' | sed -n 's/.*"accessToken":"\([^"]*\)".*/\1/p')
+if [ -z "$API_TOKEN" ]; then
+    echo -e "${RED}❌ Could not obtain API token${NC}"
+    exit 1
+fi
+
 # Test 1: Successful withdrawal with valid card (starts with '4')
 echo "📋 Test 1: Successful withdrawal with valid card"
 run_test "Valid withdrawal" "/api/transaction" '{
@@ -140,8 +151,18 @@ run_test "Negative amount" "/api/transaction" '{
   "type": "withdraw"
 }' "200"
 
-# Test 10: System 2 direct endpoint
+# Test 10: System 2 direct endpoint, which only acquirer tokens may call
 echo "📋 Test 10: System 2 direct endpoint"
+run_test "System 2 direct processing without acquirer role" "/api/process" '{
+  "cardNumber": "4000000000000002",
+  "pinHash": "03ac674216f3e15c761ee1a5e255f067953623c8b388b4459e13f978d7c846f4",
+  "amount": 75.00,
+  "type": "topup"
+}' "403"
+
+API_TOKEN=$(curl -s -X POST "$BASE_URL/api/auth/token" \
+    -H "Content-Type: application/json" \
+    -d '{"username": "acquirer", "password": "acquirer123"}' | sed -n 's/.*"accessToken":"\([^"]*\)".*/\1/p')
 run_test "System 2 direct processing" "/api/process" '{
   "cardNumber": "4000000000000002",
   "pinHash": "03ac674216f3e15c761ee1a5e255f067953623c8b388b4459e13f978d7c846f4",